@@ -2,22 +2,56 @@ package org.ucvts.comics.controller;
 
 import java.awt.CardLayout;
 import java.awt.Container;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
 
 import org.ucvts.comics.MidtownComics;
+import org.ucvts.comics.dao.AsyncDAO;
 import org.ucvts.comics.dao.DAO;        
+import org.ucvts.comics.dao.InsufficientStockException;
+import org.ucvts.comics.dao.OrderDAO;
+import org.ucvts.comics.dao.ProductCache;
 import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.dao.ProductInUseException;
+import org.ucvts.comics.dao.CustomerCache;
 import org.ucvts.comics.dao.CustomerDAO;
+import org.ucvts.comics.dao.CustomerSort;
+import org.ucvts.comics.dao.CustomerStatsDAO;
+import org.ucvts.comics.index.CustomerNameIndex;
+import org.ucvts.comics.index.InventoryFilter;
+import org.ucvts.comics.index.InventoryIndex;
+import org.ucvts.comics.index.InventorySort;
+import org.ucvts.comics.index.PhoneIndex;
+import org.ucvts.comics.index.ProductIndex;
+import org.ucvts.comics.index.SeriesTrie;
+import org.ucvts.comics.io.ImportResult;
+import org.ucvts.comics.io.ProductImporter;
 import org.ucvts.comics.model.Order;
 import org.ucvts.comics.model.OrderItem;
 import org.ucvts.comics.model.Product;
+import org.ucvts.comics.model.Series;
 import org.ucvts.comics.view.CartView;
 import org.ucvts.comics.view.InventoryView;
 import org.ucvts.comics.view.OrderView;
 import org.ucvts.comics.view.ProductView;
 import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.CustomerStats;
 import org.ucvts.comics.view.CustomerView;
 import org.ucvts.comics.view.CustomerListView;
 
@@ -27,6 +61,27 @@ public class ViewManager {
     
     private Container views;
     private Order order;
+    private CompletableFuture<Void> ready;
+    private CompletableFuture<Void> indexed;
+    private final ProductIndex productIndex = new ProductIndex();
+    private CompletableFuture<Void> seriesIndexed;
+    private final SeriesTrie seriesTrie = new SeriesTrie();
+    private CompletableFuture<Void> inventoryIndexed;
+    private final InventoryIndex inventoryIndex = new InventoryIndex();
+    private CompletableFuture<Void> phonesIndexed;
+    private final PhoneIndex phoneIndex = new PhoneIndex();
+    private CompletableFuture<Void> namesIndexed;
+    private final CustomerNameIndex nameIndex = new CustomerNameIndex();
+    
+    // database work runs in the background. results are handed back to
+    // the swing event dispatch thread through this executor.
+    
+    private static final Executor EDT = SwingUtilities::invokeLater;
+    
+    // loads that are still running, grouped by the view that asked for
+    // them. when the user leaves a view, its loads are no longer needed.
+    
+    private final Map<String, Set<CompletableFuture<?>>> pending = new ConcurrentHashMap<>();
     
     /*
      * A private constructor, implementing the singleton pattern.
@@ -40,15 +95,68 @@ public class ViewManager {
     private ViewManager(Container views) {
         this.views = views;
         
+        // the database schema is brought up to date in the background, so
+        // the window can appear right away. everything else that touches the
+        // database waits for it to finish.
+        //
         // rudimentary error handling. a more mature application
         // would handle database exceptions more gracefully, but
         // we'll just print the stack trace for now.
         
-        try {
-            DAO.buildDatabase();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        this.ready = AsyncDAO.run(DAO::buildDatabase);
+        this.ready.exceptionally(error -> {
+            unwrap(error).printStackTrace();
+            
+            return null;
+        });
+        
+        // the search indexes are built once the schema is ready, and kept up
+        // to date from then on. searches wait for them to be built.
+        
+        ProductDAO.addProductListener(productIndex);
+        
+        this.indexed = ready.thenCompose(v -> AsyncDAO.run(productIndex::load));
+        this.indexed.exceptionally(error -> {
+            unwrap(error).printStackTrace();
+            
+            return null;
+        });
+        
+        ProductDAO.addProductListener(seriesTrie);
+        
+        this.seriesIndexed = ready.thenCompose(v -> AsyncDAO.run(seriesTrie::load));
+        this.seriesIndexed.exceptionally(error -> {
+            unwrap(error).printStackTrace();
+            
+            return null;
+        });
+        
+        ProductDAO.addProductListener(inventoryIndex);
+        
+        this.inventoryIndexed = ready.thenCompose(v -> AsyncDAO.run(inventoryIndex::load));
+        this.inventoryIndexed.exceptionally(error -> {
+            unwrap(error).printStackTrace();
+            
+            return null;
+        });
+        
+        CustomerDAO.addCustomerListener(phoneIndex);
+        
+        this.phonesIndexed = ready.thenCompose(v -> AsyncDAO.run(phoneIndex::load));
+        this.phonesIndexed.exceptionally(error -> {
+            unwrap(error).printStackTrace();
+            
+            return null;
+        });
+        
+        CustomerDAO.addCustomerListener(nameIndex);
+        
+        this.namesIndexed = ready.thenCompose(v -> AsyncDAO.run(nameIndex::load));
+        this.namesIndexed.exceptionally(error -> {
+            unwrap(error).printStackTrace();
+            
+            return null;
+        });
     }
     
     /**
@@ -73,6 +181,7 @@ public class ViewManager {
      */
 
     public void switchTo(String view) {
+        cancelLoadsExcept(view);
         ((CardLayout) views.getLayout()).show(views, view);
     }
     
@@ -103,15 +212,11 @@ public class ViewManager {
      */
 
     public void addProductToInventory(Product product) {
-        try {            
-            ProductDAO.insertProduct(product);  // this is new, add product to the database
-    
+        save(() -> ProductDAO.insertProduct(product), () -> {
             detachProduct();
             refreshInventoryList();
             switchTo(MidtownComics.InventoryView);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -121,15 +226,11 @@ public class ViewManager {
      */
 
     public void modifyProductInInventory(Product product) {
-        try {
-            ProductDAO.updateProduct(product);  // this is new, updates product in the database
-            
+        save(() -> ProductDAO.updateProduct(product), () -> {
             detachProduct();
             refreshInventoryList();
             switchTo(MidtownComics.InventoryView);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -139,15 +240,22 @@ public class ViewManager {
      */
 
     public void removeProductFromInventory(Product product) {
-        try {
-            ProductDAO.deleteProduct(product);  // this is new, deletes product from the database
-    
+        save(() -> ProductDAO.deleteProduct(product), () -> {
             detachProduct();
             refreshInventoryList();
             switchTo(MidtownComics.InventoryView);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        }, error -> {
+            
+            // a product that's been sold stays in inventory, so we say why
+            // and leave it open for the copies to be set to 0 instead.
+            
+            if (error instanceof ProductInUseException) {
+                showProductError(error.getMessage() + ". Set its copies to 0 instead.");
+            } else {
+                showProductError("The product couldn't be removed.");
+                error.printStackTrace();
+            }
+        });
     }
     
 ///////////// ORDER ///////////////
@@ -168,6 +276,24 @@ public class ViewManager {
         updateOrderTotal();
         manager.switchTo(MidtownComics.CartView);
     }
+    
+    /**
+     * Attaches a customer to the Order, creating the Order first if
+     * necessary. The order is saved with the customer, and counts toward
+     * their order history, when it's submitted.
+     * 
+     * @param customer the customer placing the order, or null for a walk-in
+     */
+    
+    public void setOrderCustomer(Customer customer) {
+        if (order == null) {
+            order = new Order();
+        }
+        
+        order.setCustomer(customer);
+        updateOrderCustomer();
+        updateOrderTotal();
+    }
 
     /**
      * Modify the quantity of an OrderItem in an Order.
@@ -177,8 +303,7 @@ public class ViewManager {
      */
 
     public void modifyItemQuantityInOrder(Product product, int quantity) {
-        int index = findItemInOrder(product);
-        order.getItems().get(index).setQuantity(quantity);        
+        order.setQuantity(product.getProductId(), quantity);
 
         refreshCart();
         updateOrderTotal();
@@ -193,8 +318,7 @@ public class ViewManager {
      */
 
     public void removeItemFromOrder(Product product) {
-        int index = findItemInOrder(product);
-        order.getItems().remove(index);
+        order.removeItem(product.getProductId());
 
         refreshCart();
         updateOrderTotal();
@@ -213,22 +337,22 @@ public class ViewManager {
      */
     
     public int getOrderItemQuantity(Product product) {
-        int index = findItemInOrder(product);
+        OrderItem item = findItemInOrder(product);
         
-        return index != -1 ? order.getItems().get(index).getQuantity() : 0;
+        return item != null ? item.getQuantity() : 0;
     }
     
     /**
      * Returns the subtotal for this Product.
      * 
      * @param product the product whose subtotal we need
-     * @return the subtotal
+     * @return the subtotal, in cents
      */
     
-    public double getSubtotal(Product product) {
-        int index = findItemInOrder(product);
+    public long getSubtotal(Product product) {
+        OrderItem item = findItemInOrder(product);
         
-        return index != -1 ? order.getItems().get(index).getPrice() : 0;
+        return item != null ? item.getPrice() : 0;
     }
     
     /**
@@ -243,45 +367,177 @@ public class ViewManager {
             return false;
         }
         
-        return findItemInOrder(product) != -1;
+        return findItemInOrder(product) != null;
     }
     
     /**
-     * Submits an order. Aside from updating the inventory, this
-     * is all for show. We'll change that later.
+     * Submits an order. The order, its items, and the inventory changes
+     * are saved together in the background, and then the views are
+     * refreshed once.
+     */
+    
+    public void submitOrder() {
+        Order submitted = order;
+        submitted.setStatus("Complete");
+        
+        ready.thenCompose(v -> AsyncDAO.run(() -> OrderDAO.insertOrder(submitted))).whenCompleteAsync((result, error) -> {
+            if (error == null) {
+                if (order == submitted) {
+                    order = null;
+                }
+                
+                clearOrder();
+                refreshCart();
+                refreshInventoryList();
+                switchTo(MidtownComics.InventoryView);
+            } else {
+                submitted.setStatus("Open");
+                
+                // if another terminal sold the last copies of something in
+                // this order, nothing was saved. we'll show the current stock.
+                
+                if (unwrap(error) instanceof InsufficientStockException) {
+                    refreshInventoryList();
+                }
+                
+                unwrap(error).printStackTrace();
+            }
+        }, EDT);
+    }
+    
+    /**
+     * Retrieves a Product from inventory by its productId, in the background.
      * 
-     * @throws SQLException
+     * @param productId the productId of the product
+     * @param callback  receives the product (or null if it couldn't be found)
+     *                  on the event dispatch thread
      */
     
-    public void submitOrder() throws SQLException {
-        for (int i = 0; i < order.getItems().size(); i++) {
-            OrderItem item = order.getItems().get(i);
-            Product product = item.getProduct();
-            int quantity = item.getQuantity();
-            int copies = product.getCopies();
-            
-            product.setCopies(copies - quantity);
-            modifyProductInInventory(product);
-        }
+    public void getProduct(long productId, Consumer<Product> callback) {
+        load(MidtownComics.InventoryView, () -> ProductCache.getProduct(productId), callback);
+    }
+    
+    /**
+     * Retrieves a single page of the inventory, filtered and sorted, in the
+     * background. The products are listed from an in-memory index, so
+     * changing the order or the filter doesn't query the database again.
+     * 
+     * @param filter     the conditions the products have to meet
+     * @param sort       the order of the products
+     * @param descending whether to list them in reverse order
+     * @param after      the last product on the previous page, or null for the first page
+     * @param pageSize   the maximum number of products to retrieve
+     * @param callback   receives the page on the event dispatch thread
+     */
+    
+    public void getInventoryPage(InventoryFilter filter, InventorySort sort, boolean descending, Product after, int pageSize, Consumer<List<Product>> callback) {
+        load(inventoryIndexed, MidtownComics.InventoryView, () -> ProductCache.getProducts(inventoryIndex.getPage(filter, sort, descending, after, pageSize)), callback);
+    }
+    
+    /**
+     * Retrieves a single page of this week's new arrivals, latest release
+     * first, in the background. The week starts on New Comic Book Day
+     * (Wednesday).
+     * 
+     * @param after    the last product on the previous page, or null for the first page
+     * @param pageSize the maximum number of products to retrieve
+     * @param callback receives the page on the event dispatch thread
+     */
+    
+    public void getNewArrivals(Product after, int pageSize, Consumer<List<Product>> callback) {
+        long from = toDate(getReleaseDay());
+        long to = toDate(getReleaseDay().plusDays(6));
         
-        order = null;
-        clearOrder();
+        load(inventoryIndexed, MidtownComics.InventoryView, () -> ProductCache.getProducts(inventoryIndex.getReleased(from, to, true, after, pageSize)), callback);
     }
     
     /**
-     * Retrieves the inventory.
+     * Retrieves a single page of back issues (everything released before
+     * this week), oldest first, in the background.
      * 
-     * @return the inventory
+     * @param after    the last product on the previous page, or null for the first page
+     * @param pageSize the maximum number of products to retrieve
+     * @param callback receives the page on the event dispatch thread
      */
     
-    public List<Product> getInventory() {
-        try {
-            return ProductDAO.getProducts();    // this is new, retrieves all products from the database
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    public void getBackIssues(Product after, int pageSize, Consumer<List<Product>> callback) {
+        long to = toDate(getReleaseDay().minusDays(1));
+        
+        load(inventoryIndexed, MidtownComics.InventoryView, () -> ProductCache.getProducts(inventoryIndex.getReleased(Long.MIN_VALUE, to, false, after, pageSize)), callback);
+    }
+    
+    /**
+     * Counts this week's new arrivals, in the background.
+     * 
+     * @param callback receives the count on the event dispatch thread
+     */
+    
+    public void countNewArrivals(Consumer<Integer> callback) {
+        long from = toDate(getReleaseDay());
+        long to = toDate(getReleaseDay().plusDays(6));
+        
+        load(inventoryIndexed, MidtownComics.InventoryView, () -> inventoryIndex.countReleased(from, to), callback);
+    }
+    
+    /**
+     * Searches the inventory by title, author, and issue number, in the
+     * background. Every word of the query has to match the start of a word
+     * in the product, and the best matches come first.
+     * 
+     * @param query    the words to search for
+     * @param limit    the maximum number of products to retrieve
+     * @param callback receives the matching products on the event dispatch thread
+     */
+    
+    public void searchInventory(String query, int limit, Consumer<List<Product>> callback) {
+        load(indexed, MidtownComics.InventoryView, () -> ProductCache.getProducts(productIndex.search(query, limit)), callback);
+    }
+    
+    /**
+     * Suggests series for a partly typed title, in the background, along
+     * with how many issues and copies of each are in stock. Series whose
+     * titles start with what's been typed come first, then series with a
+     * later word that does.
+     * 
+     * @param prefix   what's been typed so far
+     * @param limit    the maximum number of series to suggest
+     * @param callback receives the suggestions on the event dispatch thread
+     */
+    
+    public void suggestSeries(String prefix, int limit, Consumer<List<Series>> callback) {
+        load(seriesIndexed, MidtownComics.InventoryView, () -> seriesTrie.suggest(prefix, limit), callback);
+    }
+    
+    /**
+     * Imports a distributor catalog into inventory in the background. Rows
+     * that can't be imported are written next to the catalog, in a file with
+     * .rejects.csv added to its name.
+     * 
+     * @param source   the catalog (a CSV file)
+     * @param progress receives the running totals on the event dispatch thread
+     * @param done     receives the final totals on the event dispatch thread,
+     *                 or null if the import failed
+     */
+    
+    public void importProducts(Path source, Consumer<ImportResult> progress, Consumer<ImportResult> done) {
+        Path rejects = source.resolveSibling(source.getFileName() + ".rejects.csv");
         
-        return new ArrayList<>();
+        ready.thenCompose(v -> AsyncDAO.supply(() -> {
+            try {
+                return ProductImporter.importProducts(source, rejects, r -> EDT.execute(() -> progress.accept(r)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })).whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                unwrap(error).printStackTrace();
+            }
+            
+            // even a failed import may have saved some of the catalog
+            
+            refreshInventoryList();
+            done.accept(result);
+        }, EDT);
     }
     
     /**
@@ -297,19 +553,125 @@ public class ViewManager {
 /////////// CUSTOMER ////////////////
     
     /**
-     * Retrieves the customer list.
+     * Retrieves a Customer by its customerId, in the background.
+     * 
+     * @param customerId the customerId of the customer
+     * @param callback receives the customer (or null if it couldn't be found)
+     *                 on the event dispatch thread
+     */
+    
+    public void getCustomer(long customerId, Consumer<Customer> callback) {
+        load(MidtownComics.CustomerListView, () -> CustomerCache.getCustomer(customerId), callback);
+    }
+    
+    /**
+     * Retrieves a Customer by phone number, in the background.
+     * 
+     * @param phone    the phone number
+     * @param callback receives the customer (or null if it couldn't be found)
+     *                 on the event dispatch thread
+     */
+    
+    public void getCustomerByPhone(long phone, Consumer<Customer> callback) {
+        load(MidtownComics.CustomerListView, () -> CustomerCache.getCustomerByPhone(phone), callback);
+    }
+    
+    /**
+     * Finds the customers with a phone number, or whose phone numbers end
+     * in four digits, in the background. Anything but the digits, such as
+     * spaces, dashes, and parentheses, is ignored. If there are neither
+     * exactly four digits nor enough for a whole number, no one is found.
      * 
-     * @return the customer list
+     * @param phone    the whole phone number, or its last four digits
+     * @param limit    the maximum number of customers to retrieve
+     * @param callback receives the customers on the event dispatch thread
      */
     
-    public List<Customer> getCustomerList() {
-        try {
-            return CustomerDAO.getCustomers();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    public void findCustomersByPhone(String phone, int limit, Consumer<List<Customer>> callback) {
+        String digits = phone.replaceAll("\\D", "");
+        
+        if (digits.length() != 4 && (digits.length() < 7 || digits.length() > 15)) {
+            EDT.execute(() -> callback.accept(new ArrayList<>()));
+            return;
         }
         
-        return new ArrayList<>();
+        load(phonesIndexed, MidtownComics.CustomerListView, () -> {
+            long[] customerIds = new long[limit];
+            int found = digits.length() == 4
+                ? phoneIndex.findByLastFour(Integer.parseInt(digits), customerIds)
+                : phoneIndex.find(Long.parseLong(digits), customerIds);
+            
+            return CustomerCache.getCustomers(customerIds, found);
+        }, callback);
+    }
+    
+    /**
+     * Finds the customers whose names or email addresses are most similar
+     * to a query, in the background. Misspellings are allowed for.
+     * 
+     * @param query    a name (first, last, or both) or an email address
+     * @param limit    the maximum number of customers to retrieve
+     * @param callback receives the customers, most similar first, on the
+     *                 event dispatch thread
+     */
+    
+    public void searchCustomers(String query, int limit, Consumer<List<Customer>> callback) {
+        load(namesIndexed, MidtownComics.CustomerListView, () -> {
+            long[] customerIds = nameIndex.search(query, limit);
+            
+            return CustomerCache.getCustomers(customerIds, customerIds.length);
+        }, callback);
+    }
+    
+    /**
+     * Retrieves a Customer by email address, in the background.
+     * 
+     * @param email    the email address
+     * @param callback receives the customer (or null if it couldn't be found)
+     *                 on the event dispatch thread
+     */
+    
+    public void getCustomerByEmail(String email, Consumer<Customer> callback) {
+        load(MidtownComics.CustomerListView, () -> CustomerCache.getCustomerByEmail(email), callback);
+    }
+    
+    /**
+     * Retrieves a single page of the customer list, ordered by name, in the
+     * background.
+     * 
+     * @param after    the last customer on the previous page, or null for the first page
+     * @param pageSize the maximum number of customers to retrieve
+     * @param callback receives the page on the event dispatch thread
+     */
+    
+    public void getCustomerPage(Customer after, int pageSize, Consumer<List<Customer>> callback) {
+        load(MidtownComics.CustomerListView, () -> CustomerDAO.getCustomers(CustomerSort.LAST_NAME, after, pageSize), callback);
+    }
+    
+    /**
+     * Retrieves a customer's order count, lifetime total, and most recent
+     * order date, in the background.
+     * 
+     * @param customerId the customerId of the customer
+     * @param callback   receives the stats on the event dispatch thread
+     */
+    
+    public void getCustomerStats(long customerId, Consumer<CustomerStats> callback) {
+        load(MidtownComics.CustomerView, () -> CustomerStatsDAO.getCustomerStats(customerId), callback);
+    }
+    
+    /**
+     * Retrieves a single page of a customer's order history, most recent
+     * first, in the background.
+     * 
+     * @param customerId the customerId of the customer
+     * @param before     the last order on the previous page, or null for the first page
+     * @param pageSize   the maximum number of orders to retrieve
+     * @param callback   receives the page on the event dispatch thread
+     */
+    
+    public void getOrderHistory(long customerId, Order before, int pageSize, Consumer<List<Order>> callback) {
+        load(MidtownComics.CustomerView, () -> OrderDAO.getOrdersByCustomer(customerId, before, pageSize), callback);
     }
     
     /**
@@ -337,15 +699,11 @@ public class ViewManager {
      */
 
     public void addCustomerToList(Customer customer) {
-        try {            
-            CustomerDAO.insertCustomer(customer);
-    
+        save(() -> CustomerDAO.insertCustomer(customer), () -> {
             detachCustomer();
             refreshCustomerList();
             switchTo(MidtownComics.CustomerListView);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -355,15 +713,11 @@ public class ViewManager {
      */
 
     public void modifyCustomerInList(Customer customer) {
-        try {
-            CustomerDAO.updateCustomer(customer);
-            
+        save(() -> CustomerDAO.updateCustomer(customer), () -> {
             detachCustomer();
             refreshCustomerList();
             switchTo(MidtownComics.CustomerListView);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -373,17 +727,125 @@ public class ViewManager {
      */
 
     public void removeCustomerFromList(Customer customer) {
-        try {
-            CustomerDAO.deleteCustomer(customer);
-    
+        save(() -> CustomerDAO.deleteCustomer(customer), () -> {
             detachCustomer();
             refreshCustomerList();
             switchTo(MidtownComics.CustomerListView);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
+    /*
+     * Runs a query in the background on behalf of a view, then passes the
+     * result to a callback on the event dispatch thread. If the user leaves
+     * the view before the query finishes, it's cancelled.
+     */
+    
+    private <T> void load(String view, AsyncDAO.Query<T> query, Consumer<? super T> callback) {
+        load(ready, view, query, callback);
+    }
+    
+    /*
+     * Runs a query in the background, like load, once something else it
+     * depends on has finished.
+     */
+    
+    private <T> void load(CompletableFuture<?> after, String view, AsyncDAO.Query<T> query, Consumer<? super T> callback) {
+        CompletableFuture<T> future = AsyncDAO.supply(after, query);
+        Set<CompletableFuture<?>> loads = pending.computeIfAbsent(view, v -> ConcurrentHashMap.newKeySet());
+        
+        loads.add(future);
+        
+        future.whenComplete((result, error) -> loads.remove(future))
+            .thenAcceptAsync(callback, EDT)
+            .exceptionally(error -> {
+                if (!(unwrap(error) instanceof CancellationException)) {
+                    unwrap(error).printStackTrace();
+                }
+                
+                return null;
+            });
+    }
+    
+    /*
+     * Runs an update in the background, then runs a follow-up action on the
+     * event dispatch thread. Updates are never cancelled.
+     */
+    
+    private void save(AsyncDAO.Update update, Runnable then) {
+        save(update, then, Throwable::printStackTrace);
+    }
+    
+    /*
+     * Runs an update in the background, then runs either a follow-up action
+     * or, if the update fails, an error handler, on the event dispatch
+     * thread.
+     */
+    
+    private void save(AsyncDAO.Update update, Runnable then, Consumer<Throwable> failed) {
+        ready.thenCompose(v -> AsyncDAO.run(update)).whenCompleteAsync((result, error) -> {
+            if (error == null) {
+                then.run();
+            } else {
+                failed.accept(unwrap(error));
+            }
+        }, EDT).exceptionally(error -> {
+            unwrap(error).printStackTrace();
+            
+            return null;
+        });
+    }
+    
+    /*
+     * Cancels every pending load, except those requested by the specified view.
+     */
+    
+    private void cancelLoadsExcept(String view) {
+        for (Map.Entry<String, Set<CompletableFuture<?>>> entry : pending.entrySet()) {
+            if (!entry.getKey().equals(view)) {
+                for (CompletableFuture<?> future : entry.getValue()) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+    
+    /*
+     * Returns this week's New Comic Book Day: today, if it's a Wednesday,
+     * or else the Wednesday before.
+     */
+    
+    private static LocalDate getReleaseDay() {
+        return LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.WEDNESDAY));
+    }
+    
+    /*
+     * Converts a date into YYYYMMDD format, as release dates are stored.
+     */
+    
+    private static long toDate(LocalDate date) {
+        return date.getYear() * 10000L + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+    
+    /*
+     * Returns the exception that actually caused a future to fail.
+     */
+    
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        
+        return error;
+    }
+    
+    /*
+     * Shows an error message in the ProductView.
+     */
+    
+    private void showProductError(String message) {
+        ((ProductView) views.getComponent(MidtownComics.ProductViewIndex)).showError(message);
+    }
+    
     /*
      * Refreshes the inventory list in the InventoryView.
      */
@@ -416,6 +878,14 @@ public class ViewManager {
         ((OrderView) views.getComponent(MidtownComics.OrderViewIndex)).updateOrderTotal(order.getTotal());
     }
     
+    /*
+     * Updates the customer shown in the OrderView.
+     */
+    
+    private void updateOrderCustomer() {
+        ((OrderView) views.getComponent(MidtownComics.OrderViewIndex)).updateOrderCustomer(order.getCustomer());
+    }
+    
     /*
      * Clears the current order in the OrverView.
      */
@@ -428,16 +898,10 @@ public class ViewManager {
      * Finds an OrderItem in an Order.
      * 
      * @param product the product we're looking for
-     * @return the index of the item in the order
+     * @return the item, or null if the product isn't in the order
      */
     
-    private int findItemInOrder(Product product) {
-        for (int i = 0; i < order.getItems().size(); i++) {
-            if (order.getItems().get(i).getProduct().getProductId() == product.getProductId()) {
-                return i;
-            }
-        }
-
-        return -1;
+    private OrderItem findItemInOrder(Product product) {
+        return order == null ? null : order.getItem(product.getProductId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+package org.ucvts.comics.dao;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database work on a dedicated set of background threads, so the
+ * caller (usually the Swing event dispatch thread) never waits on it.
+ * 
+ * Each call returns a CompletableFuture. Cancelling the future before the
+ * work has started means it never runs; cancelling it afterwards means
+ * its result is thrown away. Work that's already talking to the database
+ * is never interrupted, since that would leave its connection in an
+ * unknown state.
+ * 
+ * At most midtowncomics.async.threads calls run at once (by default, as
+ * many as the connection pool allows). Virtual threads are used when the
+ * JVM supports them.
+ */
+
+public class AsyncDAO {
+
+    /**
+     * Database work that produces a result.
+     */
+
+    public interface Query<T> {
+
+        T call() throws SQLException;
+    }
+
+    /**
+     * Database work that doesn't produce a result.
+     */
+
+    public interface Update {
+
+        void run() throws SQLException;
+    }
+
+    private static final int THREADS = Math.max(1, Integer.getInteger("midtowncomics.async.threads",
+            Integer.getInteger("midtowncomics.pool.maxSize", 8)));
+
+    private static final Semaphore permits = new Semaphore(THREADS);
+    private static final ExecutorService executor = createExecutor();
+
+    /**
+     * Runs a query in the background.
+     * 
+     * @param query the query to run
+     * @return a future that completes with the query's result
+     */
+
+    public static <T> CompletableFuture<T> supply(Query<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        submit(future, query);
+
+        return future;
+    }
+
+    /**
+     * Runs a query in the background once something else has finished. If
+     * the returned future is cancelled first, the query never runs; unlike
+     * after.thenCompose(v -> supply(query)), cancelling it cancels the query
+     * itself, not just a future that depends on it.
+     * 
+     * @param after the future to wait for
+     * @param query the query to run
+     * @return a future that completes with the query's result, or with
+     *         after's exception if after fails
+     */
+
+    public static <T> CompletableFuture<T> supply(CompletableFuture<?> after, Query<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        after.whenComplete((result, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else if (!future.isDone()) {
+                submit(future, query);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Runs an update in the background.
+     * 
+     * @param update the update to run
+     * @return a future that completes when the update has finished
+     */
+
+    public static CompletableFuture<Void> run(Update update) {
+        return supply(() -> {
+            update.run();
+
+            return null;
+        });
+    }
+
+    /*
+     * Queues a query to complete a future. The query is skipped if the
+     * future is cancelled before it gets a thread and a permit.
+     */
+
+    private static <T> void submit(CompletableFuture<T> future, Query<T> query) {
+        Future<?> task = executor.submit(() -> {
+            if (future.isDone()) {
+                return;     // cancelled while it was waiting to run
+            }
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+
+                return;
+            }
+
+            try {
+                if (!future.isDone()) {
+                    future.complete(query.call());
+                }
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                task.cancel(false);
+            }
+        });
+    }
+
+    /*
+     * Creates the executor that runs database work. The permits semaphore,
+     * not the executor, limits how many calls run at once, so that virtual
+     * threads (which are unbounded) are limited the same way.
+     */
+
+    private static ExecutorService createExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // virtual threads aren't available before Java 21
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "database-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        pool.allowCoreThreadTimeOut(true);
+
+        return pool;
+    }
+}
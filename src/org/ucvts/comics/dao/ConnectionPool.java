@@ -0,0 +1,482 @@
+package org.ucvts.comics.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * A bounded pool of database connections.
+ *
+ * Opening an embedded Derby connection is expensive compared to the
+ * queries we run on it, so rather than opening a new connection for
+ * every DAO call, we keep a small number of them open and hand them
+ * out as needed. Callers still call close when they're done; that
+ * returns the connection to the pool instead of closing it.
+ *
+ * Statements and metadata created from a borrowed connection hand back
+ * the borrowed connection from getConnection, so it can't be used to
+ * reach (and close) the physical one. Unwrapping the connection, or going
+ * through ResultSet.getStatement, isn't supported.
+ */
+
+class ConnectionPool {
+
+    private final String url;
+    private final Properties props;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeout;
+    private final long borrowTimeout;
+    private final long leakThreshold;   // 0 turns leak detection off
+    private final boolean leakTraces;   // whether leak reports say where the connection was borrowed
+    private final int validationTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = new HashSet<>();
+    private final ScheduledExecutorService housekeeper;
+
+    private int total;          // idle + borrowed + connections being opened
+    private boolean closed;
+
+    /*
+     * Creates a pool that opens connections using the specified URL and
+     * properties. Sizing and timeouts are read from system properties,
+     * falling back to sensible defaults for a single terminal.
+     *
+     * @param url   the JDBC connection string
+     * @param props the connection properties (user, password, etc.)
+     */
+
+    ConnectionPool(String url, Properties props) {
+        this.url = url;
+        this.props = props;
+        this.minSize = Integer.getInteger("midtowncomics.pool.minSize", 1);
+        this.maxSize = Math.max(1, Integer.getInteger("midtowncomics.pool.maxSize", 8));
+        this.idleTimeout = Long.getLong("midtowncomics.pool.idleTimeoutMillis", 5 * 60 * 1000L);
+        this.borrowTimeout = Long.getLong("midtowncomics.pool.borrowTimeoutMillis", 30 * 1000L);
+        this.leakThreshold = Math.max(0, Long.getLong("midtowncomics.pool.leakThresholdMillis", 30 * 1000L));
+        this.leakTraces = Boolean.getBoolean("midtowncomics.pool.leakTraces");
+        this.validationTimeout = Integer.getInteger("midtowncomics.pool.validationTimeoutSeconds", 2);
+
+        // the housekeeper evicts connections that have been idle for too
+        // long and, if leak detection is on, reports connections that were
+        // borrowed but never closed.
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long shortest = leakThreshold > 0 ? Math.min(idleTimeout, leakThreshold) : idleTimeout;
+        long period = Math.max(1000L, shortest / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Borrows a connection from the pool, opening a new one if none are
+     * idle and the pool hasn't reached its maximum size. Otherwise, waits
+     * for another caller to return one.
+     *
+     * @return a connection that returns itself to the pool when closed
+     * @throws SQLException
+     */
+
+    Connection borrow() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeout);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean open = false;
+
+            lock.lock();
+            try {
+                while (candidate == null && !open) {
+                    if (closed) {
+                        throw new SQLException("Connection pool has been closed");
+                    }
+
+                    candidate = idle.pollFirst();
+
+                    if (candidate == null) {
+                        if (total < maxSize) {
+                            total++;
+                            open = true;
+                        } else {
+                            long remaining = deadline - System.nanoTime();
+
+                            if (remaining <= 0) {
+                                throw new SQLException("Timed out waiting for a database connection (" +
+                                        borrowed.size() + " of " + maxSize + " in use)");
+                            }
+
+                            available.awaitNanos(remaining);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            } finally {
+                lock.unlock();
+            }
+
+            // opening and validating connections happens outside the lock,
+            // so one slow connection doesn't hold up every other caller.
+
+            if (open) {
+                try {
+                    candidate = new PooledConnection(DriverManager.getConnection(url, props));
+                } catch (SQLException e) {
+                    discard(null);
+                    throw e;
+                }
+            } else if (!isValid(candidate)) {
+                discard(candidate);
+                continue;
+            }
+
+            // leak detection only needs the time a connection was borrowed.
+            // capturing the stack on every borrow is expensive, so it's only
+            // done when someone is tracking a leak down and has asked for it.
+
+            Throwable trace = leakThreshold > 0 && leakTraces ? new Throwable("Connection borrowed here") : null;
+
+            lock.lock();
+            try {
+                candidate.borrowedAt = System.currentTimeMillis();
+                candidate.borrowTrace = trace;
+                candidate.reported = false;
+                borrowed.add(candidate);
+            } finally {
+                lock.unlock();
+            }
+
+            return candidate.lend();
+        }
+    }
+
+    /*
+     * Closes every idle connection and stops the housekeeper. Borrowed
+     * connections are closed as they're returned.
+     */
+
+    void close() {
+        List<PooledConnection> toClose;
+
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            total -= toClose.size();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        housekeeper.shutdownNow();
+
+        for (PooledConnection pc : toClose) {
+            pc.closePhysical();
+        }
+    }
+
+    /*
+     * Returns a connection to the pool, resetting any transaction state
+     * the borrower left behind.
+     */
+
+    private void release(PooledConnection pc) {
+        boolean reusable;
+
+        try {
+            Connection conn = pc.physical;
+
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+
+            reusable = !conn.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        lock.lock();
+        try {
+            borrowed.remove(pc);
+
+            if (reusable && !closed) {
+                pc.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pc);
+                available.signal();
+
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        discard(pc);
+    }
+
+    /*
+     * Permanently removes a connection from the pool.
+     */
+
+    private void discard(PooledConnection pc) {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (pc != null) {
+            pc.closePhysical();
+        }
+    }
+
+    /*
+     * Checks whether an idle connection is still usable.
+     */
+
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.physical.isValid(validationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Evicts connections that have been idle past the idle timeout (keeping
+     * at least minSize open), tops the pool back up to minSize, and reports
+     * connections that have been borrowed for longer than the leak threshold.
+     * Runs on the housekeeper's schedule, or whenever a test calls it.
+     */
+
+    void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        List<PooledConnection> leaked = new ArrayList<>();
+        int missing;
+
+        lock.lock();
+        try {
+            // the oldest idle connections sit at the tail of the deque
+
+            Iterator<PooledConnection> it = idle.descendingIterator();
+
+            while (it.hasNext() && total - evicted.size() > minSize) {
+                PooledConnection pc = it.next();
+
+                if (now - pc.lastUsed < idleTimeout) {
+                    break;
+                }
+
+                it.remove();
+                evicted.add(pc);
+            }
+
+            total -= evicted.size();
+
+            for (PooledConnection pc : borrowed) {
+                if (leakThreshold > 0 && !pc.reported && now - pc.borrowedAt > leakThreshold) {
+                    pc.reported = true;
+                    leaked.add(pc);
+                }
+            }
+
+            missing = closed ? 0 : Math.max(0, minSize - total);
+            total += missing;
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : evicted) {
+            pc.closePhysical();
+        }
+
+        for (PooledConnection pc : leaked) {
+            System.err.println("Possible connection leak: connection borrowed " +
+                    (now - pc.borrowedAt) + "ms ago and not yet closed");
+
+            if (pc.borrowTrace != null) {
+                pc.borrowTrace.printStackTrace();
+            } else {
+                System.err.println("Run with -Dmidtowncomics.pool.leakTraces=true to see where it was borrowed");
+            }
+        }
+
+        for (int i = 0; i < missing; i++) {
+            try {
+                PooledConnection pc = new PooledConnection(DriverManager.getConnection(url, props));
+
+                lock.lock();
+                try {
+                    idle.addLast(pc);
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                discard(null);
+            }
+        }
+    }
+
+    /*
+     * A physical connection and its bookkeeping. Each time it's lent out,
+     * callers get a fresh proxy, so a stale reference to a connection that
+     * was already closed can't be used to interfere with the next borrower.
+     *
+     * Everything but physical is guarded by the pool's lock.
+     */
+
+    private class PooledConnection {
+
+        private final Connection physical;
+        private long lastUsed = System.currentTimeMillis();
+        private long borrowedAt;
+        private Throwable borrowTrace;
+        private boolean reported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lend() {
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new Handle(this)
+            );
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // nothing more we can do with a broken connection
+            }
+        }
+    }
+
+    /*
+     * Intercepts close (and isClosed) on a borrowed connection, passing
+     * every other call straight through to the physical connection.
+     * Statements and metadata are wrapped in a Child, so their
+     * getConnection returns the borrowed connection.
+     */
+
+    private class Handle implements InvocationHandler {
+
+        private final PooledConnection pc;
+        private boolean returned;
+
+        Handle(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                if (!returned) {
+                    returned = true;
+                    release(pc);
+                }
+
+                return null;
+            } else if (name.equals("isClosed")) {
+                return returned || pc.physical.isClosed();
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return "Pooled" + pc.physical;
+            } else if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            Object result;
+
+            try {
+                result = method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            if (result instanceof Statement || result instanceof DatabaseMetaData) {
+                return Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { method.getReturnType() },
+                    new Child(proxy, result)
+                );
+            }
+
+            return result;
+        }
+    }
+
+    /*
+     * Intercepts getConnection on a statement or metadata object created
+     * from a borrowed connection, passing every other call straight through.
+     */
+
+    private static class Child implements InvocationHandler {
+
+        private final Object connection;
+        private final Object target;
+
+        Child(Object connection, Object target) {
+            this.connection = connection;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("getConnection") && method.getParameterCount() == 0) {
+                return connection;
+            } else if (name.equals("equals") && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode") && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/*
+ * Walks a result set one row at a time, building each object only when
+ * the stream asks for it. The result set, statement, and connection are
+ * closed as soon as the last row has been read, or when the stream is
+ * closed, whichever happens first.
+ */
+
+class Cursor<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+
+    private final Connection conn;
+    private final Statement stmt;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private boolean closed;
+
+    Cursor(Connection conn, Statement stmt, ResultSet rs, RowMapper<T> mapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+
+        this.conn = conn;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+
+        try {
+            if (rs.next()) {
+                action.accept(mapper.map(rs));
+
+                return true;
+            }
+        } catch (SQLException e) {
+            close();
+
+            throw new UncheckedSQLException(e);
+        }
+
+        close();
+
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            rs.close();
+            stmt.close();
+        } catch (SQLException e) {
+            // the connection is what matters, and we close it below
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // nothing more we can do
+            }
+        }
+    }
+}
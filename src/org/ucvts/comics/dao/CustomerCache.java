@@ -0,0 +1,302 @@
+package org.ucvts.comics.dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ucvts.comics.model.Customer;
+
+/**
+ * A read-through cache of Customers that can be searched by customerId,
+ * phone number, or email address.
+ * 
+ * Customers are cached by customerId. Phone numbers and (normalized) email
+ * addresses are cached separately and point at a customerId, so a customer
+ * is only ever cached once no matter how it was found. CustomerDAO
+ * invalidates a customer whenever it's inserted, updated, or deleted.
+ * Customers returned by the cache are shared, and should be treated as
+ * read-only.
+ * 
+ * A customer that's invalidated while it's being read from the database
+ * isn't cached, since what was read may be the version from before the
+ * change. A lookup by customerId takes that customer's generation before
+ * reading, as ProductCache does. A lookup by phone or email can't know
+ * which customer it will find, so it takes a generation that moves on
+ * whenever any customer is invalidated. Caching a customer and its keys,
+ * and invalidating them, happen under one lock, so the three maps always
+ * agree.
+ * 
+ * The size and time-to-live of the cache are read from the
+ * midtowncomics.customerCache.maxSize and .ttlMillis system properties.
+ */
+
+public class CustomerCache {
+
+    private static final int MAX_SIZE = Integer.getInteger("midtowncomics.customerCache.maxSize", 10000);
+    private static final long TTL = Long.getLong("midtowncomics.customerCache.ttlMillis", 5 * 60 * 1000L);
+
+    private static final LruCache<Long, Customer> byId = new LruCache<>(MAX_SIZE, TTL);
+    private static final LruCache<Long, Long> byPhone = new LruCache<>(MAX_SIZE, TTL);
+    private static final LruCache<String, Long> byEmail = new LruCache<>(MAX_SIZE, TTL);
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static long invalidations;      // guarded by CustomerCache.class
+
+    /**
+     * Retrieves a Customer by customerId, from the cache if it's there and
+     * from the database if it isn't.
+     * 
+     * @param customerId the customerId of the customer to retrieve
+     * @return the customer, or null if there is no such customer
+     * @throws SQLException
+     */
+
+    public static Customer getCustomer(long customerId) throws SQLException {
+        Customer customer = byId.get(customerId);
+
+        if (customer != null) {
+            hits.incrementAndGet();
+
+            return customer;
+        }
+
+        misses.incrementAndGet();
+
+        long generation = byId.generation(customerId);
+
+        customer = CustomerDAO.getCustomer(customerId);
+
+        if (customer != null) {
+            cacheIfUnchanged(customer, generation);
+        }
+
+        return customer;
+    }
+
+    /**
+     * Retrieves several Customers, in the order given, from the cache where
+     * possible. Any that no longer exist are left out.
+     * 
+     * @param customerIds the customerIds of the customers to retrieve
+     * @param count       how many of the customerIds to use, from the start
+     * @return the customers that were found
+     * @throws SQLException
+     */
+
+    public static List<Customer> getCustomers(long[] customerIds, int count) throws SQLException {
+        List<Customer> customers = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            Customer customer = getCustomer(customerIds[i]);
+
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+
+        return customers;
+    }
+
+    /**
+     * Retrieves a Customer by phone number.
+     * 
+     * @param phone the phone number
+     * @return the customer, or null if no customer has that phone number
+     * @throws SQLException
+     */
+
+    public static Customer getCustomerByPhone(long phone) throws SQLException {
+        Long customerId = byPhone.get(phone);
+
+        if (customerId != null) {
+            Customer customer = byId.get(customerId);
+
+            // the customer may have been evicted since, so we make sure the
+            // phone number still belongs to the customer we found.
+
+            if (customer != null && customer.getPhone() == phone) {
+                hits.incrementAndGet();
+
+                return customer;
+            }
+        }
+
+        misses.incrementAndGet();
+
+        long generation = getInvalidations();
+        Customer customer = CustomerDAO.getCustomerByPhone(phone);
+
+        if (customer != null) {
+            cacheIfNoneInvalidated(customer, generation);
+        }
+
+        return customer;
+    }
+
+    /**
+     * Retrieves a Customer by email address. Email addresses are compared
+     * without regard to case or surrounding whitespace.
+     * 
+     * @param email the email address
+     * @return the customer, or null if no customer has that email address
+     * @throws SQLException
+     */
+
+    public static Customer getCustomerByEmail(String email) throws SQLException {
+        String key = normalizeEmail(email);
+        Long customerId = byEmail.get(key);
+
+        if (customerId != null) {
+            Customer customer = byId.get(customerId);
+
+            if (customer != null && key.equals(normalizeEmail(customer.getEmail()))) {
+                hits.incrementAndGet();
+
+                return customer;
+            }
+        }
+
+        misses.incrementAndGet();
+
+        long generation = getInvalidations();
+        Customer customer = CustomerDAO.getCustomerByEmail(key);
+
+        if (customer != null) {
+            cacheIfNoneInvalidated(customer, generation);
+        }
+
+        return customer;
+    }
+
+    /**
+     * Returns the number of lookups answered by the cache.
+     * 
+     * @return hits
+     */
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to go to the database.
+     * 
+     * @return misses
+     */
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of lookups answered by the cache.
+     * 
+     * @return the hit rate, between 0 and 1
+     */
+
+    public static double getHitRate() {
+        long hits = getHits();
+        long requests = hits + getMisses();
+
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Returns the number of customers evicted to make room for others.
+     * 
+     * @return evictions
+     */
+
+    public static long getEvictions() {
+        return byId.getEvictions();
+    }
+
+    /**
+     * Returns the number of customers currently cached.
+     * 
+     * @return size
+     */
+
+    public static int size() {
+        return byId.size();
+    }
+
+    /*
+     * Normalizes an email address for comparison.
+     */
+
+    static String normalizeEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /*
+     * Removes a customer from the cache, along with the phone number and
+     * email address that point at it, both as it is now and as it was
+     * cached (the old row's, if they've changed).
+     */
+
+    static synchronized void invalidate(Customer customer) {
+        Customer cached = byId.invalidate(customer.getCustomerId());
+
+        invalidateKeys(customer);
+
+        if (cached != null) {
+            invalidateKeys(cached);
+        }
+
+        invalidations++;
+    }
+
+    /*
+     * Removes every customer from the cache.
+     */
+
+    static synchronized void invalidateAll() {
+        byId.invalidateAll();
+        byPhone.invalidateAll();
+        byEmail.invalidateAll();
+        invalidations++;
+    }
+
+    private static synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /*
+     * Adds a customer read by customerId, and its phone number and email
+     * address, to the cache, unless it's been invalidated since the
+     * generation was taken.
+     */
+
+    private static synchronized void cacheIfUnchanged(Customer customer, long generation) {
+        if (byId.putIfUnchanged(customer.getCustomerId(), customer, generation)) {
+            cacheKeys(customer);
+        }
+    }
+
+    /*
+     * Adds a customer read by phone number or email address, and its keys,
+     * to the cache, unless any customer has been invalidated since.
+     */
+
+    private static synchronized void cacheIfNoneInvalidated(Customer customer, long generation) {
+        if (invalidations == generation) {
+            byId.put(customer.getCustomerId(), customer);
+            cacheKeys(customer);
+        }
+    }
+
+    private static void cacheKeys(Customer customer) {
+        byPhone.put(customer.getPhone(), customer.getCustomerId());
+        byEmail.put(normalizeEmail(customer.getEmail()), customer.getCustomerId());
+    }
+
+    private static void invalidateKeys(Customer customer) {
+        byPhone.invalidate(customer.getPhone());
+        byEmail.invalidate(normalizeEmail(customer.getEmail()));
+    }
+}
@@ -7,10 +7,25 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.ucvts.comics.model.Customer;
 
 public class CustomerDAO {
+    
+    // notified of every change we make to the customers table, the same
+    // way ProductDAO notifies its listeners.
+    
+    private static final List<CustomerListener> listeners = new CopyOnWriteArrayList<>();
+    
+    // the columns toCustomer reads, in the order it reads them, as with
+    // ProductDAO.COLUMNS.
+    
+    static final String[] COLUMNS = {
+        "id", "firstname", "lastname", "phone", "email", "street", "city", "state", "postalcode"
+    };
 
     /**
      * Retrieves a Customer from the database.
@@ -33,7 +48,7 @@ public class CustomerDAO {
         // prepared statement is a parameterized statement that allows
         // us to pass in values to predefined placeholders.
         
-        PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM customers WHERE customerId = ?");
+        PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM customers WHERE id = ?");
         
         // we need to provide an actual value for our placeholder.
         
@@ -84,55 +99,156 @@ public class CustomerDAO {
     }
     
     /**
-     * Retrieves all Customers from the database.
+     * Retrieves a Customer from the database by phone number.
      * 
-     * @return a list of cusomters retrieved from the database
+     * @param phone the phone number
+     * @return the first customer with that phone number, or null if there isn't one
      * @throws SQLException
      */
     
-    public static List<Customer> getCustomers() throws SQLException {
+    public static Customer getCustomerByPhone(long phone) throws SQLException {
+        Customer customer = null;
+        Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT * FROM customers WHERE phone = ? ORDER BY id FETCH FIRST ROW ONLY"
+        );
+        
+        pstmt.setLong(1, phone);
+        
+        ResultSet rs = pstmt.executeQuery();
+        
+        if (rs.next()) {
+            customer = toCustomer(rs);
+        }
+        
+        rs.close();
+        pstmt.close();
+        conn.close();
+        
+        return customer;
+    }
+    
+    /**
+     * Retrieves a Customer from the database by email address, ignoring
+     * case and surrounding whitespace.
+     * 
+     * @param email the email address
+     * @return the first customer with that email address, or null if there isn't one
+     * @throws SQLException
+     */
+    
+    public static Customer getCustomerByEmail(String email) throws SQLException {
+        Customer customer = null;
+        Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT * FROM customers WHERE emailkey = ? ORDER BY id FETCH FIRST ROW ONLY"
+        );
+        
+        pstmt.setString(1, CustomerCache.normalizeEmail(email));
+        
+        ResultSet rs = pstmt.executeQuery();
+        
+        if (rs.next()) {
+            customer = toCustomer(rs);
+        }
+        
+        rs.close();
+        pstmt.close();
+        conn.close();
+        
+        return customer;
+    }
+    
+    /**
+     * Retrieves every Customer with a given last name, ordered by first name.
+     * 
+     * @param lastName the last name
+     * @return a list of customers with that last name
+     * @throws SQLException
+     */
+    
+    public static List<Customer> getCustomersByLastName(String lastName) throws SQLException {
         List<Customer> customers = new ArrayList<>();
         Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT * FROM customers WHERE lastname = ? ORDER BY firstname, id"
+        );
         
-        // earlier, we created a prepared statement (i.e., a parameterized
-        // statement). this is just a regular statement, which is used for
-        // simpler queries that don't require additional values.
+        pstmt.setString(1, lastName);
         
-        Statement stmt = conn.createStatement();
+        ResultSet rs = pstmt.executeQuery();
         
-        // statements are executed the same way prepared statements are. their
-        // results are stored in a result set, too. the only difference is we
-        // pass the SQL directly into the executeQuery method.
+        while (rs.next()) {
+            customers.add(toCustomer(rs));
+        }
         
-        ResultSet rs = stmt.executeQuery("SELECT * FROM customers");
+        rs.close();
+        pstmt.close();
+        conn.close();
+        
+        return customers;
+    }
+    
+    /**
+     * Passes every Customer in the database to an action, one at a time,
+     * without building a list of them.
+     * 
+     * @param action the action to perform on each customer
+     * @throws SQLException
+     */
+    
+    public static void forEachCustomer(Consumer<? super Customer> action) throws SQLException {
+        DAO.forEach("SELECT * FROM customers", CustomerDAO::toCustomer, action);
+    }
+    
+    /**
+     * Returns a lazily evaluated stream of every Customer in the database.
+     * The stream holds a database connection until it has been read to the
+     * end or closed, so it should be used in a try-with-resources statement.
+     * A SQLException thrown while reading is rethrown as an UncheckedSQLException.
+     * 
+     * @return a stream of customers
+     * @throws SQLException
+     */
+    
+    public static Stream<Customer> streamCustomers() throws SQLException {
+        return DAO.stream("SELECT * FROM customers", CustomerDAO::toCustomer);
+    }
+    
+    /**
+     * Retrieves a single page of Customers from the database.
+     * 
+     * @param sort     the order of the customers
+     * @param after    the last customer on the previous page, or null for the first page
+     * @param pageSize the maximum number of customers to retrieve
+     * @return a list of at most pageSize customers
+     * @throws SQLException
+     */
+    
+    public static List<Customer> getCustomers(CustomerSort sort, Customer after, int pageSize) throws SQLException {
+        List<Customer> customers = new ArrayList<>(pageSize);
+        Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT * FROM customers " +
+            (after == null ? "" : "WHERE " + sort.after() + " ") +
+            "ORDER BY " + sort.orderBy() + " " +
+            "FETCH FIRST ? ROWS ONLY"
+        );
+        
+        // rather than skipping over every row on the earlier pages, we start
+        // right after the last customer the caller has already seen.
+        
+        int index = after == null ? 1 : sort.bind(pstmt, 1, after);
+        pstmt.setInt(index, pageSize);
+        
+        ResultSet rs = pstmt.executeQuery();
         
-        // remember, next returns true if the cursor is advanced to the next
-        // row. last time, we called next in an if statement to advance the
-        // cursor to the first and only row.
-        //
-        // this query is designed to return more than one row, so we call next
-        // in the condition of a while loop instead. this allows us to repeatedly
-        // build CUSTOMERs from every row in the result set. the while loop will
-        // exist after the last row is processed and next returns false.
-                
         while (rs.next()) {
-        	 Customer customer = new Customer();
-             
-             customer.setCustomerId(rs.getLong(1));
-             customer.setFirstName(rs.getString(2));
-             customer.setLastName(rs.getString(3));
-             customer.setPhone(rs.getLong(4));
-             customer.setEmail(rs.getString(5));
-             customer.setStreetAddress(rs.getString(6));
-             customer.setCity(rs.getString(7));
-             customer.setState(rs.getString(8));
-             customer.setPostalCode(rs.getString(9));
-                        
-            customers.add(customer);
+            customers.add(toCustomer(rs));
         }
         
         rs.close();
-        stmt.close();
+        pstmt.close();
         conn.close();
         
         return customers;
@@ -148,33 +264,174 @@ public class CustomerDAO {
     public static void insertCustomer(Customer customer) throws SQLException {        
         Connection conn = DAO.getConnection();        
         PreparedStatement pstmt = conn.prepareStatement(
-        	"INSERT INTO customers (" +
-            "	firstname," +
-            "	lastname," +
-            "	phone," +
-            "	email," +
-            "	streetaddress," +
-            "	city," +
-            "	state," +
-            "	postalcode," +
-            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+            "INSERT INTO customers (" +
+            "   firstname, " +
+            "   lastname, " +
+            "   phone, " +
+            "   email, " +
+            "   street, " +
+            "   city, " +
+            "   state, " +
+            "   postalcode, " +
+            "   emailkey, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
         );
         
+        // new customers don't have an id yet (it's 0), so we take the next
+        // one from the allocator.
+        
+        if (customer.getCustomerId() == 0) {
+            customer.setCustomerId(IdAllocator.CUSTOMERS.next(conn));
+        }
+        
         // we've got quite a few more placeholders to fill in this time. they
         // are numbered in the order in which they appear in the SQL statement.
         
-        pstmt.setString(1, customer.getFirstName());
-        pstmt.setString(2, customer.getLastName());
-        pstmt.setLong(3, customer.getPhone());
-        pstmt.setString(4, customer.getEmail());
-        pstmt.setString(5, customer.getStreetAddress());
-        pstmt.setString(6, customer.getCity());
-        pstmt.setString(7, customer.getState());
-        pstmt.setString(8, customer.getPostalCode());
+        bindCustomer(pstmt, customer);
         
         pstmt.executeUpdate();
         pstmt.close();
         conn.close();
+        
+        CustomerCache.invalidate(customer);
+        
+        for (CustomerListener listener : listeners) {
+            listener.customerSaved(customer);
+        }
+    }
+    
+    /**
+     * Inserts Customers into the database in batches, using the default
+     * batch size.
+     * 
+     * @param customers the customers to insert into the database
+     * @return the generated customerId of each customer, in order
+     * @throws SQLException
+     */
+    
+    public static long[] insertCustomers(List<Customer> customers) throws SQLException {
+        return insertCustomers(customers, DAO.DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Inserts Customers into the database in batches. Each batch is sent to
+     * the database together, but they're all committed at once, so if one
+     * fails, none of them are saved. Every customer without a
+     * customerId is given one before it's inserted.
+     * 
+     * @param customers the customers to insert into the database
+     * @param batchSize the number of customers sent together
+     * @return the customerId of each customer, in order
+     * @throws SQLException
+     */
+    
+    public static long[] insertCustomers(List<Customer> customers, int batchSize) throws SQLException {
+        DAO.updateBatches(
+            "INSERT INTO customers (" +
+            "   firstname, " +
+            "   lastname, " +
+            "   phone, " +
+            "   email, " +
+            "   street, " +
+            "   city, " +
+            "   state, " +
+            "   postalcode, " +
+            "   emailkey, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            customers, CustomerDAO::bindInsert, batchSize
+        );
+        
+        // nothing is saved if the insert fails, so there's only anything to
+        // invalidate or tell the listeners about once it has succeeded.
+        
+        for (Customer customer : customers) {
+            CustomerCache.invalidate(customer);
+        }
+        
+        for (CustomerListener listener : listeners) {
+            for (Customer customer : customers) {
+                listener.customerSaved(customer);
+            }
+        }
+        
+        long[] keys = new long[customers.size()];
+        
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = customers.get(i).getCustomerId();
+        }
+        
+        return keys;
+    }
+    
+    /**
+     * Inserts or updates Customers in batches, using the default batch size.
+     * 
+     * @param customers the customers to insert or update
+     * @return the number of rows inserted or updated
+     * @throws SQLException
+     */
+    
+    public static int upsertCustomers(List<Customer> customers) throws SQLException {
+        return upsertCustomers(customers, DAO.DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Inserts or updates Customers in batches. A customer is matched to an
+     * existing row by email address, ignoring case and surrounding
+     * whitespace. Matching rows are updated; everything
+     * else is inserted.
+     * 
+     * @param customers the customers to insert or update
+     * @param batchSize the number of customers sent together
+     * @return the number of rows inserted or updated
+     * @throws SQLException
+     */
+    
+    public static int upsertCustomers(List<Customer> customers, int batchSize) throws SQLException {
+        try {
+            return upsertBatches(customers, batchSize);
+        } finally {
+            CustomerCache.invalidateAll();
+            
+            for (CustomerListener listener : listeners) {
+                listener.customersChanged();
+            }
+        }
+    }
+    
+    /*
+     * Executes the upsert statement in batches.
+     */
+    
+    private static int upsertBatches(List<Customer> customers, int batchSize) throws SQLException {
+        return DAO.updateBatches(
+            "MERGE INTO customers c USING SYSIBM.SYSDUMMY1 " +
+            "ON c.emailkey = ? " +
+            "WHEN MATCHED THEN UPDATE SET " +
+            "   firstname = ?, " +
+            "   lastname = ?, " +
+            "   phone = ?, " +
+            "   email = ?, " +
+            "   street = ?, " +
+            "   city = ?, " +
+            "   state = ?, " +
+            "   postalcode = ? " +
+            "WHEN NOT MATCHED THEN INSERT (" +
+            "   firstname, " +
+            "   lastname, " +
+            "   phone, " +
+            "   email, " +
+            "   street, " +
+            "   city, " +
+            "   state, " +
+            "   postalcode, " +
+            "   emailkey, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            customers, CustomerDAO::bindUpsert, batchSize
+        );
     }
     
     /**
@@ -187,30 +444,30 @@ public class CustomerDAO {
     public static void updateCustomer(Customer customer) throws SQLException {
         Connection conn = DAO.getConnection();
         PreparedStatement pstmt = conn.prepareStatement(
-			"UPDATE customers SET" +
-			"	firstname = ?" +
-			"	lastname = ?" +
-			"	phone = ?" +
-			"	email = ?" +
-			"	streetaddress = ?" +
-			"	city = ?" +
-			"	state = ?" +
-			"	postalcode = ?" +
-			"WHERE id = ?"
+            "UPDATE customers SET " +
+            "   firstname = ?, " +
+            "   lastname = ?, " +
+            "   phone = ?, " +
+            "   email = ?, " +
+            "   street = ?, " +
+            "   city = ?, " +
+            "   state = ?, " +
+            "   postalcode = ?, " +
+            "   emailkey = ? " +
+            "WHERE id = ?"
         );
                 
-        pstmt.setString(1, customer.getFirstName());
-        pstmt.setString(2, customer.getLastName());
-        pstmt.setLong(3, customer.getPhone());
-        pstmt.setString(4, customer.getEmail());
-        pstmt.setString(5, customer.getStreetAddress());
-        pstmt.setString(6, customer.getCity());
-        pstmt.setString(7, customer.getState());
-        pstmt.setString(8, customer.getPostalCode());
+        bindCustomer(pstmt, customer);
         
         pstmt.executeUpdate();
         pstmt.close();
         conn.close();
+        
+        CustomerCache.invalidate(customer);
+        
+        for (CustomerListener listener : listeners) {
+            listener.customerSaved(customer);
+        }
     }
     
     /**
@@ -222,7 +479,7 @@ public class CustomerDAO {
     
     public static void deleteCustomer(Customer customer) throws SQLException {
         Connection conn = DAO.getConnection();
-        PreparedStatement pstmt = conn.prepareStatement("DELETE FROM customer WHERE id = ?");
+        PreparedStatement pstmt = conn.prepareStatement("DELETE FROM customers WHERE id = ?");
         
         // we're deleting a CUSTOMER from the table, so we only need the primary key
         // (in this case, the id column). a primary key, which can be a combination
@@ -234,5 +491,153 @@ public class CustomerDAO {
         pstmt.executeUpdate();
         pstmt.close();
         conn.close();
+        
+        CustomerCache.invalidate(customer);
+        
+        for (CustomerListener listener : listeners) {
+            listener.customerDeleted(customer);
+        }
+    }
+    
+    /**
+     * Registers a listener to be notified of every change made to the
+     * customers table from here on.
+     * 
+     * @param listener the listener to add
+     */
+    
+    public static void addCustomerListener(CustomerListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Stops notifying a listener of changes to the customers table.
+     * 
+     * @param listener the listener to remove
+     */
+    
+    public static void removeCustomerListener(CustomerListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /*
+     * Builds a customer from the current row of a result set.
+     */
+    
+    static Customer toCustomer(ResultSet rs) throws SQLException {
+        return toCustomer(rs, 1);
+    }
+    
+    /*
+     * Builds a customer from the current row of a result set, where the
+     * customer columns start at the specified column (as in a join).
+     */
+    
+    static Customer toCustomer(ResultSet rs, int first) throws SQLException {
+        Customer customer = new Customer();
+        
+        customer.setCustomerId(rs.getLong(first));
+        customer.setFirstName(rs.getString(first + 1));
+        customer.setLastName(rs.getString(first + 2));
+        customer.setPhone(rs.getLong(first + 3));
+        customer.setEmail(rs.getString(first + 4));
+        customer.setStreetAddress(rs.getString(first + 5));
+        customer.setCity(rs.getString(first + 6));
+        customer.setState(rs.getString(first + 7));
+        customer.setPostalCode(rs.getString(first + 8));
+        
+        return customer;
+    }
+    
+    /*
+     * Binds a customer to the batch insert statement, giving it a customerId
+     * first if it doesn't have one. The id is reserved on the batch's own
+     * connection; borrowing another one could wait forever if every
+     * connection in the pool is already in use.
+     */
+    
+    private static void bindInsert(PreparedStatement pstmt, Customer customer) throws SQLException {
+        if (customer.getCustomerId() == 0) {
+            customer.setCustomerId(IdAllocator.CUSTOMERS.next(pstmt.getConnection()));
+        }
+        
+        bindCustomer(pstmt, customer);
+    }
+    
+    /*
+     * Binds a customer to an insert or update statement, with its
+     * normalized email address and then its id last.
+     */
+    
+    private static void bindCustomer(PreparedStatement pstmt, Customer customer) throws SQLException {
+        pstmt.setString(1, customer.getFirstName());
+        pstmt.setString(2, customer.getLastName());
+        pstmt.setLong(3, customer.getPhone());
+        pstmt.setString(4, customer.getEmail());
+        pstmt.setString(5, customer.getStreetAddress());
+        pstmt.setString(6, customer.getCity());
+        pstmt.setString(7, customer.getState());
+        pstmt.setString(8, customer.getPostalCode());
+        pstmt.setString(9, CustomerCache.normalizeEmail(customer.getEmail()));
+        pstmt.setLong(10, customer.getCustomerId());
+    }
+    
+    /*
+     * Adds the emailkey column: each customer's email address, normalized
+     * as CustomerCache does it, with an index so customers can be looked up
+     * by email address without scanning the table. Existing customers are
+     * filled in here, in Java, so their keys match the ones we'll look up.
+     */
+    
+    static void addEmailKeys(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        
+        stmt.execute("ALTER TABLE customers ADD COLUMN emailkey VARCHAR(255) NOT NULL DEFAULT ''");
+        
+        PreparedStatement update = conn.prepareStatement("UPDATE customers SET emailkey = ? WHERE id = ?");
+        ResultSet rs = stmt.executeQuery("SELECT id, email FROM customers");
+        
+        while (rs.next()) {
+            update.setString(1, CustomerCache.normalizeEmail(rs.getString(2)));
+            update.setLong(2, rs.getLong(1));
+            update.addBatch();
+        }
+        
+        rs.close();
+        update.executeBatch();
+        update.close();
+        
+        stmt.execute("CREATE INDEX customers_emailkey_idx ON customers (emailkey, id)");
+        stmt.close();
+    }
+    
+    /*
+     * Binds a customer to the upsert statement, which needs the match
+     * column, then the update columns, then the insert columns. Like
+     * products, a customer without a customerId is given a new id in case
+     * it's inserted.
+     */
+    
+    private static void bindUpsert(PreparedStatement pstmt, Customer customer) throws SQLException {
+        pstmt.setString(1, CustomerCache.normalizeEmail(customer.getEmail()));
+        pstmt.setString(2, customer.getFirstName());
+        pstmt.setString(3, customer.getLastName());
+        pstmt.setLong(4, customer.getPhone());
+        pstmt.setString(5, customer.getEmail());
+        pstmt.setString(6, customer.getStreetAddress());
+        pstmt.setString(7, customer.getCity());
+        pstmt.setString(8, customer.getState());
+        pstmt.setString(9, customer.getPostalCode());
+        
+        pstmt.setString(10, customer.getFirstName());
+        pstmt.setString(11, customer.getLastName());
+        pstmt.setLong(12, customer.getPhone());
+        pstmt.setString(13, customer.getEmail());
+        pstmt.setString(14, customer.getStreetAddress());
+        pstmt.setString(15, customer.getCity());
+        pstmt.setString(16, customer.getState());
+        pstmt.setString(17, customer.getPostalCode());
+        pstmt.setString(18, CustomerCache.normalizeEmail(customer.getEmail()));
+        pstmt.setLong(19, customer.getCustomerId() != 0 ? customer.getCustomerId() : IdAllocator.CUSTOMERS.next(pstmt.getConnection()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package org.ucvts.comics.dao;
+
+import org.ucvts.comics.model.Customer;
+
+/**
+ * Receives notice of changes CustomerDAO makes to the customers table, so
+ * anything built from it (like a lookup index) can be kept up to date.
+ *
+ * Listeners are called on the thread that made the change, after it has
+ * been saved.
+ */
+
+public interface CustomerListener {
+
+    /**
+     * Called after a Customer has been inserted or updated.
+     *
+     * @param customer the customer, as it was saved
+     */
+
+    void customerSaved(Customer customer);
+
+    /**
+     * Called after a Customer has been deleted.
+     *
+     * @param customer the customer that was deleted
+     */
+
+    void customerDeleted(Customer customer);
+
+    /**
+     * Called after many Customers have changed at once (by an import, for
+     * example), when it isn't known exactly which ones.
+     */
+
+    void customersChanged();
+}
@@ -0,0 +1,64 @@
+package org.ucvts.comics.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.ucvts.comics.model.Customer;
+
+/**
+ * The orders in which pages of Customers can be retrieved.
+ * 
+ * Like ProductSort, every order ends with the customer ID, so the next
+ * page can always be found from the last customer on the current one.
+ */
+
+public enum CustomerSort {
+
+    ID("id", "id > ?"),
+    LAST_NAME("lastname, firstname, id",
+        "(lastname > ? OR (lastname = ? AND (firstname > ? OR (firstname = ? AND id > ?))))");
+
+    private final String orderBy;
+    private final String after;
+
+    private CustomerSort(String orderBy, String after) {
+        this.orderBy = orderBy;
+        this.after = after;
+    }
+
+    /*
+     * Returns the columns to order by.
+     */
+
+    String orderBy() {
+        return orderBy;
+    }
+
+    /*
+     * Returns a condition matching the rows that come after a given customer.
+     */
+
+    String after() {
+        return after;
+    }
+
+    /*
+     * Binds the sort key of a customer to the placeholders of the after
+     * condition, starting at the specified index.
+     *
+     * @return the index of the next unused placeholder
+     */
+
+    int bind(PreparedStatement pstmt, int index, Customer customer) throws SQLException {
+        if (this == LAST_NAME) {
+            pstmt.setString(index++, customer.getLastName());
+            pstmt.setString(index++, customer.getLastName());
+            pstmt.setString(index++, customer.getFirstName());
+            pstmt.setString(index++, customer.getFirstName());
+        }
+
+        pstmt.setLong(index++, customer.getCustomerId());
+
+        return index;
+    }
+}
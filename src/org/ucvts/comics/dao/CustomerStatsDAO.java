@@ -0,0 +1,95 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.ucvts.comics.model.CustomerStats;
+import org.ucvts.comics.model.Money;
+import org.ucvts.comics.model.Order;
+
+/*
+ * Per-customer order totals.
+ *
+ * Rather than adding up a customer's orders every time we want to show
+ * them, we keep a running total in the customerstats table. It's updated
+ * in the same transaction that saves each order, so it's always in step
+ * with the orders table, and reading it is a single primary key lookup.
+ */
+
+public class CustomerStatsDAO {
+
+    /**
+     * Retrieves a customer's order count, lifetime total, and most recent
+     * order date.
+     *
+     * @param customerId the customerId of the customer
+     * @return the customer's stats (all zero if they haven't placed an order)
+     * @throws SQLException
+     */
+
+    public static CustomerStats getCustomerStats(long customerId) throws SQLException {
+        CustomerStats stats = new CustomerStats(customerId);
+        Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT ordercount, lifetimetotal, lastorderdate FROM customerstats WHERE customerid = ?"
+        );
+
+        pstmt.setLong(1, customerId);
+
+        ResultSet rs = pstmt.executeQuery();
+
+        if (rs.next()) {
+            stats = new CustomerStats(
+                customerId,
+                rs.getInt(1),
+                Money.fromBigDecimal(rs.getBigDecimal(2)),
+                rs.getLong(3)
+            );
+        }
+
+        rs.close();
+        pstmt.close();
+        conn.close();
+
+        return stats;
+    }
+
+    /*
+     * Adds a newly placed order to its customer's stats. This runs on the
+     * checkout connection, so it's committed or rolled back with the order.
+     * Walk-in sales don't belong to a customer, so there's nothing to record.
+     *
+     * @throws SQLException
+     */
+
+    static void recordOrder(Connection conn, Order order) throws SQLException {
+        if (order.getCustomer() == null) {
+            return;
+        }
+
+        PreparedStatement pstmt = conn.prepareStatement(
+            "MERGE INTO customerstats s " +
+            "USING SYSIBM.SYSDUMMY1 ON s.customerid = ? " +
+            "WHEN MATCHED THEN UPDATE SET " +
+            "   ordercount = s.ordercount + 1, " +
+            "   lifetimetotal = s.lifetimetotal + ?, " +
+            "   lastorderdate = CASE WHEN s.lastorderdate < ? THEN ? ELSE s.lastorderdate END " +
+            "WHEN NOT MATCHED THEN INSERT (customerid, ordercount, lifetimetotal, lastorderdate) " +
+            "   VALUES (?, 1, ?, ?)"
+        );
+
+        long customerId = order.getCustomer().getCustomerId();
+
+        pstmt.setLong(1, customerId);
+        pstmt.setBigDecimal(2, Money.toBigDecimal(order.getTotal()));
+        pstmt.setLong(3, order.getOrderDate());
+        pstmt.setLong(4, order.getOrderDate());
+        pstmt.setLong(5, customerId);
+        pstmt.setBigDecimal(6, Money.toBigDecimal(order.getTotal()));
+        pstmt.setLong(7, order.getOrderDate());
+        pstmt.executeUpdate();
+        pstmt.close();
+    }
+}
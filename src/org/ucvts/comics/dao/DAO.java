@@ -2,34 +2,70 @@ package org.ucvts.comics.dao;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class DAO {
         
     private static Connection conn;            // a connection to the database
     private static DatabaseMetaData metadata;  // a reference to the database metadata
+    private static volatile ConnectionPool pool;  // shared by every DAO
     
     /**
-     * Creates each table in the database, inserting sample records when
-     * and where applicable.
+     * The number of rows sent to the database together by the batch insert
+     * and upsert methods, unless the caller asks for a different size.
+     */
+    
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("midtowncomics.batchSize", 500);
+    
+    /*
+     * The number of rows fetched at a time when streaming a whole table.
+     */
+    
+    private static final int FETCH_SIZE = Integer.getInteger("midtowncomics.fetchSize", 1000);
+    
+    /**
+     * Brings the database schema up to date, creating the database and
+     * inserting sample records if this is the first time we've run.
      * 
      * @throws SQLException
      */
     
     public static void buildDatabase() throws SQLException {
-        conn = DAO.getConnection();
+        Connection conn = DAO.getConnection();
+        
+        try {
+            Schema.migrate(conn);
+        } finally {
+            conn.close();
+        }
+    }
+    
+    /*
+     * Creates each of the original tables that doesn't already exist,
+     * inserting sample records when and where applicable. This is the first
+     * schema migration. Databases created before the schema was versioned
+     * may already have some or all of these tables.
+     * 
+     * @param connection a connection to the database
+     * @throws SQLException
+     */
+    
+    static void createTables(Connection connection) throws SQLException {
+        conn = connection;
         metadata = conn.getMetaData();
         
         DAO.createProductsTable();      // creates products table
         DAO.createCustomersTable();     // creates customers table
         DAO.createOrdersTable();        // creates orders table
         DAO.createOrderItemsTable();    // creates orderitems table
-                
-        conn.close();
     }
     
     /*
@@ -45,7 +81,10 @@ public class DAO {
         // false, then we haven't yet created the products table. we'll
         // do so now.
         
-        if (!rs.next()) {
+        boolean exists = rs.next();
+        rs.close();
+        
+        if (!exists) {
             Statement stmt = conn.createStatement();
             
             stmt.execute(
@@ -59,6 +98,7 @@ public class DAO {
                 "   copies INT NOT NULL" +
                 ")"
             );
+            stmt.close();
             
             // we're going to insert the same sample products we used in
             // the Midtown Comics, Pt. 1 tutorial. this time, they'll be
@@ -81,7 +121,10 @@ public class DAO {
         // false, then we haven't yet created the customers table. we'll
         // do so now.
                 
-        if (!rs.next()) {
+        boolean exists = rs.next();
+        rs.close();
+        
+        if (!exists) {
             Statement stmt = conn.createStatement();
             
             stmt.execute(
@@ -97,6 +140,7 @@ public class DAO {
                 "   postalcode CHAR(5) NOT NULL" +
                 ")"
             );
+            stmt.close();
         }
     }
     
@@ -113,7 +157,10 @@ public class DAO {
         // false, then we haven't yet created the orders table. we'll
         // do so now.
                 
-        if (!rs.next()) {
+        boolean exists = rs.next();
+        rs.close();
+        
+        if (!exists) {
             Statement stmt = conn.createStatement();
             
             stmt.execute(
@@ -125,6 +172,7 @@ public class DAO {
                 "   customerid BIGINT references customers(id)" +
                 ")"
             );
+            stmt.close();
         }
     }
     
@@ -141,7 +189,10 @@ public class DAO {
         // false, then we haven't yet created the orderitems table. we'll
         // do so now.
                 
-        if (!rs.next()) {
+        boolean exists = rs.next();
+        rs.close();
+        
+        if (!exists) {
             Statement stmt = conn.createStatement();
             
             stmt.execute(
@@ -152,6 +203,7 @@ public class DAO {
                 "   productid BIGINT references products(id)" +
                 ")"
             );
+            stmt.close();
         }
     }
     
@@ -164,30 +216,222 @@ public class DAO {
     private static void insertSampleProducts() throws SQLException {
         Statement stmt = conn.createStatement();
         
-        // this will serve as our initial inventory of products
+        // this will serve as our initial inventory of products. we add each
+        // insert to a batch so they're all sent to the database at once.
         
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630301, 1, 19.99, 3)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630510, 2, 19.99, 7)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630710, 3, 19.99, 9)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630910, 4, 19.99, 12)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19631010, 5, 19.99, 3)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19631110, 6, 19.99, 7)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19631210, 7, 19.99, 9)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19640110, 8, 19.99, 12)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19640210, 9, 19.99, 3)");
-        stmt.executeUpdate("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19640310, 10, 19.99, 7)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630301, 1, 19.99, 3)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630510, 2, 19.99, 7)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630710, 3, 19.99, 9)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19630910, 4, 19.99, 12)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19631010, 5, 19.99, 3)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19631110, 6, 19.99, 7)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19631210, 7, 19.99, 9)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19640110, 8, 19.99, 12)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19640210, 9, 19.99, 3)");
+        stmt.addBatch("INSERT INTO products (title, author, releasedate, issue, unitprice, copies) VALUES ('The Amazing Spider-Man', 'Stan Lee', 19640310, 10, 19.99, 7)");
         
+        stmt.executeBatch();
         stmt.close();
     }
     
     /*
-     * Establishes and returns a connection to the database.
+     * Executes an insert, update, or merge statement in batches of batchSize.
+     * The batches are sent one after another but committed together, so
+     * either every row is saved or, if any batch fails, none of them are.
+     * 
+     * @param sql       the statement to execute for each row
+     * @param rows      the objects to bind to the statement
+     * @param binder    binds an object to the statement
+     * @param batchSize the number of rows sent together
+     * @return the number of rows affected
+     * @throws SQLException
+     */
+    
+    static <T> int updateBatches(String sql, List<T> rows, StatementBinder<T> binder, int batchSize)
+            throws SQLException
+    {
+        int affected = 0;
+        Exception failure = null;
+        Connection conn = DAO.getConnection();
+        
+        try {
+            conn.setAutoCommit(false);
+            
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int start = 0; start < rows.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, rows.size());
+                    
+                    for (int i = start; i < end; i++) {
+                        binder.bind(pstmt, rows.get(i));
+                        pstmt.addBatch();
+                    }
+                    
+                    for (int count : pstmt.executeBatch()) {
+                        affected += Math.max(count, 0);
+                    }
+                }
+            }
+            
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            failure = e;
+            
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            
+            throw e;
+        } finally {
+            
+            // a failure to restore autocommit mustn't hide the reason the
+            // batches failed, so it's attached to that instead.
+            
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                if (failure == null) {
+                    throw e;
+                }
+                
+                failure.addSuppressed(e);
+            } finally {
+                conn.close();
+            }
+        }
+        
+        return affected;
+    }
+    
+    /*
+     * Runs a query and passes each row, as an object, to an action. Only
+     * one row is held in memory at a time.
+     * 
+     * @param sql    the query
+     * @param mapper builds an object from a row
+     * @param action the action to perform on each object
+     * @throws SQLException
+     */
+    
+    static <T> void forEach(String sql, RowMapper<T> mapper, Consumer<? super T> action) throws SQLException {
+        try (Connection conn = DAO.getConnection();
+             Statement stmt = createCursor(conn);
+             ResultSet rs = stmt.executeQuery(sql))
+        {
+            while (rs.next()) {
+                action.accept(mapper.map(rs));
+            }
+        }
+    }
+    
+    /*
+     * Runs a query and returns a lazily evaluated stream of its rows. The
+     * stream holds a connection until it has been read to the end or closed,
+     * so callers should use it in a try-with-resources statement.
+     * 
+     * @param sql    the query
+     * @param mapper builds an object from a row
+     * @return a stream of objects, one per row
+     * @throws SQLException
+     */
+    
+    static <T> Stream<T> stream(String sql, RowMapper<T> mapper) throws SQLException {
+        Connection conn = DAO.getConnection();
+        Statement stmt = null;
+        
+        try {
+            stmt = createCursor(conn);
+            
+            Cursor<T> cursor = new Cursor<>(conn, stmt, stmt.executeQuery(sql), mapper);
+            
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException e) {
+            if (stmt != null) {
+                stmt.close();
+            }
+            
+            conn.close();
+            
+            throw e;
+        }
+    }
+    
+    /*
+     * Lists a table's columns for a select list, each qualified by the
+     * table's alias in the query (as in p.id, p.title).
+     */
+    
+    static String columns(String alias, String[] names) {
+        StringBuilder list = new StringBuilder();
+        
+        for (String name : names) {
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+            
+            list.append(alias).append('.').append(name);
+        }
+        
+        return list.toString();
+    }
+    
+    /*
+     * Creates a forward-only, read-only statement that fetches FETCH_SIZE
+     * rows at a time, which is the cheapest way to walk a large table.
+     */
+    
+    private static Statement createCursor(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(FETCH_SIZE);
+        
+        return stmt;
+    }
+    
+    /*
+     * Prepares a query as a cursor, like createCursor, for queries that take
+     * parameters.
+     */
+    
+    static PreparedStatement prepareCursor(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(FETCH_SIZE);
+        
+        return pstmt;
+    }
+    
+    /*
+     * Borrows a connection to the database from the connection pool,
+     * creating the pool the first time it's needed. Closing the returned
+     * connection hands it back to the pool.
      * 
      * @return a connection to the database
      * @throws SQLException
      */
     
     static Connection getConnection() throws SQLException {
+        ConnectionPool pool = DAO.pool;
+        
+        if (pool == null) {
+            synchronized (DAO.class) {
+                if (DAO.pool == null) {
+                    DAO.pool = createPool();
+                }
+                
+                pool = DAO.pool;
+            }
+        }
+        
+        return pool.borrow();
+    }
+    
+    /*
+     * Creates the connection pool used by getConnection.
+     * 
+     * @return a new connection pool
+     */
+    
+    private static ConnectionPool createPool() {
         Properties props = new Properties();
         
         // we need to add user and password properties to the
@@ -201,6 +445,6 @@ public class DAO {
         // name of our database, and create=true means we'll create
         // this database if it doesn't already exist.
 
-        return DriverManager.getConnection("jdbc:derby:midtowncomicsdb;create=true", props);
+        return new ConnectionPool("jdbc:derby:midtowncomicsdb;create=true", props);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Hands out ids for new rows.
+ *
+ * Each table has a database sequence that counts up by BLOCK_SIZE. Taking
+ * the next value from it reserves a block of BLOCK_SIZE ids that no other
+ * thread or process will ever be given, even if we crash. Ids within a
+ * block are handed out with an atomic counter, so we only go back to the
+ * database once per block, and threads only wait on each other while a
+ * new block is being reserved.
+ *
+ * Ids that are reserved but never used (because we shut down before
+ * using them all) are simply skipped, so ids are unique and increasing,
+ * but there may be gaps.
+ */
+
+class IdAllocator {
+
+    static final int BLOCK_SIZE = 100;
+
+    static final IdAllocator PRODUCTS = new IdAllocator("products");
+    static final IdAllocator CUSTOMERS = new IdAllocator("customers");
+    static final IdAllocator ORDERS = new IdAllocator("orders");
+    static final IdAllocator ORDER_ITEMS = new IdAllocator("orderitems");
+
+    private static final IdAllocator[] ALL = { PRODUCTS, CUSTOMERS, ORDERS, ORDER_ITEMS };
+
+    private final String table;
+    private final String sequence;
+    private volatile Block block = new Block(0, 0);
+
+    private IdAllocator(String table) {
+        this.table = table;
+        this.sequence = table + "_id_seq";
+    }
+
+    /*
+     * Returns an unused id, reserving a new block on the specified
+     * connection if the current block has run out. Sequences aren't
+     * transactional, so a block reserved during a transaction stays
+     * reserved even if the transaction is rolled back.
+     *
+     * @throws SQLException
+     */
+
+    long next(Connection conn) throws SQLException {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+
+            if (id < current.limit) {
+                return id;
+            }
+
+            // the block has run out. only one thread reserves the next
+            // one; any others that ran out at the same time wait here and
+            // then take their ids from it.
+
+            synchronized (this) {
+                if (block == current) {
+                    block = reserve(conn);
+                }
+            }
+        }
+    }
+
+    private Block reserve(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("VALUES NEXT VALUE FOR " + sequence))
+        {
+            rs.next();
+
+            long start = rs.getLong(1);
+
+            return new Block(start, start + BLOCK_SIZE);
+        }
+    }
+
+    /*
+     * Creates a sequence for each table, starting after the largest id
+     * that's already in use, and lets the id columns accept the ids we
+     * allocate instead of generating their own.
+     *
+     * @throws SQLException
+     */
+
+    static void createSequences(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (IdAllocator allocator : ALL) {
+                long max;
+
+                try (ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM " + allocator.table)) {
+                    rs.next();
+                    max = rs.getLong(1);
+                }
+
+                stmt.execute(
+                    "CREATE SEQUENCE " + allocator.sequence + " AS BIGINT " +
+                    "START WITH " + (max + 1) + " INCREMENT BY " + BLOCK_SIZE
+                );
+                stmt.execute("ALTER TABLE " + allocator.table + " ALTER COLUMN id SET GENERATED BY DEFAULT");
+            }
+
+            // derby normally reserves sequence values 100 at a time, and
+            // throws away whatever is left over if it isn't shut down
+            // cleanly. we already reserve ids in blocks, so one value at a
+            // time is plenty.
+
+            stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_DATABASE_PROPERTY('derby.language.sequence.preallocator', '1')");
+        }
+    }
+
+    /*
+     * A range of reserved ids: next is the next one to hand out, and limit
+     * is the first id past the end of the range.
+     */
+
+    private static class Block {
+
+        private final AtomicLong next;
+        private final long limit;
+
+        Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
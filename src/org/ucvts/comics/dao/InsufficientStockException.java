@@ -0,0 +1,39 @@
+package org.ucvts.comics.dao;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.ucvts.comics.model.OrderItem;
+
+/**
+ * Thrown when an order can't be checked out because one or more of its
+ * items no longer have enough copies in stock.
+ */
+
+@SuppressWarnings("serial")
+public class InsufficientStockException extends SQLException {
+
+    private final List<OrderItem> items;
+
+    /**
+     * Creates an instance of the InsufficientStockException class.
+     *
+     * @param items the items that couldn't be fulfilled
+     */
+
+    public InsufficientStockException(List<OrderItem> items) {
+        super("Not enough copies in stock for " + items.size() + " item(s)");
+
+        this.items = items;
+    }
+
+    /**
+     * Returns the items that couldn't be fulfilled.
+     *
+     * @return items
+     */
+
+    public List<OrderItem> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,167 @@
+package org.ucvts.comics.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * A bounded, thread-safe cache that evicts the least recently used entry
+ * once it's full. Entries also expire a fixed amount of time after they
+ * were loaded, so anything changed behind our back (by another terminal,
+ * for example) is eventually reloaded.
+ *
+ * A value read from the database can be out of date by the time it's put
+ * in the cache, if the row changed (and was invalidated) while it was
+ * being read. To catch that, each key has a generation, which goes up
+ * every time the key is invalidated. A reader takes the generation before
+ * going to the database, and puts what it read with putIfUnchanged, which
+ * drops it if the generation has moved on since. Generations are kept for
+ * a fixed number of stripes rather than for every key ever seen, so
+ * invalidating a key also moves on the other keys in its stripe; that only
+ * costs those keys' readers a miss.
+ */
+
+class LruCache<K, V> {
+
+    private static final int STRIPES = 1024;
+
+    private final int maxSize;
+    private final long ttl;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final long[] generations = new long[STRIPES];
+    private long epoch;     // goes up with invalidateAll, which moves on every key
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /*
+     * Creates an empty cache.
+     *
+     * @param maxSize the maximum number of entries
+     * @param ttl     how long, in milliseconds, an entry stays fresh (0 to never expire)
+     */
+
+    LruCache(int maxSize, long ttl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+
+        // an access-ordered linked hash map moves an entry to the end each
+        // time it's read, so the eldest entry is always the least recently used.
+
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /*
+     * Returns the cached value for a key, or null if it isn't cached or has expired.
+     */
+
+    synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry != null && ttl > 0 && System.currentTimeMillis() - entry.loadedAt > ttl) {
+            entries.remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+
+            return null;
+        }
+
+        hits++;
+
+        return entry.value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value));
+    }
+
+    /*
+     * Returns the generation of a key, to be passed to putIfUnchanged.
+     */
+
+    synchronized long generation(K key) {
+        return epoch + generations[stripe(key)];
+    }
+
+    /*
+     * Caches a value, unless its key has been invalidated since the
+     * generation was taken. Returns whether the value was cached.
+     */
+
+    synchronized boolean putIfUnchanged(K key, V value, long generation) {
+        if (generation(key) != generation) {
+            return false;
+        }
+
+        entries.put(key, new Entry<>(value));
+
+        return true;
+    }
+
+    synchronized V invalidate(K key) {
+        Entry<V> entry = entries.remove(key);
+
+        generations[stripe(key)]++;
+
+        return entry == null ? null : entry.value;
+    }
+
+    synchronized void invalidateAll() {
+        entries.clear();
+        epoch++;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    synchronized double getHitRate() {
+        long requests = hits + misses;
+
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long loadedAt = System.currentTimeMillis();
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+ * A single, numbered change to the database schema. Migrations are
+ * applied in order, each in its own transaction, and each is applied
+ * exactly once per database.
+ */
+
+abstract class Migration {
+
+    /*
+     * Work performed by a migration that can't be written as plain SQL.
+     */
+
+    interface Step {
+
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+
+    Migration(int version, String description) {
+        this.version = version;
+        this.description = description;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    /*
+     * Applies this migration. The caller commits (or rolls back) afterwards.
+     */
+
+    abstract void apply(Connection conn) throws SQLException;
+
+    /*
+     * Creates a migration that executes a script of SQL statements, in order.
+     */
+
+    static Migration script(int version, String description, String... statements) {
+        return new Migration(version, description) {
+            @Override
+            void apply(Connection conn) throws SQLException {
+                Statement stmt = conn.createStatement();
+
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+
+                stmt.close();
+            }
+        };
+    }
+
+    /*
+     * Creates a migration that runs Java code.
+     */
+
+    static Migration code(int version, String description, Step step) {
+        return new Migration(version, description) {
+            @Override
+            void apply(Connection conn) throws SQLException {
+                step.apply(conn);
+            }
+        };
+    }
+}
@@ -0,0 +1,436 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.Money;
+import org.ucvts.comics.model.Order;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+public class OrderDAO {
+
+    // the columns toOrder reads, in the order it reads them, and the item
+    // columns loadOrders reads, as with ProductDAO.COLUMNS.
+
+    static final String[] COLUMNS = { "id", "orderdate", "status", "total", "customerid" };
+    private static final String[] ITEM_COLUMNS = { "id", "quantity" };
+
+    // where each table's columns start in a row of the join in loadOrders
+
+    private static final int ITEM_FIRST = COLUMNS.length + 1;
+    private static final int PRODUCT_FIRST = ITEM_FIRST + ITEM_COLUMNS.length;
+    private static final int CUSTOMER_FIRST = PRODUCT_FIRST + ProductDAO.COLUMNS.length;
+
+    /**
+     * Checks out an Order. The order header, every order item, and the
+     * inventory changes are written in a single transaction on a single
+     * connection, so either all of them are saved or none of them are.
+     *
+     * @param order the order to check out
+     * @throws SQLException
+     */
+
+    public static void insertOrder(Order order) throws SQLException {
+        Connection conn = DAO.getConnection();
+
+        // by default, every statement is committed as soon as it runs. we
+        // turn that off so that nothing is visible to anyone else until we
+        // commit, and so we can roll everything back if something fails.
+
+        conn.setAutoCommit(false);
+
+        try {
+            decrementInventory(conn, order);
+            insertOrderHeader(conn, order);
+            OrderItemDAO.insertOrderItems(conn, order);
+            CustomerStatsDAO.recordOrder(conn, order);
+
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            conn.close();
+            
+            // the cached copies of these products now have the wrong number
+            // of copies. we wait until after the commit, so no one can cache
+            // the old values again in the meantime.
+            
+            ProductDAO.invalidate(order.getItems());
+        }
+
+        // we only get here if the order was committed
+
+        ProductDAO.copiesRemoved(order.getItems());
+    }
+
+    /**
+     * Retrieves an Order, along with its customer and every item and product
+     * in it, using a single query.
+     *
+     * @param orderId the orderId of the order to retrieve
+     * @return the order, or null if there is no such order
+     * @throws SQLException
+     */
+
+    public static Order getOrder(long orderId) throws SQLException {
+        List<Order> orders = getOrders("o.id = ?", "o.id", orderId);
+
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    /**
+     * Retrieves a page of Orders, in orderId order, along with their
+     * customers and every item and product in them, using a single query.
+     *
+     * @param afterOrderId the orderId of the last order on the previous page,
+     *                     or 0 for the first page
+     * @param pageSize     the maximum number of orders to retrieve
+     * @return a list of at most pageSize orders
+     * @throws SQLException
+     */
+
+    public static List<Order> getOrders(long afterOrderId, int pageSize) throws SQLException {
+        return getOrders(
+            "o.id IN (SELECT id FROM orders WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY)",
+            "o.id",
+            afterOrderId, pageSize
+        );
+    }
+
+    /**
+     * Retrieves a page of a customer's order history, most recent first,
+     * along with every item and product in each order, using a single query.
+     *
+     * @param customerId the customerId of the customer
+     * @param before     the last order on the previous page, or null for the
+     *                   first page
+     * @param pageSize   the maximum number of orders to retrieve
+     * @return a list of at most pageSize orders
+     * @throws SQLException
+     */
+
+    public static List<Order> getOrdersByCustomer(long customerId, Order before, int pageSize) throws SQLException {
+        long beforeOrderId = before == null ? Long.MAX_VALUE : before.getOrderId();
+
+        // orders_customer_idx is sorted by customer and then orderId, so
+        // each page picks up right where the last one left off instead of
+        // skipping over every order we've already shown.
+
+        return getOrders(
+            "o.id IN (SELECT id FROM orders WHERE customerid = ? AND id < ? " +
+            "ORDER BY id DESC FETCH FIRST ? ROWS ONLY)",
+            "o.id DESC",
+            customerId, beforeOrderId, pageSize
+        );
+    }
+
+    /**
+     * Passes every Order in the database to an action, in orderId order,
+     * along with its customer and every item and product in it. Orders are
+     * built one at a time from a single query, so only the current order is
+     * held in memory.
+     *
+     * @param action the action to perform on each order
+     * @throws SQLException
+     */
+
+    public static void forEachOrderWithItems(Consumer<? super Order> action) throws SQLException {
+        loadOrders(null, "o.id", false, action);
+    }
+
+    /*
+     * Retrieves complete orders matching a condition on the orders table
+     * (aliased o), sorted by the specified orders column.
+     */
+
+    private static List<Order> getOrders(String where, String orderBy, long... params) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+
+        loadOrders(where, orderBy, true, orders::add, params);
+
+        return orders;
+    }
+
+    /*
+     * Passes complete orders matching a condition on the orders table
+     * (aliased o), or every order if the condition is null, to an action.
+     *
+     * every order is joined to its customer, its items, and their products,
+     * so the whole graph comes back in one round trip rather than one query
+     * per order and another per item. a product or customer that shows up
+     * in more than one row is only built once, and every item that refers
+     * to it shares the same object. when we're streaming every order, we
+     * only share them within an order, so memory doesn't grow with the
+     * size of the table.
+     *
+     * @throws SQLException
+     */
+
+    private static void loadOrders(String where, String orderBy, boolean share, Consumer<? super Order> action,
+            long... params) throws SQLException
+    {
+        Map<Long, Product> products = new HashMap<>();
+        Map<Long, Customer> customers = new HashMap<>();
+
+        try (Connection conn = DAO.getConnection();
+             PreparedStatement pstmt = DAO.prepareCursor(conn,
+                "SELECT " +
+                DAO.columns("o", COLUMNS) + ", " +
+                DAO.columns("i", ITEM_COLUMNS) + ", " +
+                DAO.columns("p", ProductDAO.COLUMNS) + ", " +
+                DAO.columns("c", CustomerDAO.COLUMNS) + " " +
+                "FROM orders o " +
+                "LEFT JOIN orderitems i ON i.orderid = o.id " +
+                "LEFT JOIN products p ON p.id = i.productid " +
+                "LEFT JOIN customers c ON c.id = o.customerid " +
+                (where == null ? "" : "WHERE " + where + " ") +
+                "ORDER BY " + orderBy + ", i.id"))
+        {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setLong(i + 1, params[i]);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+
+                // the rows for each order are next to each other, so we
+                // gather items until the orderId changes, then build the
+                // order from them.
+
+                Order header = null;
+                ArrayList<OrderItem> items = null;
+
+                while (rs.next()) {
+                    long orderId = rs.getLong(1);
+
+                    if (header == null || header.getOrderId() != orderId) {
+                        if (header != null) {
+                            action.accept(withItems(header, items));
+
+                            if (!share) {
+                                products.clear();
+                                customers.clear();
+                            }
+                        }
+
+                        header = toOrder(rs);
+                        items = new ArrayList<>();
+
+                        if (header.getCustomer() != null) {
+                            long customerId = header.getCustomer().getCustomerId();
+                            Customer customer = customers.get(customerId);
+
+                            if (customer == null) {
+                                customer = CustomerDAO.toCustomer(rs, CUSTOMER_FIRST);
+                                customers.put(customerId, customer);
+                            }
+
+                            header.setCustomer(customer);
+                        }
+                    }
+
+                    long itemId = rs.getLong(ITEM_FIRST);
+
+                    if (rs.wasNull()) {
+                        continue;   // an order without any items
+                    }
+
+                    long productId = rs.getLong(PRODUCT_FIRST);
+                    Product product = products.get(productId);
+
+                    if (product == null) {
+                        product = ProductDAO.toProduct(rs, PRODUCT_FIRST);
+                        products.put(productId, product);
+                    }
+
+                    items.add(new OrderItem(itemId, product, rs.getInt(ITEM_FIRST + 1)));
+                }
+
+                if (header != null) {
+                    action.accept(withItems(header, items));
+                }
+            }
+        }
+    }
+
+    /*
+     * Builds a copy of an order header that includes its items.
+     */
+
+    private static Order withItems(Order header, ArrayList<OrderItem> items) {
+        return new Order(
+            header.getOrderId(),
+            header.getCustomer(),
+            header.getOrderDate(),
+            header.getStatus(),
+            items,
+            header.getTotal()
+        );
+    }
+
+    /**
+     * Retrieves the headers of every Order placed by a customer, most
+     * recent first, without their items. Use getOrdersByCustomer for a page
+     * of complete orders.
+     *
+     * @param customerId the customerId of the customer
+     * @return a list of orders, each with an empty list of items
+     * @throws SQLException
+     */
+
+    public static List<Order> getOrderHeadersByCustomer(long customerId) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+
+        try (Connection conn = DAO.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT * FROM orders WHERE customerid = ? ORDER BY id DESC"))
+        {
+            pstmt.setLong(1, customerId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(toOrder(rs));
+                }
+            }
+        }
+
+        return orders;
+    }
+
+    /**
+     * Passes every Order in the database to an action, one at a time,
+     * without building a list of them. Only the order header is loaded;
+     * each order's list of items is empty, and its customer (if any) only
+     * has its customerId set.
+     *
+     * @param action the action to perform on each order
+     * @throws SQLException
+     */
+
+    public static void forEachOrder(Consumer<? super Order> action) throws SQLException {
+        DAO.forEach("SELECT * FROM orders", OrderDAO::toOrder, action);
+    }
+
+    /**
+     * Returns a lazily evaluated stream of every Order header in the
+     * database, as described in forEachOrder. The stream holds a database
+     * connection until it has been read to the end or closed, so it should
+     * be used in a try-with-resources statement.
+     *
+     * @return a stream of orders
+     * @throws SQLException
+     */
+
+    public static Stream<Order> streamOrders() throws SQLException {
+        return DAO.stream("SELECT * FROM orders", OrderDAO::toOrder);
+    }
+
+    /*
+     * Inserts the order header, giving the order an ID if it doesn't have
+     * one yet.
+     *
+     * @throws SQLException
+     */
+
+    private static void insertOrderHeader(Connection conn, Order order) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(
+            "INSERT INTO orders (" +
+            "   orderdate, " +
+            "   status, " +
+            "   total, " +
+            "   customerid, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?, ?)"
+        );
+
+        if (order.getOrderId() == 0) {
+            order.setOrderId(IdAllocator.ORDERS.next(conn));
+        }
+
+        pstmt.setLong(1, order.getOrderDate());
+        pstmt.setString(2, order.getStatus().substring(0, 1));
+        pstmt.setBigDecimal(3, Money.toBigDecimal(order.getTotal()));
+
+        // walk-in sales aren't associated with a customer
+
+        if (order.getCustomer() == null) {
+            pstmt.setNull(4, Types.BIGINT);
+        } else {
+            pstmt.setLong(4, order.getCustomer().getCustomerId());
+        }
+
+        pstmt.setLong(5, order.getOrderId());
+        pstmt.executeUpdate();
+        pstmt.close();
+    }
+
+    /*
+     * Removes the purchased copies from inventory, failing the checkout if
+     * any item no longer has enough copies in stock.
+     *
+     * @throws SQLException
+     */
+
+    private static void decrementInventory(Connection conn, Order order) throws SQLException {
+        boolean[] results = ProductDAO.decrementCopies(conn, order.getItems());
+        List<OrderItem> unavailable = new ArrayList<>();
+
+        for (int i = 0; i < results.length; i++) {
+            if (!results[i]) {
+                unavailable.add(order.getItems().get(i));
+            }
+        }
+
+        if (!unavailable.isEmpty()) {
+            throw new InsufficientStockException(unavailable);
+        }
+    }
+
+    /*
+     * Builds an order header from the current row of a result set.
+     */
+
+    static Order toOrder(ResultSet rs) throws SQLException {
+        Customer customer = null;
+        long customerId = rs.getLong(5);
+
+        if (!rs.wasNull()) {
+            customer = new Customer();
+            customer.setCustomerId(customerId);
+        }
+
+        return new Order(
+            rs.getLong(1),
+            customer,
+            rs.getLong(2),
+            toStatus(rs.getString(3)),
+            new ArrayList<>(),
+            Money.fromBigDecimal(rs.getBigDecimal(4))
+        );
+    }
+
+    /*
+     * Expands the single character status code stored in the database.
+     */
+
+    private static String toStatus(String code) {
+        switch (code) {
+            case "O": return "Open";
+            case "C": return "Complete";
+            default: return code;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ucvts.comics.model.Order;
+import org.ucvts.comics.model.OrderItem;
+
+public class OrderItemDAO {
+
+    /**
+     * Retrieves every OrderItem in an order, along with its Product.
+     *
+     * @param orderId the orderId of the order
+     * @return a list of order items, in the order they were added
+     * @throws SQLException
+     */
+
+    public static List<OrderItem> getOrderItems(long orderId) throws SQLException {
+        List<OrderItem> items = new ArrayList<>();
+        Connection conn = DAO.getConnection();
+
+        // a join lets us load each item and its product in the same query,
+        // instead of running a separate query for each product.
+
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT i.id, i.quantity, " + DAO.columns("p", ProductDAO.COLUMNS) + " " +
+            "FROM orderitems i JOIN products p ON p.id = i.productid " +
+            "WHERE i.orderid = ? " +
+            "ORDER BY i.id"
+        );
+
+        pstmt.setLong(1, orderId);
+
+        ResultSet rs = pstmt.executeQuery();
+
+        while (rs.next()) {
+            items.add(new OrderItem(rs.getLong(1), ProductDAO.toProduct(rs, 3), rs.getInt(2)));
+        }
+
+        rs.close();
+        pstmt.close();
+        conn.close();
+
+        return items;
+    }
+
+    /*
+     * Inserts every item in an order as a single batch, using an existing
+     * connection so the items are saved in the same transaction as the order.
+     *
+     * @throws SQLException
+     */
+
+    static void insertOrderItems(Connection conn, Order order) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(
+            "INSERT INTO orderitems (" +
+            "   quantity, " +
+            "   orderid, " +
+            "   productid, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?)"
+        );
+
+        // a batch sends all of the rows to the database together, rather
+        // than making a round trip for each one.
+
+        for (OrderItem item : order.getItems()) {
+            if (item.getItemId() == 0) {
+                item.setItemId(IdAllocator.ORDER_ITEMS.next(conn));
+            }
+
+            pstmt.setLong(1, item.getQuantity());
+            pstmt.setLong(2, order.getOrderId());
+            pstmt.setLong(3, item.getProduct().getProductId());
+            pstmt.setLong(4, item.getItemId());
+            pstmt.addBatch();
+        }
+
+        pstmt.executeBatch();
+        pstmt.close();
+    }
+}
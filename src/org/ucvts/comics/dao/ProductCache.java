@@ -0,0 +1,148 @@
+package org.ucvts.comics.dao;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ucvts.comics.model.Product;
+
+/**
+ * A read-through cache of Products, keyed by productId.
+ * 
+ * Products are read from the cache when possible and from ProductDAO
+ * otherwise. ProductDAO invalidates a product whenever it's updated,
+ * deleted, or has copies removed from inventory, so the cache never
+ * returns a product that this application has since changed. A product
+ * that's invalidated while it's being read from the database isn't cached,
+ * since what was read may be the version from before the change. Products
+ * returned by the cache are shared, and should be treated as read-only.
+ * 
+ * The size and time-to-live of the cache are read from the
+ * midtowncomics.productCache.maxSize and .ttlMillis system properties.
+ */
+
+public class ProductCache {
+
+    private static final LruCache<Long, Product> cache = new LruCache<>(
+        Integer.getInteger("midtowncomics.productCache.maxSize", 10000),
+        Long.getLong("midtowncomics.productCache.ttlMillis", 5 * 60 * 1000L)
+    );
+
+    /**
+     * Retrieves a Product, from the cache if it's there and from the
+     * database if it isn't.
+     * 
+     * @param productId the productId of the product to retrieve
+     * @return the product, or null if there is no such product
+     * @throws SQLException
+     */
+
+    public static Product getProduct(long productId) throws SQLException {
+        Product product = cache.get(productId);
+
+        if (product == null) {
+
+            // if the product changes while we're reading it, what we read
+            // may be the old version, so it's only cached if it hasn't.
+
+            long generation = cache.generation(productId);
+
+            product = ProductDAO.getProduct(productId);
+
+            if (product != null) {
+                cache.putIfUnchanged(productId, product, generation);
+            }
+        }
+
+        return product;
+    }
+
+    /**
+     * Retrieves several Products, in the order given, from the cache where
+     * possible. Any that no longer exist are left out.
+     * 
+     * @param productIds the productIds of the products to retrieve
+     * @return the products that were found
+     * @throws SQLException
+     */
+
+    public static List<Product> getProducts(long[] productIds) throws SQLException {
+        List<Product> products = new ArrayList<>(productIds.length);
+
+        for (long productId : productIds) {
+            Product product = getProduct(productId);
+
+            if (product != null) {
+                products.add(product);
+            }
+        }
+
+        return products;
+    }
+
+    /**
+     * Returns the number of lookups answered by the cache.
+     * 
+     * @return hits
+     */
+
+    public static long getHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * Returns the number of lookups that had to go to the database.
+     * 
+     * @return misses
+     */
+
+    public static long getMisses() {
+        return cache.getMisses();
+    }
+
+    /**
+     * Returns the fraction of lookups answered by the cache.
+     * 
+     * @return the hit rate, between 0 and 1
+     */
+
+    public static double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    /**
+     * Returns the number of products evicted to make room for others.
+     * 
+     * @return evictions
+     */
+
+    public static long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    /**
+     * Returns the number of products currently cached.
+     * 
+     * @return size
+     */
+
+    public static int size() {
+        return cache.size();
+    }
+
+    /*
+     * Removes a product from the cache.
+     */
+
+    static void invalidate(long productId) {
+        cache.invalidate(productId);
+    }
+
+    /*
+     * Removes every product from the cache.
+     */
+
+    static void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -7,10 +7,26 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import org.ucvts.comics.model.Money;
+import org.ucvts.comics.model.OrderItem;
 import org.ucvts.comics.model.Product;
 
 public class ProductDAO {
+    
+    // notified of every change we make to the products table. changes are
+    // far rarer than notifications, so a copy-on-write list lets us notify
+    // without locking.
+    
+    private static final List<ProductListener> listeners = new CopyOnWriteArrayList<>();
+    
+    // the columns toProduct reads, in the order it reads them. joins select
+    // exactly these, so a column added to the table later can't shift them.
+    
+    static final String[] COLUMNS = { "id", "title", "author", "releasedate", "issue", "unitprice", "copies" };
 
     /**
      * Retrieves a Product from the database.
@@ -33,7 +49,7 @@ public class ProductDAO {
         // prepared statement is a parameterized statement that allows
         // us to pass in values to predefined placeholders.
         
-        PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM products WHERE productId = ?");
+        PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM products WHERE id = ?");
         
         // we need to provide an actual value for our placeholder.
         
@@ -66,7 +82,7 @@ public class ProductDAO {
             product.setAuthor(rs.getString(3));
             product.setReleaseDate(rs.getLong(4));
             product.setIssue(rs.getInt(5));
-            product.setUnitPrice(rs.getDouble(6));
+            product.setUnitPrice(Money.fromBigDecimal(rs.getBigDecimal(6)));
             product.setCopies(rs.getInt(7));
         }
         
@@ -81,53 +97,95 @@ public class ProductDAO {
     }
     
     /**
-     * Retrieves all Products from the database.
+     * Passes every Product in the database to an action, one at a time,
+     * without building a list of them.
+     * 
+     * @param action the action to perform on each product
+     * @throws SQLException
+     */
+    
+    public static void forEachProduct(Consumer<? super Product> action) throws SQLException {
+        DAO.forEach("SELECT * FROM products", ProductDAO::toProduct, action);
+    }
+    
+    /**
+     * Returns a lazily evaluated stream of every Product in the database.
+     * The stream holds a database connection until it has been read to the
+     * end or closed, so it should be used in a try-with-resources statement.
+     * A SQLException thrown while reading is rethrown as an UncheckedSQLException.
+     * 
+     * @return a stream of products
+     * @throws SQLException
+     */
+    
+    public static Stream<Product> streamProducts() throws SQLException {
+        return DAO.stream("SELECT * FROM products", ProductDAO::toProduct);
+    }
+    
+    /**
+     * Retrieves every issue of a series, in issue order.
      * 
-     * @return a list of products retrieved from the database
+     * @param title the title of the series
+     * @return a list of products with that title
      * @throws SQLException
      */
     
-    public static List<Product> getProducts() throws SQLException {
+    public static List<Product> getSeries(String title) throws SQLException {
         List<Product> products = new ArrayList<>();
         Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT * FROM products WHERE title = ? ORDER BY issue, id"
+        );
         
-        // earlier, we created a prepared statement (i.e., a parameterized
-        // statement). this is just a regular statement, which is used for
-        // simpler queries that don't require additional values.
+        pstmt.setString(1, title);
         
-        Statement stmt = conn.createStatement();
+        ResultSet rs = pstmt.executeQuery();
         
-        // statements are executed the same way prepared statements are. their
-        // results are stored in a result set, too. the only difference is we
-        // pass the SQL directly into the executeQuery method.
+        while (rs.next()) {
+            products.add(toProduct(rs));
+        }
         
-        ResultSet rs = stmt.executeQuery("SELECT * FROM products");
+        rs.close();
+        pstmt.close();
+        conn.close();
+        
+        return products;
+    }
+    
+    /**
+     * Retrieves a single page of Products from the database.
+     * 
+     * @param sort     the order of the products
+     * @param after    the last product on the previous page, or null for the first page
+     * @param pageSize the maximum number of products to retrieve
+     * @return a list of at most pageSize products
+     * @throws SQLException
+     */
+    
+    public static List<Product> getProducts(ProductSort sort, Product after, int pageSize) throws SQLException {
+        List<Product> products = new ArrayList<>(pageSize);
+        Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT * FROM products " +
+            (after == null ? "" : "WHERE " + sort.after() + " ") +
+            "ORDER BY " + sort.orderBy() + " " +
+            "FETCH FIRST ? ROWS ONLY"
+        );
+        
+        // rather than skipping over every row on the earlier pages, we start
+        // right after the last product the caller has already seen.
+        
+        int index = after == null ? 1 : sort.bind(pstmt, 1, after);
+        pstmt.setInt(index, pageSize);
+        
+        ResultSet rs = pstmt.executeQuery();
         
-        // remember, next returns true if the cursor is advanced to the next
-        // row. last time, we called next in an if statement to advance the
-        // cursor to the first and only row.
-        //
-        // this query is designed to return more than one row, so we call next
-        // in the condition of a while loop instead. this allows us to repeatedly
-        // build products from every row in the result set. the while loop will
-        // exist after the last row is processed and next returns false.
-                
         while (rs.next()) {
-            Product product = new Product();
-            
-            product.setProductId(rs.getLong(1));
-            product.setTitle(rs.getString(2));
-            product.setAuthor(rs.getString(3));
-            product.setReleaseDate(rs.getLong(4));
-            product.setIssue(rs.getInt(5));
-            product.setUnitPrice(rs.getDouble(6));
-            product.setCopies(rs.getInt(7));
-                        
-            products.add(product);
+            products.add(toProduct(rs));
         }
         
         rs.close();
-        stmt.close();
+        pstmt.close();
         conn.close();
         
         return products;
@@ -149,10 +207,18 @@ public class ProductDAO {
             "   releasedate, " +
             "   issue, " +
             "   unitprice, " +
-            "   copies " +
-            ") VALUES (?, ?, ?, ?, ?, ?)"
+            "   copies, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?)"
         );
         
+        // new products don't have an id yet (it's 0), so we take the next
+        // one from the allocator.
+        
+        if (product.getProductId() == 0) {
+            product.setProductId(IdAllocator.PRODUCTS.next(conn));
+        }
+        
         // we've got quite a few more placeholders to fill in this time. they
         // are numbered in the order in which they appear in the SQL statement.
         
@@ -160,12 +226,148 @@ public class ProductDAO {
         pstmt.setString(2, product.getAuthor());
         pstmt.setLong(3, product.getReleaseDate());
         pstmt.setInt(4, product.getIssue());
-        pstmt.setDouble(5, product.getUnitPrice());
+        pstmt.setBigDecimal(5, Money.toBigDecimal(product.getUnitPrice()));
         pstmt.setInt(6, product.getCopies());
+        pstmt.setLong(7, product.getProductId());
         
         pstmt.executeUpdate();
         pstmt.close();
         conn.close();
+        
+        for (ProductListener listener : listeners) {
+            listener.productSaved(product);
+        }
+    }
+    
+    /**
+     * Inserts Products into the database in batches, using the default
+     * batch size.
+     * 
+     * @param products the products to insert into the database
+     * @return the generated productId of each product, in order
+     * @throws SQLException
+     */
+    
+    public static long[] insertProducts(List<Product> products) throws SQLException {
+        return insertProducts(products, DAO.DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Inserts Products into the database in batches. Each batch is sent to
+     * the database together, but they're all committed at once, so if one
+     * fails, none of them are saved. Every product without a
+     * productId is given one before it's inserted.
+     * 
+     * @param products  the products to insert into the database
+     * @param batchSize the number of products sent together
+     * @return the productId of each product, in order
+     * @throws SQLException
+     */
+    
+    public static long[] insertProducts(List<Product> products, int batchSize) throws SQLException {
+        DAO.updateBatches(
+            "INSERT INTO products (" +
+            "   title, " +
+            "   author, " +
+            "   releasedate, " +
+            "   issue, " +
+            "   unitprice, " +
+            "   copies, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?)",
+            products, ProductDAO::bindInsert, batchSize
+        );
+        
+        // nothing is saved if the insert fails, so there's only anything to
+        // tell the listeners about once it has succeeded.
+        
+        for (ProductListener listener : listeners) {
+            for (Product product : products) {
+                listener.productSaved(product);
+            }
+        }
+        
+        long[] keys = new long[products.size()];
+        
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = products.get(i).getProductId();
+        }
+        
+        return keys;
+    }
+    
+    /**
+     * Inserts or updates Products in batches, using the default batch size.
+     * 
+     * @param products the products to insert or update
+     * @return the number of rows inserted or updated
+     * @throws SQLException
+     */
+    
+    public static int upsertProducts(List<Product> products) throws SQLException {
+        return upsertProducts(products, DAO.DEFAULT_BATCH_SIZE);
+    }
+    
+    /**
+     * Inserts or updates Products in batches. A product is matched to an
+     * existing row by its title and issue number, which is how distributor
+     * catalogs identify an issue. Matching rows are updated; everything
+     * else is inserted.
+     * 
+     * @param products  the products to insert or update
+     * @param batchSize the number of products sent together
+     * @return the number of rows inserted or updated
+     * @throws SQLException
+     */
+    
+    public static int upsertProducts(List<Product> products, int batchSize) throws SQLException {
+        
+        // we don't know which rows were updated rather than inserted, so we
+        // can't tell exactly which cached products are now out of date.
+        
+        try {
+            return upsertBatches(products, batchSize);
+        } finally {
+            productsChanged();
+        }
+    }
+    
+    /**
+     * Starts a series of upserts, such as a file imported a chunk at a time.
+     * Listeners are notified once, when the series is closed, instead of
+     * after every call.
+     * 
+     * @return the series of upserts
+     */
+    
+    public static Upsert beginUpsert() {
+        return new Upsert();
+    }
+    
+    /*
+     * Executes the upsert statement in batches, without notifying anyone.
+     */
+    
+    static int upsertBatches(List<Product> products, int batchSize) throws SQLException {
+        return DAO.updateBatches(
+            "MERGE INTO products p USING SYSIBM.SYSDUMMY1 " +
+            "ON p.title = ? AND p.issue = ? " +
+            "WHEN MATCHED THEN UPDATE SET " +
+            "   author = ?, " +
+            "   releasedate = ?, " +
+            "   unitprice = ?, " +
+            "   copies = ? " +
+            "WHEN NOT MATCHED THEN INSERT (" +
+            "   title, " +
+            "   author, " +
+            "   releasedate, " +
+            "   issue, " +
+            "   unitprice, " +
+            "   copies, " +
+            "   id " +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?)",
+            products, ProductDAO::bindUpsert, batchSize
+        );
     }
     
     /**
@@ -192,35 +394,308 @@ public class ProductDAO {
         pstmt.setString(2, product.getAuthor());
         pstmt.setLong(3, product.getReleaseDate());
         pstmt.setInt(4, product.getIssue());
-        pstmt.setDouble(5, product.getUnitPrice());
+        pstmt.setBigDecimal(5, Money.toBigDecimal(product.getUnitPrice()));
         pstmt.setInt(6, product.getCopies());
         pstmt.setLong(7, product.getProductId());
         
         pstmt.executeUpdate();
         pstmt.close();
         conn.close();
+        
+        ProductCache.invalidate(product.getProductId());
+        
+        for (ProductListener listener : listeners) {
+            listener.productSaved(product);
+        }
     }
     
     /**
-     * Deletes an existing Product from the database.
+     * Deletes an existing Product from the database. A product that has
+     * been sold can't be deleted, since its order items refer to it; set
+     * its copies to 0 instead.
      * 
      * @param product the product to delete
+     * @throws ProductInUseException if the product has been sold
      * @throws SQLException
      */
     
     public static void deleteProduct(Product product) throws SQLException {
+        try (Connection conn = DAO.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM products WHERE id = ?"))
+        {
+            // we're deleting a product from the table, so we only need the primary key
+            // (in this case, the id column). a primary key, which can be a combination
+            // of columns (called a composite key) is the value that is guaranteed to
+            // uniquely identify a row in the table.
+            
+            pstmt.setLong(1, product.getProductId());
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            
+            // the order items' foreign key stops the delete (23503 is a
+            // foreign key violation). checking for them first wouldn't stop
+            // a sale made in between.
+            
+            if ("23503".equals(e.getSQLState())) {
+                throw new ProductInUseException(product, e);
+            }
+            
+            throw e;
+        }
+        
+        ProductCache.invalidate(product.getProductId());
+        
+        for (ProductListener listener : listeners) {
+            listener.productDeleted(product);
+        }
+    }
+    
+    /**
+     * Registers a listener to be notified of every change made to the
+     * products table from here on.
+     * 
+     * @param listener the listener to add
+     */
+    
+    public static void addProductListener(ProductListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Stops notifying a listener of changes to the products table.
+     * 
+     * @param listener the listener to remove
+     */
+    
+    public static void removeProductListener(ProductListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Removes copies from inventory for each item. A line only succeeds if
+     * there are still enough copies in stock, so two terminals selling the
+     * same issue can never sell more copies than we have.
+     * 
+     * @param items the items being sold
+     * @return whether each item, in order, was successfully removed from inventory
+     * @throws SQLException
+     */
+    
+    public static boolean[] decrementCopies(List<OrderItem> items) throws SQLException {
         Connection conn = DAO.getConnection();
-        PreparedStatement pstmt = conn.prepareStatement("DELETE FROM products WHERE id = ?");
+        boolean[] results;
+        
+        try {
+            results = decrementCopies(conn, items);
+        } finally {
+            conn.close();
+            invalidate(items);
+        }
+        
+        List<OrderItem> removed = new ArrayList<>();
         
-        // we're deleting a product from the table, so we only need the primary key
-        // (in this case, the id column). a primary key, which can be a combination
-        // of columns (called a composite key) is the value that is guaranteed to
-        // uniquely identify a row in the table.
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                removed.add(items.get(i));
+            }
+        }
         
-        pstmt.setLong(1, product.getProductId());
+        copiesRemoved(removed);
         
-        pstmt.executeUpdate();
+        return results;
+    }
+    
+    /*
+     * Removes copies from inventory using an existing connection, so the
+     * changes can be part of a larger transaction.
+     * 
+     * @throws SQLException
+     */
+    
+    static boolean[] decrementCopies(Connection conn, List<OrderItem> items) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(
+            "UPDATE products SET copies = copies - ? WHERE id = ? AND copies >= ?"
+        );
+        
+        // the subtraction happens in the database against the current row,
+        // not against whatever copy of the product we have in memory. if
+        // there aren't enough copies left, the where clause doesn't match
+        // and the update count for that line is zero.
+        
+        for (OrderItem item : items) {
+            pstmt.setInt(1, item.getQuantity());
+            pstmt.setLong(2, item.getProduct().getProductId());
+            pstmt.setInt(3, item.getQuantity());
+            pstmt.addBatch();
+        }
+        
+        int[] counts = pstmt.executeBatch();
         pstmt.close();
-        conn.close();
+        
+        boolean[] results = new boolean[counts.length];
+        
+        for (int i = 0; i < counts.length; i++) {
+            results[i] = counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO;
+        }
+        
+        return results;
+    }
+    
+    /*
+     * Empties the product cache and notifies every listener that any product
+     * may have changed.
+     */
+    
+    private static void productsChanged() {
+        ProductCache.invalidateAll();
+        
+        for (ProductListener listener : listeners) {
+            listener.productsChanged();
+        }
+    }
+    
+    /*
+     * Notifies every listener that the copies in a list of items have been
+     * removed from inventory. Called once the removal has been committed.
+     */
+    
+    static void copiesRemoved(List<OrderItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        
+        for (ProductListener listener : listeners) {
+            listener.copiesRemoved(items);
+        }
+    }
+    
+    /*
+     * Removes the products in a list of items from the product cache.
+     */
+    
+    static void invalidate(List<OrderItem> items) {
+        for (OrderItem item : items) {
+            ProductCache.invalidate(item.getProduct().getProductId());
+        }
+    }
+    
+    /*
+     * Builds a product from the current row of a result set.
+     */
+    
+    static Product toProduct(ResultSet rs) throws SQLException {
+        return toProduct(rs, 1);
+    }
+    
+    /*
+     * Builds a product from the current row of a result set, where the
+     * product columns start at the specified column (as in a join).
+     */
+    
+    static Product toProduct(ResultSet rs, int first) throws SQLException {
+        Product product = new Product();
+        
+        product.setProductId(rs.getLong(first));
+        product.setTitle(rs.getString(first + 1));
+        product.setAuthor(rs.getString(first + 2));
+        product.setReleaseDate(rs.getLong(first + 3));
+        product.setIssue(rs.getInt(first + 4));
+        product.setUnitPrice(Money.fromBigDecimal(rs.getBigDecimal(first + 5)));
+        product.setCopies(rs.getInt(first + 6));
+        
+        return product;
+    }
+    
+    /*
+     * Binds a product to the batch insert statement, giving it a productId
+     * first if it doesn't have one. The id is reserved on the batch's own
+     * connection; borrowing another one could wait forever if every
+     * connection in the pool is already in use.
+     */
+    
+    private static void bindInsert(PreparedStatement pstmt, Product product) throws SQLException {
+        if (product.getProductId() == 0) {
+            product.setProductId(IdAllocator.PRODUCTS.next(pstmt.getConnection()));
+        }
+        
+        bindProduct(pstmt, product);
+    }
+    
+    /*
+     * Binds a product to an insert statement, with its id last.
+     */
+    
+    private static void bindProduct(PreparedStatement pstmt, Product product) throws SQLException {
+        pstmt.setString(1, product.getTitle());
+        pstmt.setString(2, product.getAuthor());
+        pstmt.setLong(3, product.getReleaseDate());
+        pstmt.setInt(4, product.getIssue());
+        pstmt.setBigDecimal(5, Money.toBigDecimal(product.getUnitPrice()));
+        pstmt.setInt(6, product.getCopies());
+        pstmt.setLong(7, product.getProductId());
+    }
+    
+    /*
+     * Binds a product to the upsert statement, which needs the match
+     * columns, then the update columns, then the insert columns. A product
+     * that already has a productId keeps it if it's inserted. We can't tell
+     * ahead of time whether any other row will be inserted, so it's given a
+     * new id, reserved on the batch's own connection, which goes unused if
+     * the row is updated instead.
+     */
+    
+    private static void bindUpsert(PreparedStatement pstmt, Product product) throws SQLException {
+        pstmt.setString(1, product.getTitle());
+        pstmt.setInt(2, product.getIssue());
+        pstmt.setString(3, product.getAuthor());
+        pstmt.setLong(4, product.getReleaseDate());
+        pstmt.setBigDecimal(5, Money.toBigDecimal(product.getUnitPrice()));
+        pstmt.setInt(6, product.getCopies());
+        pstmt.setString(7, product.getTitle());
+        pstmt.setString(8, product.getAuthor());
+        pstmt.setLong(9, product.getReleaseDate());
+        pstmt.setInt(10, product.getIssue());
+        pstmt.setBigDecimal(11, Money.toBigDecimal(product.getUnitPrice()));
+        pstmt.setInt(12, product.getCopies());
+        pstmt.setLong(13, product.getProductId() != 0 ? product.getProductId() : IdAllocator.PRODUCTS.next(pstmt.getConnection()));
+    }
+    
+    /**
+     * A series of upserts whose listeners are notified once, when it's
+     * closed. Closing it more than once has no effect.
+     */
+    
+    public static final class Upsert implements AutoCloseable {
+        
+        private boolean closed;
+        
+        private Upsert() {
+        }
+        
+        /**
+         * Inserts or updates Products in batches, like upsertProducts, but
+         * leaves the cache and listeners alone until the series is closed.
+         * 
+         * @param products the products to insert or update
+         * @return the number of rows inserted or updated
+         * @throws SQLException
+         */
+        
+        public int upsertProducts(List<Product> products) throws SQLException {
+            return upsertBatches(products, DAO.DEFAULT_BATCH_SIZE);
+        }
+        
+        /**
+         * Empties the product cache and notifies every listener that the
+         * products have changed.
+         */
+        
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                productsChanged();
+            }
+        }
     }
-}
\ No newline at end of file
+}
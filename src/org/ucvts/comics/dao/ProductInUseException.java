@@ -0,0 +1,39 @@
+package org.ucvts.comics.dao;
+
+import java.sql.SQLException;
+
+import org.ucvts.comics.model.Product;
+
+/**
+ * Thrown when a product can't be deleted because it has been sold. Its
+ * order items still refer to it, and the order history needs them.
+ */
+
+@SuppressWarnings("serial")
+public class ProductInUseException extends SQLException {
+
+    private final Product product;
+
+    /**
+     * Creates an instance of the ProductInUseException class.
+     *
+     * @param product the product that couldn't be deleted
+     * @param cause   the foreign key violation reported by the database
+     */
+
+    public ProductInUseException(Product product, SQLException cause) {
+        super(product.getTitle() + " #" + product.getIssue() + " has been sold, so it can't be removed", cause);
+
+        this.product = product;
+    }
+
+    /**
+     * Returns the product that couldn't be deleted.
+     *
+     * @return product
+     */
+
+    public Product getProduct() {
+        return product;
+    }
+}
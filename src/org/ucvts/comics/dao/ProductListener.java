@@ -0,0 +1,50 @@
+package org.ucvts.comics.dao;
+
+import java.util.List;
+
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+/**
+ * Receives notice of changes ProductDAO makes to the products table, so
+ * anything built from it (like a search index) can be kept up to date.
+ *
+ * Listeners are called on the thread that made the change, after it has
+ * been saved.
+ */
+
+public interface ProductListener {
+
+    /**
+     * Called after a Product has been inserted or updated.
+     *
+     * @param product the product, as it was saved
+     */
+
+    void productSaved(Product product);
+
+    /**
+     * Called after a Product has been deleted.
+     *
+     * @param product the product that was deleted
+     */
+
+    void productDeleted(Product product);
+
+    /**
+     * Called after copies of Products have been sold. Each item's quantity
+     * has been taken off its product's copies in the database, but the
+     * products in the items still have the old number of copies.
+     *
+     * @param items the items that were sold
+     */
+
+    void copiesRemoved(List<OrderItem> items);
+
+    /**
+     * Called after many Products have changed at once (by a catalog import,
+     * for example), when it isn't known exactly which ones.
+     */
+
+    void productsChanged();
+}
@@ -0,0 +1,74 @@
+package org.ucvts.comics.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.ucvts.comics.model.Product;
+
+/**
+ * The orders in which pages of Products can be retrieved.
+ * 
+ * Every order ends with the product ID, so no two products ever compare
+ * as equal. That lets us find the next page by asking for the rows that
+ * come after the last product on the current page (keyset pagination),
+ * instead of counting past every row on the earlier pages.
+ */
+
+public enum ProductSort {
+
+    ID("id", "id > ?"),
+    TITLE_ISSUE("title, issue, id", "(title > ? OR (title = ? AND (issue > ? OR (issue = ? AND id > ?))))"),
+    RELEASE_DATE("releasedate, id", "(releasedate > ? OR (releasedate = ? AND id > ?))");
+
+    private final String orderBy;
+    private final String after;
+
+    private ProductSort(String orderBy, String after) {
+        this.orderBy = orderBy;
+        this.after = after;
+    }
+
+    /*
+     * Returns the columns to order by.
+     */
+
+    String orderBy() {
+        return orderBy;
+    }
+
+    /*
+     * Returns a condition matching the rows that come after a given product.
+     */
+
+    String after() {
+        return after;
+    }
+
+    /*
+     * Binds the sort key of a product to the placeholders of the after
+     * condition, starting at the specified index.
+     *
+     * @return the index of the next unused placeholder
+     */
+
+    int bind(PreparedStatement pstmt, int index, Product product) throws SQLException {
+        switch (this) {
+            case TITLE_ISSUE:
+                pstmt.setString(index++, product.getTitle());
+                pstmt.setString(index++, product.getTitle());
+                pstmt.setInt(index++, product.getIssue());
+                pstmt.setInt(index++, product.getIssue());
+                break;
+            case RELEASE_DATE:
+                pstmt.setLong(index++, product.getReleaseDate());
+                pstmt.setLong(index++, product.getReleaseDate());
+                break;
+            default:
+                break;
+        }
+
+        pstmt.setLong(index++, product.getProductId());
+
+        return index;
+    }
+}
@@ -0,0 +1,13 @@
+package org.ucvts.comics.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+ * Builds an object from the current row of a result set.
+ */
+
+interface RowMapper<T> {
+
+    T map(ResultSet rs) throws SQLException;
+}
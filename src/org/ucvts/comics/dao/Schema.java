@@ -0,0 +1,168 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * The versioned history of the database schema.
+ *
+ * The schema_version table records every migration that has been applied.
+ * At startup, a single query tells us whether the database is up to date.
+ * If it isn't, only the migrations it's missing are applied. To change the
+ * schema, add a new migration to the end of the list; never edit one that
+ * has already been released.
+ */
+
+class Schema {
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+        Migration.code(1, "Create products, customers, orders, and orderitems tables", DAO::createTables),
+
+        // derby already indexes primary and foreign keys. these add the
+        // columns we sort by, so each lookup can be answered in order
+        // straight from the index.
+
+        Migration.script(2, "Add secondary indexes",
+            "CREATE INDEX orders_customer_idx ON orders (customerid, id)",
+            "CREATE INDEX orderitems_order_idx ON orderitems (orderid, id)",
+            "CREATE INDEX orderitems_product_idx ON orderitems (productid, orderid)",
+            "CREATE INDEX products_title_issue_idx ON products (title, issue, id)",
+            "CREATE INDEX products_releasedate_idx ON products (releasedate, id)",
+            "CREATE INDEX customers_lastname_idx ON customers (lastname, firstname, id)",
+            "CREATE INDEX customers_phone_idx ON customers (phone)"
+        ),
+
+        // running totals for each customer, kept up to date at checkout.
+        // existing orders are added up once, here, to seed the table.
+
+        Migration.script(3, "Add customer stats",
+            "CREATE TABLE customerstats (" +
+            "   customerid BIGINT PRIMARY KEY references customers(id), " +
+            "   ordercount INT NOT NULL, " +
+            "   lifetimetotal DECIMAL(20, 2) NOT NULL, " +
+            "   lastorderdate BIGINT NOT NULL" +
+            ")",
+            "INSERT INTO customerstats (customerid, ordercount, lifetimetotal, lastorderdate) " +
+            "SELECT customerid, COUNT(*), SUM(total), MAX(orderdate) " +
+            "FROM orders WHERE customerid IS NOT NULL GROUP BY customerid"
+        ),
+
+        // ids come from sequences, a block at a time, instead of from the
+        // identity columns, so new objects can be given an id without a
+        // round trip to the database for each one.
+
+        Migration.code(4, "Allocate ids from sequences", IdAllocator::createSequences),
+
+        // email lookups ignore case and surrounding whitespace. normalizing
+        // the address in the query meant scanning the whole table, so the
+        // normalized address is stored, and indexed, instead.
+
+        Migration.code(5, "Add normalized email addresses", CustomerDAO::addEmailKeys)
+    );
+
+    static final int LATEST = MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion();
+
+    /*
+     * Brings the database up to the latest schema version.
+     *
+     * @param conn a connection to the database
+     * @throws SQLException
+     */
+
+    static void migrate(Connection conn) throws SQLException {
+        int current = currentVersion(conn);
+
+        if (current >= LATEST) {
+            return;
+        }
+
+        if (current < 0) {
+            createVersionTable(conn);
+        }
+
+        conn.setAutoCommit(false);
+
+        try {
+            PreparedStatement record = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, appliedat) VALUES (?, ?, ?)"
+            );
+
+            for (Migration migration : MIGRATIONS) {
+                if (migration.getVersion() <= current) {
+                    continue;
+                }
+
+                // each migration and the record that it was applied are
+                // committed together, so a failed migration can simply be
+                // retried the next time we start up.
+
+                migration.apply(conn);
+
+                record.setInt(1, migration.getVersion());
+                record.setString(2, migration.getDescription());
+                record.setLong(3, System.currentTimeMillis());
+                record.executeUpdate();
+
+                conn.commit();
+            }
+
+            record.close();
+        } catch (SQLException e) {
+            conn.rollback();
+
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /*
+     * Returns the version of the schema, 0 if schema_version exists but is
+     * empty, or -1 if it doesn't exist yet (a new database, or one created
+     * before the schema was versioned).
+     */
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version");
+            rs.next();
+
+            int version = rs.getInt(1);
+            rs.close();
+
+            return version;
+        } catch (SQLException e) {
+            // 42X05 means the table doesn't exist, and 42Y07 means the schema
+            // doesn't exist either (i.e., this is a brand new database).
+            
+            if ("42X05".equals(e.getSQLState()) || "42Y07".equals(e.getSQLState())) {
+                return -1;
+            }
+
+            throw e;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+
+        stmt.execute(
+            "CREATE TABLE schema_version (" +
+            "   version INT PRIMARY KEY, " +
+            "   description VARCHAR(255) NOT NULL, " +
+            "   appliedat BIGINT NOT NULL" +
+            ")"
+        );
+
+        stmt.close();
+    }
+}
@@ -0,0 +1,15 @@
+package org.ucvts.comics.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/*
+ * Fills in the placeholders of a prepared statement using the values of
+ * a single object, so the same statement can be reused for every row in
+ * a batch.
+ */
+
+interface StatementBinder<T> {
+
+    void bind(PreparedStatement pstmt, T value) throws SQLException;
+}
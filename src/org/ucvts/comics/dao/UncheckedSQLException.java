@@ -0,0 +1,33 @@
+package org.ucvts.comics.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a SQLException thrown while reading rows from a Stream, since
+ * streams can't throw checked exceptions.
+ */
+
+@SuppressWarnings("serial")
+public class UncheckedSQLException extends RuntimeException {
+
+    /**
+     * Creates an instance of the UncheckedSQLException class.
+     *
+     * @param cause the underlying database exception
+     */
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Returns the underlying database exception.
+     *
+     * @return the cause
+     */
+
+    @Override
+    public SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,515 @@
+package org.ucvts.comics.index;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ucvts.comics.dao.CustomerDAO;
+import org.ucvts.comics.dao.CustomerListener;
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.util.LongIntMap;
+
+/**
+ * An in-memory index of every Customer's first name, last name, and email
+ * address, for finding customers by name even when it's misspelled.
+ *
+ * Each field is broken into trigrams: the runs of three characters in each
+ * word, after padding it with two spaces in front and one behind, so
+ * "smith" becomes "  s", " sm", "smi", "mit", "ith", and "th ". A name
+ * typed with a mistake or two still shares most of its trigrams with the
+ * real one. Each trigram maps to the customers it appears in, so a search
+ * only looks at customers sharing at least one trigram with the query, and
+ * scores them by Jaccard similarity: the number of trigrams they share,
+ * divided by the number in either. A customer's score is the best of its
+ * first name, last name, whole name, and email address (up to the @).
+ *
+ * Like ProductIndex, it's built by load and kept up to date by registering
+ * it with CustomerDAO as a CustomerListener, and it's safe to search from
+ * any number of threads while it's being updated.
+ */
+
+public class CustomerNameIndex extends ReloadingIndex<CustomerNameIndex.Contents> implements CustomerListener {
+
+    // where a trigram appears. a trigram can appear in more than one field.
+
+    private static final int FIRST = 1;
+    private static final int LAST = 2;
+    private static final int EMAIL = 4;
+
+    // customers less similar than this to the query aren't worth showing.
+    // it's low enough for a short name with one mistake ("jon" for "john").
+
+    private static final double MIN_SIMILARITY = 0.25;
+
+    // the shared trigrams for each field are counted in a single byte.
+
+    private static final int MAX_QUERY_TRIGRAMS = 255;
+
+    /**
+     * Creates an empty index. Nothing is indexed until it's loaded.
+     */
+
+    public CustomerNameIndex() {
+        super(new Contents());
+    }
+
+    /*
+     * Indexes every customer in the database.
+     */
+
+    @Override
+    Contents rebuild() throws SQLException {
+        Contents loaded = new Contents();
+
+        CustomerDAO.forEachCustomer(loaded::add);
+
+        return loaded;
+    }
+
+    /**
+     * Finds the customers whose names or email addresses are most similar
+     * to a query, allowing for misspellings. Ties go to the customer that
+     * was indexed first.
+     *
+     * @param query a name (first, last, or both) or an email address
+     * @param limit the maximum number of results
+     * @return the customerIds of the most similar customers, best first
+     */
+
+    public long[] search(String query, int limit) {
+        Set<String> trigrams = trigrams(query.indexOf('@') >= 0 ? localPart(query) : query);
+
+        if (trigrams.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+
+        if (trigrams.size() > MAX_QUERY_TRIGRAMS) {
+            Iterator<String> extra = trigrams.iterator();
+
+            for (int i = 0; i < MAX_QUERY_TRIGRAMS; i++) {
+                extra.next();
+            }
+
+            while (extra.hasNext()) {
+                extra.next();
+                extra.remove();
+            }
+        }
+
+        Contents contents = beginRead();
+
+        try {
+            return contents.search(trigrams, limit);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Returns the number of customers indexed.
+     *
+     * @return size
+     */
+
+    public int size() {
+        Contents contents = beginRead();
+
+        try {
+            return contents.byCustomer.size();
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public void customerSaved(Customer customer) {
+        update(contents -> contents.add(customer));
+    }
+
+    @Override
+    public void customerDeleted(Customer customer) {
+        update(contents -> contents.remove(customer.getCustomerId()));
+    }
+
+    @Override
+    public void customersChanged() {
+        reload();
+    }
+
+    /*
+     * Returns the distinct trigrams of the words in a piece of text, in the
+     * order they appear.
+     */
+
+    private static Set<String> trigrams(String text) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        List<String> words = Tokenizer.tokenize(text);
+
+        for (String word : words) {
+            String padded = "  " + word + " ";
+
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+
+        return trigrams;
+    }
+
+    /*
+     * Returns the part of an email address before the @. The rest is
+     * mostly the same few domains, which would match nearly everyone.
+     */
+
+    private static String localPart(String email) {
+        if (email == null) {
+            return null;
+        }
+
+        int at = email.indexOf('@');
+
+        return at < 0 ? email : email.substring(0, at);
+    }
+
+    /*
+     * The trigrams, and the customers they appear in.
+     *
+     * As in ProductIndex, each customer is given a number when it's
+     * indexed, numbers only ever go up (so each trigram's list stays
+     * sorted), and a customer that changes is added again with a new
+     * number. Removing a customer just marks its number as removed, since
+     * its old trigrams can't be worked out from the customer as it is now;
+     * the lists are cleaned up when numbers are reclaimed, once most of
+     * them have been removed.
+     */
+
+    static class Contents {
+
+        private static final long REMOVED = Long.MIN_VALUE;
+
+        // the number of trigrams each customer has in each field, four to a
+        // customer. the whole name counts trigrams in both names once.
+
+        private static final int FIRST_SIZE = 0;
+        private static final int LAST_SIZE = 1;
+        private static final int NAME_SIZE = 2;
+        private static final int EMAIL_SIZE = 3;
+
+        // a customer's shared trigrams are counted in a single int, a byte
+        // for each of the fields above. this is what a trigram adds to it,
+        // for each combination of fields it appears in.
+
+        private static final int[] INCREMENTS = new int[8];
+
+        static {
+            for (int fields = 0; fields < INCREMENTS.length; fields++) {
+                INCREMENTS[fields] = ((fields & FIRST) != 0 ? 1 << (8 * FIRST_SIZE) : 0)
+                    + ((fields & LAST) != 0 ? 1 << (8 * LAST_SIZE) : 0)
+                    + ((fields & (FIRST | LAST)) != 0 ? 1 << (8 * NAME_SIZE) : 0)
+                    + ((fields & EMAIL) != 0 ? 1 << (8 * EMAIL_SIZE) : 0);
+            }
+        }
+
+        private final Map<String, Trigram> trigrams = new HashMap<>();
+        private final LongIntMap byCustomer = new LongIntMap();
+        private long[] ids = new long[1024];            // the customerId for each number, or REMOVED
+        private short[] sizes = new short[4 * 1024];
+        private int end;
+
+        void add(Customer customer) {
+            remove(customer.getCustomerId());
+
+            Map<String, Integer> fields = new HashMap<>();
+            Set<String> first = trigrams(customer.getFirstName());
+            Set<String> last = trigrams(customer.getLastName());
+            Set<String> email = trigrams(localPart(customer.getEmail()));
+
+            for (String trigram : first) {
+                fields.merge(trigram, FIRST, (a, b) -> a | b);
+            }
+
+            for (String trigram : last) {
+                fields.merge(trigram, LAST, (a, b) -> a | b);
+            }
+
+            int name = fields.size();
+
+            for (String trigram : email) {
+                fields.merge(trigram, EMAIL, (a, b) -> a | b);
+            }
+
+            if (fields.isEmpty()) {
+                return;
+            }
+
+            if (end == ids.length) {
+                if (byCustomer.size() < end / 2) {
+                    compact();
+                } else {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                    sizes = Arrays.copyOf(sizes, sizes.length * 2);
+                }
+            }
+
+            int number = end;
+
+            ids[number] = customer.getCustomerId();
+            sizes[4 * number + FIRST_SIZE] = (short) first.size();
+            sizes[4 * number + LAST_SIZE] = (short) last.size();
+            sizes[4 * number + NAME_SIZE] = (short) name;
+            sizes[4 * number + EMAIL_SIZE] = (short) email.size();
+            end++;
+            byCustomer.put(customer.getCustomerId(), number);
+
+            for (Map.Entry<String, Integer> field : fields.entrySet()) {
+                trigrams.computeIfAbsent(field.getKey(), t -> new Trigram()).add(number, field.getValue().byteValue());
+            }
+        }
+
+        void remove(long customerId) {
+            int number = byCustomer.remove(customerId);
+
+            if (number != LongIntMap.MISSING) {
+                ids[number] = REMOVED;
+            }
+        }
+
+        long[] search(Set<String> query, int limit) {
+            int q = query.size();
+            Trigram[] found = new Trigram[q];
+            int i = 0;
+
+            for (String text : query) {
+                found[i++] = trigrams.getOrDefault(text, Trigram.NONE);
+            }
+
+            Arrays.sort(found, (a, b) -> Integer.compare(a.size, b.size));
+
+            // a customer can't be similar enough unless it shares at least
+            // a few of the query's trigrams in one field, and so at least
+            // one of the rarest ones. only customers in the rarest lists are
+            // candidates; the most common lists, which are by far the
+            // longest, are only used to finish counting for them.
+
+            int needed = Math.max(1, (int) Math.ceil(MIN_SIMILARITY * q));
+            int rarest = q - needed + 1;
+            int[] counts = new int[end];
+            Candidates candidates = new Candidates();
+
+            for (i = 0; i < rarest; i++) {
+                Trigram trigram = found[i];
+
+                for (int j = 0; j < trigram.size; j++) {
+                    int number = trigram.numbers[j];
+
+                    if (counts[number] == 0) {
+                        candidates.add(number);
+                    }
+
+                    counts[number] += INCREMENTS[trigram.fields[j]];
+                }
+            }
+
+            for (; i < q && candidates.size > 0; i++) {
+                candidates.count(found[i], counts);
+            }
+
+            // then we score the candidates, keeping the best. scores are
+            // scaled to ints so they can be packed into a rank.
+
+            int scale = 1 << 24;
+            TopRanks top = new TopRanks(limit);
+
+            for (i = 0; i < candidates.size; i++) {
+                int number = candidates.numbers[i];
+                int count = counts[number];
+
+                if (ids[number] == REMOVED) {
+                    continue;
+                }
+
+                // the similarities are compared as fractions, so there's
+                // only one division for each candidate, not one per field.
+
+                int shared = 0;
+                int either = 1;
+
+                for (int field = 0; field < 4; field++) {
+                    int s = (count >>> (8 * field)) & 0xFF;
+                    int e = q + sizes[4 * number + field] - s;
+
+                    if (s >= needed && s * either > shared * e) {
+                        shared = s;
+                        either = e;
+                    }
+                }
+
+                if (shared >= MIN_SIMILARITY * either) {
+                    top.offer((long) (scale - (int) ((long) shared * scale / either)) << 32 | number);
+                }
+            }
+
+            long[] ranks = top.drain();
+            long[] customerIds = new long[ranks.length];
+
+            for (i = 0; i < ranks.length; i++) {
+                customerIds[i] = ids[TopRanks.number(ranks[i])];
+            }
+
+            return customerIds;
+        }
+
+        /*
+         * Renumbers the customers that are still indexed, closing up the
+         * numbers left behind by removed ones, and takes the removed ones
+         * out of the trigram lists.
+         */
+
+        private void compact() {
+            int[] renumbered = new int[end];
+            int live = 0;
+
+            for (int number = 0; number < end; number++) {
+                if (ids[number] == REMOVED) {
+                    renumbered[number] = -1;
+                    continue;
+                }
+
+                renumbered[number] = live;
+                ids[live] = ids[number];
+                System.arraycopy(sizes, 4 * number, sizes, 4 * live, 4);
+                byCustomer.put(ids[live], live);
+                live++;
+            }
+
+            Iterator<Trigram> i = trigrams.values().iterator();
+
+            while (i.hasNext()) {
+                Trigram trigram = i.next();
+
+                trigram.renumber(renumbered);
+
+                if (trigram.size == 0) {
+                    i.remove();
+                }
+            }
+
+            end = live;
+        }
+    }
+
+    /*
+     * The customers that might be similar enough to a query.
+     */
+
+    private static class Candidates {
+
+        private int[] numbers = new int[64];
+        private int size;
+        private boolean sorted;
+
+        void add(int number) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+            }
+
+            numbers[size] = number;
+            size++;
+            sorted = false;
+        }
+
+        /*
+         * Adds a trigram to the counts of the candidates in its list. When
+         * there are far fewer candidates than customers in the list, each
+         * candidate is looked for in the list, stepping forward from where
+         * the last one was found; otherwise we go through the whole list.
+         */
+
+        void count(Trigram trigram, int[] counts) {
+            int log = 32 - Integer.numberOfLeadingZeros(trigram.size);
+
+            if ((long) size * log >= trigram.size) {
+                for (int j = 0; j < trigram.size; j++) {
+                    int number = trigram.numbers[j];
+
+                    if (counts[number] != 0) {
+                        counts[number] += Contents.INCREMENTS[trigram.fields[j]];
+                    }
+                }
+
+                return;
+            }
+
+            if (!sorted) {
+                Arrays.sort(numbers, 0, size);
+                sorted = true;
+            }
+
+            int from = 0;
+
+            for (int i = 0; i < size && from < trigram.size; i++) {
+                int j = Arrays.binarySearch(trigram.numbers, from, trigram.size, numbers[i]);
+
+                if (j >= 0) {
+                    counts[numbers[i]] += Contents.INCREMENTS[trigram.fields[j]];
+                    from = j + 1;
+                } else {
+                    from = -j - 1;
+                }
+            }
+        }
+    }
+
+    /*
+     * The numbers of the customers a trigram appears in (in order), along
+     * with the fields it appears in for each of them.
+     */
+
+    private static class Trigram {
+
+        // stands in for a trigram that isn't indexed
+
+        static final Trigram NONE = new Trigram();
+
+        private int[] numbers = new int[1];
+        private byte[] fields = new byte[1];
+        private int size;
+
+        void add(int number, byte field) {
+            if (size == numbers.length) {
+                numbers = Arrays.copyOf(numbers, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+
+            numbers[size] = number;
+            fields[size] = field;
+            size++;
+        }
+
+        /*
+         * Replaces each number with its new one, dropping those that have
+         * none (-1). Numbers keep their order when they're renumbered.
+         */
+
+        void renumber(int[] renumbered) {
+            int kept = 0;
+
+            for (int i = 0; i < size; i++) {
+                int number = renumbered[numbers[i]];
+
+                if (number >= 0) {
+                    numbers[kept] = number;
+                    fields[kept] = fields[i];
+                    kept++;
+                }
+            }
+
+            size = kept;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.ucvts.comics.index;
+
+/**
+ * The conditions a Product has to meet to be listed by an InventoryIndex.
+ * Any condition can be left out, and a product has to meet all of the
+ * rest.
+ */
+
+public class InventoryFilter {
+
+    /**
+     * Leaves out the minimum or maximum price.
+     */
+
+    public static final long ANY_PRICE = -1;
+
+    /**
+     * Leaves out the release year.
+     */
+
+    public static final int ANY_YEAR = 0;
+
+    /**
+     * Lists every product.
+     */
+
+    public static final InventoryFilter NONE = new InventoryFilter(ANY_PRICE, ANY_PRICE, ANY_YEAR, false);
+
+    private final long minPrice;
+    private final long maxPrice;
+    private final int year;
+    private final boolean inStock;
+
+    /**
+     * Creates an instance of the InventoryFilter class.
+     *
+     * @param minPrice the lowest unit price, in cents (or ANY_PRICE)
+     * @param maxPrice the highest unit price, in cents (or ANY_PRICE)
+     * @param year     the year the product was released (or ANY_YEAR)
+     * @param inStock  whether to only list products with copies in stock
+     */
+
+    public InventoryFilter(long minPrice, long maxPrice, int year, boolean inStock) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.year = year;
+        this.inStock = inStock;
+    }
+
+    /**
+     * Returns the lowest unit price.
+     *
+     * @return minPrice, in cents, or ANY_PRICE
+     */
+
+    public long getMinPrice() {
+        return minPrice;
+    }
+
+    /**
+     * Returns the highest unit price.
+     *
+     * @return maxPrice, in cents, or ANY_PRICE
+     */
+
+    public long getMaxPrice() {
+        return maxPrice;
+    }
+
+    /**
+     * Returns the year the product was released.
+     *
+     * @return year, or ANY_YEAR
+     */
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Returns whether only products with copies in stock are listed.
+     *
+     * @return inStock
+     */
+
+    public boolean isInStock() {
+        return inStock;
+    }
+}
@@ -0,0 +1,735 @@
+package org.ucvts.comics.index;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
+import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.dao.ProductListener;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+import org.ucvts.comics.util.LongIntMap;
+
+/**
+ * An in-memory copy of the sortable and filterable columns of every
+ * Product, for listing inventory in any order, with any filter, without
+ * going to the database.
+ *
+ * Each column is kept in a primitive array indexed by product number. For
+ * each InventorySort, an array of product numbers is kept sorted in that
+ * order (a sorted permutation), so changing the order only means reading a
+ * different array, and a page is read straight from it. Filters find the
+ * range of products that pass in the array sorted by the column they test,
+ * with a binary search, and mark them in a bitset; the bitsets for each
+ * condition are intersected, and a page is every product in the chosen
+ * order whose bit is set.
+ *
+ * A product that changes is moved to its new place in each sorted array,
+ * which costs a binary search and shifting the products after it, rather
+ * than sorting again.
+ *
+ * The products released between two dates are next to each other in the
+ * order by release date, so they're found by two binary searches and paged
+ * through directly, without a bitset, however many products there are.
+ *
+ * Like ProductIndex, the index is built by load and kept up to date by
+ * registering it with ProductDAO as a ProductListener, and it's safe to
+ * read from any number of threads while it's being updated.
+ */
+
+public class InventoryIndex extends ReloadingIndex<InventoryIndex.Contents> implements ProductListener {
+
+    /**
+     * Creates an empty index. Nothing is indexed until it's loaded.
+     */
+
+    public InventoryIndex() {
+        super(new Contents());
+    }
+
+    /*
+     * Indexes every product in the database.
+     */
+
+    @Override
+    Contents rebuild() throws SQLException {
+        Contents loaded = new Contents();
+
+        ProductDAO.forEachProduct(loaded::append);
+        loaded.sort();
+
+        return loaded;
+    }
+
+    /**
+     * Lists a single page of the products that pass a filter, in an order.
+     *
+     * @param filter     the conditions the products have to meet
+     * @param sort       the order to list them in
+     * @param descending whether to list them in reverse order
+     * @param after      the last product on the previous page, or null for
+     *                   the first page
+     * @param pageSize   the maximum number of products to list
+     * @return the productIds of the products on the page, in order
+     */
+
+    public long[] getPage(InventoryFilter filter, InventorySort sort, boolean descending, Product after, int pageSize) {
+        Contents contents = beginRead();
+
+        try {
+            return contents.getPage(filter, sort, descending, after, pageSize);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Lists a single page of the products released between two dates,
+     * inclusive, in order of release.
+     *
+     * @param from        the earliest release date, in YYYYMMDD format
+     * @param to          the latest release date, in YYYYMMDD format
+     * @param newestFirst whether to list the latest releases first
+     * @param after       the last product on the previous page, or null for
+     *                    the first page
+     * @param pageSize    the maximum number of products to list
+     * @return the productIds of the products on the page, in order
+     */
+
+    public long[] getReleased(long from, long to, boolean newestFirst, Product after, int pageSize) {
+        Contents contents = beginRead();
+
+        try {
+            return contents.getReleased(from, to, newestFirst, after, pageSize);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Counts the products released between two dates, inclusive.
+     *
+     * @param from the earliest release date, in YYYYMMDD format
+     * @param to   the latest release date, in YYYYMMDD format
+     * @return the number of products
+     */
+
+    public int countReleased(long from, long to) {
+        Contents contents = beginRead();
+
+        try {
+            return contents.countReleased(from, to);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Counts the products that pass a filter.
+     *
+     * @param filter the conditions the products have to meet
+     * @return the number of products
+     */
+
+    public int count(InventoryFilter filter) {
+        Contents contents = beginRead();
+
+        try {
+            long[] passed = contents.filter(filter);
+
+            return passed == null ? contents.size() : Contents.cardinality(passed);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Returns the number of products indexed.
+     *
+     * @return size
+     */
+
+    public int size() {
+        Contents contents = beginRead();
+
+        try {
+            return contents.size();
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        update(contents -> contents.put(product));
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        update(contents -> contents.remove(product.getProductId()));
+    }
+
+    @Override
+    public void copiesRemoved(List<OrderItem> items) {
+        update(contents -> {
+            for (OrderItem item : items) {
+                contents.removeCopies(item.getProduct().getProductId(), item.getQuantity());
+            }
+        });
+    }
+
+    @Override
+    public void productsChanged() {
+        reload();
+    }
+
+    /*
+     * The columns, and the product numbers sorted in each order.
+     *
+     * A product keeps its number for as long as it's indexed. Numbers left
+     * behind by deleted products are reused, so the columns never grow
+     * past the most products there have been at once.
+     */
+
+    static class Contents {
+
+        private final LongIntMap byProduct = new LongIntMap();
+        private long[] ids = new long[1024];
+        private String[] titles = new String[1024];
+        private int[] issues = new int[1024];
+        private long[] prices = new long[1024];
+        private long[] dates = new long[1024];
+        private int[] copies = new int[1024];
+        private int end;
+        private int[] unused = new int[16];
+        private int unusedCount;
+
+        private final Order[] orders = new Order[InventorySort.values().length];
+
+        Contents() {
+            for (InventorySort sort : InventorySort.values()) {
+                orders[sort.ordinal()] = new Order(sort);
+            }
+        }
+
+        int size() {
+            return byProduct.size();
+        }
+
+        /*
+         * Adds a product to the columns only, for building the index all at
+         * once: the orders are sorted afterward, by sort.
+         */
+
+        void append(Product product) {
+            int number = allocate();
+
+            set(number, product);
+            byProduct.put(product.getProductId(), number);
+        }
+
+        void sort() {
+            int[] numbers = new int[end];
+            int count = 0;
+
+            for (int number = 0; number < end; number++) {
+                if (titles[number] != null) {
+                    numbers[count++] = number;
+                }
+            }
+
+            for (Order order : orders) {
+                order.sort(Arrays.copyOf(numbers, count));
+            }
+        }
+
+        void put(Product product) {
+            int number = byProduct.get(product.getProductId());
+
+            if (number == LongIntMap.MISSING) {
+                number = allocate();
+                byProduct.put(product.getProductId(), number);
+            } else {
+                for (Order order : orders) {
+                    order.remove(number);
+                }
+            }
+
+            set(number, product);
+
+            for (Order order : orders) {
+                order.insert(number);
+            }
+        }
+
+        void remove(long productId) {
+            int number = byProduct.remove(productId);
+
+            if (number == LongIntMap.MISSING) {
+                return;
+            }
+
+            for (Order order : orders) {
+                order.remove(number);
+            }
+
+            titles[number] = null;
+
+            if (unusedCount == unused.length) {
+                unused = Arrays.copyOf(unused, unusedCount * 2);
+            }
+
+            unused[unusedCount++] = number;
+        }
+
+        /*
+         * Takes copies off a product. Only its place in the order by copies
+         * changes.
+         */
+
+        void removeCopies(long productId, int quantity) {
+            int number = byProduct.get(productId);
+
+            if (number == LongIntMap.MISSING) {
+                return;
+            }
+
+            Order order = orders[InventorySort.COPIES.ordinal()];
+
+            order.remove(number);
+            copies[number] -= quantity;
+            order.insert(number);
+        }
+
+        long[] getPage(InventoryFilter filter, InventorySort sort, boolean descending, Product after, int pageSize) {
+            long[] passed = filter(filter);
+            Order order = orders[sort.ordinal()];
+            long[] page = new long[pageSize];
+            int count = 0;
+
+            // we start right after the last product on the previous page,
+            // which is found by where it would go in the order, in case it's
+            // changed or been deleted since.
+
+            if (descending) {
+                int from = after == null ? order.size : order.lowerBound(after);
+
+                for (int i = from - 1; i >= 0 && count < pageSize; i--) {
+                    int number = order.numbers[i];
+
+                    if (passed == null || isSet(passed, number)) {
+                        page[count++] = ids[number];
+                    }
+                }
+            } else {
+                int from = after == null ? 0 : order.upperBound(after);
+
+                for (int i = from; i < order.size && count < pageSize; i++) {
+                    int number = order.numbers[i];
+
+                    if (passed == null || isSet(passed, number)) {
+                        page[count++] = ids[number];
+                    }
+                }
+            }
+
+            return Arrays.copyOf(page, count);
+        }
+
+        int countReleased(long from, long to) {
+            Order order = orders[InventorySort.RELEASE_DATE.ordinal()];
+
+            return Math.max(order.firstAfter(to) - order.firstAtLeast(from), 0);
+        }
+
+        long[] getReleased(long from, long to, boolean newestFirst, Product after, int pageSize) {
+            Order order = orders[InventorySort.RELEASE_DATE.ordinal()];
+            int first = order.firstAtLeast(from);
+            int last = order.firstAfter(to);
+            long[] page = new long[Math.max(Math.min(pageSize, last - first), 0)];
+            int count = 0;
+
+            if (newestFirst) {
+                int start = after == null ? last : Math.min(order.lowerBound(after), last);
+
+                for (int i = start - 1; i >= first && count < page.length; i--) {
+                    page[count++] = ids[order.numbers[i]];
+                }
+            } else {
+                int start = after == null ? first : Math.max(order.upperBound(after), first);
+
+                for (int i = start; i < last && count < page.length; i++) {
+                    page[count++] = ids[order.numbers[i]];
+                }
+            }
+
+            return count == page.length ? page : Arrays.copyOf(page, count);
+        }
+
+        /*
+         * Returns a bitset of the product numbers that pass a filter, or
+         * null if every product passes.
+         */
+
+        long[] filter(InventoryFilter filter) {
+            long[] passed = null;
+
+            if (filter.getMinPrice() != InventoryFilter.ANY_PRICE || filter.getMaxPrice() != InventoryFilter.ANY_PRICE) {
+                passed = intersect(passed, orders[InventorySort.PRICE.ordinal()].range(
+                    filter.getMinPrice() == InventoryFilter.ANY_PRICE ? Long.MIN_VALUE : filter.getMinPrice(),
+                    filter.getMaxPrice() == InventoryFilter.ANY_PRICE ? Long.MAX_VALUE : filter.getMaxPrice()
+                ));
+            }
+
+            // release dates are YYYYMMDD, so a year is every date from
+            // YYYY0000 to YYYY9999.
+
+            if (filter.getYear() != InventoryFilter.ANY_YEAR) {
+                long first = filter.getYear() * 10000L;
+
+                passed = intersect(passed, orders[InventorySort.RELEASE_DATE.ordinal()].range(first, first + 9999));
+            }
+
+            if (filter.isInStock()) {
+                passed = intersect(passed, orders[InventorySort.COPIES.ordinal()].range(1, Long.MAX_VALUE));
+            }
+
+            return passed;
+        }
+
+        private long[] intersect(long[] passed, long[] range) {
+            if (passed == null) {
+                return range;
+            }
+
+            for (int i = 0; i < passed.length; i++) {
+                passed[i] &= range[i];
+            }
+
+            return passed;
+        }
+
+        private static boolean isSet(long[] bits, int number) {
+            return (bits[number >>> 6] & (1L << number)) != 0;
+        }
+
+        static int cardinality(long[] bits) {
+            int count = 0;
+
+            for (long word : bits) {
+                count += Long.bitCount(word);
+            }
+
+            return count;
+        }
+
+        /*
+         * Returns an unused product number, growing the columns if there
+         * aren't any.
+         */
+
+        private int allocate() {
+            if (unusedCount > 0) {
+                return unused[--unusedCount];
+            }
+
+            if (end == ids.length) {
+                int capacity = end * 2;
+
+                ids = Arrays.copyOf(ids, capacity);
+                titles = Arrays.copyOf(titles, capacity);
+                issues = Arrays.copyOf(issues, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+                copies = Arrays.copyOf(copies, capacity);
+            }
+
+            return end++;
+        }
+
+        private void set(int number, Product product) {
+            ids[number] = product.getProductId();
+            titles[number] = product.getTitle();
+            issues[number] = product.getIssue();
+            prices[number] = product.getUnitPrice();
+            dates[number] = product.getReleaseDate();
+            copies[number] = product.getCopies();
+        }
+
+        /*
+         * Returns the column an order sorts by first, for the orders that
+         * sort by a number.
+         */
+
+        private long key(InventorySort sort, int number) {
+            switch (sort) {
+                case PRICE:
+                    return prices[number];
+                case RELEASE_DATE:
+                    return dates[number];
+                case ISSUE:
+                    return issues[number];
+                case COPIES:
+                    return copies[number];
+                default:
+                    throw new IllegalArgumentException(sort + " isn't sorted by a number");
+            }
+        }
+
+        /*
+         * Compares two products in an order.
+         */
+
+        private int compare(InventorySort sort, int a, int b) {
+            int c;
+
+            if (sort == InventorySort.TITLE) {
+                c = titles[a].compareTo(titles[b]);
+
+                if (c == 0) {
+                    c = Integer.compare(issues[a], issues[b]);
+                }
+            } else {
+                c = Long.compare(key(sort, a), key(sort, b));
+            }
+
+            return c != 0 ? c : Long.compare(ids[a], ids[b]);
+        }
+
+        /*
+         * Compares an indexed product with one that might not be (or might
+         * have changed since), in an order.
+         */
+
+        private int compare(InventorySort sort, int number, Product product) {
+            int c;
+
+            switch (sort) {
+                case TITLE:
+                    c = titles[number].compareTo(product.getTitle());
+
+                    if (c == 0) {
+                        c = Integer.compare(issues[number], product.getIssue());
+                    }
+
+                    break;
+                case PRICE:
+                    c = Long.compare(prices[number], product.getUnitPrice());
+                    break;
+                case RELEASE_DATE:
+                    c = Long.compare(dates[number], product.getReleaseDate());
+                    break;
+                case ISSUE:
+                    c = Integer.compare(issues[number], product.getIssue());
+                    break;
+                default:
+                    c = Integer.compare(copies[number], product.getCopies());
+                    break;
+            }
+
+            return c != 0 ? c : Long.compare(ids[number], product.getProductId());
+        }
+
+        /*
+         * The product numbers, sorted in one order. Products are inserted
+         * and removed by finding their place with a binary search, which
+         * works because no two products compare as equal.
+         */
+
+        private class Order {
+
+            private final InventorySort sort;
+            private int[] numbers = new int[0];
+            private int size;
+
+            Order(InventorySort sort) {
+                this.sort = sort;
+            }
+
+            void sort(int[] unsorted) {
+                numbers = unsorted;
+                size = unsorted.length;
+                mergeSort(numbers, size, (a, b) -> compare(sort, a, b));
+            }
+
+            void insert(int number) {
+                if (size == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, Math.max(16, size * 2));
+                }
+
+                int i = -search(number) - 1;
+
+                System.arraycopy(numbers, i, numbers, i + 1, size - i);
+                numbers[i] = number;
+                size++;
+            }
+
+            void remove(int number) {
+                int i = search(number);
+
+                if (i >= 0) {
+                    System.arraycopy(numbers, i + 1, numbers, i, size - i - 1);
+                    size--;
+                }
+            }
+
+            /*
+             * Returns the position of a product number, or (-(insertion
+             * point) - 1) if it isn't in the order.
+             */
+
+            private int search(int number) {
+                int low = 0;
+                int high = size - 1;
+
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    int c = compare(sort, numbers[mid], number);
+
+                    if (c < 0) {
+                        low = mid + 1;
+                    } else if (c > 0) {
+                        high = mid - 1;
+                    } else {
+                        return mid;
+                    }
+                }
+
+                return -(low + 1);
+            }
+
+            /*
+             * Returns the position of the first product that comes after
+             * another.
+             */
+
+            int upperBound(Product product) {
+                int low = 0;
+                int high = size;
+
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+
+                    if (compare(sort, numbers[mid], product) <= 0) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+
+                return low;
+            }
+
+            /*
+             * Returns the position of the first product that doesn't come
+             * before another.
+             */
+
+            int lowerBound(Product product) {
+                int low = 0;
+                int high = size;
+
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+
+                    if (compare(sort, numbers[mid], product) < 0) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+
+                return low;
+            }
+
+            /*
+             * Returns a bitset of the products whose first sort column is
+             * between two values (inclusive).
+             */
+
+            long[] range(long min, long max) {
+                long[] bits = new long[(end + 63) >>> 6];
+                int from = firstAtLeast(min);
+
+                for (int i = from; i < size && key(sort, numbers[i]) <= max; i++) {
+                    bits[numbers[i] >>> 6] |= 1L << numbers[i];
+                }
+
+                return bits;
+            }
+
+            /*
+             * Returns the position of the first product whose first sort
+             * column is at least a value.
+             */
+
+            int firstAtLeast(long value) {
+                int low = 0;
+                int high = size;
+
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+
+                    if (key(sort, numbers[mid]) < value) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+
+                return low;
+            }
+
+            /*
+             * Returns the position of the first product whose first sort
+             * column is greater than a value.
+             */
+
+            int firstAfter(long value) {
+                return value == Long.MAX_VALUE ? size : firstAtLeast(value + 1);
+            }
+        }
+
+        /*
+         * Sorts the first size product numbers in an array with a merge
+         * sort, which is stable and, unlike Arrays.sort, doesn't need them
+         * boxed to sort them with a comparison of our own.
+         */
+
+        private static void mergeSort(int[] numbers, int size, IntBinaryOperator comparison) {
+            int[] from = numbers;
+            int[] to = new int[size];
+
+            for (int width = 1; width < size; width *= 2) {
+                for (int low = 0; low < size; low += 2 * width) {
+                    int mid = Math.min(low + width, size);
+                    int high = Math.min(low + 2 * width, size);
+                    int i = low;
+                    int j = mid;
+                    int k = low;
+
+                    while (i < mid && j < high) {
+                        to[k++] = comparison.applyAsInt(from[i], from[j]) <= 0 ? from[i++] : from[j++];
+                    }
+
+                    while (i < mid) {
+                        to[k++] = from[i++];
+                    }
+
+                    while (j < high) {
+                        to[k++] = from[j++];
+                    }
+                }
+
+                int[] t = from;
+                from = to;
+                to = t;
+            }
+
+            if (from != numbers) {
+                System.arraycopy(from, 0, numbers, 0, size);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.ucvts.comics.index;
+
+/**
+ * The orders in which an InventoryIndex can list Products.
+ *
+ * Like ProductSort, every order ends with the product ID, so no two
+ * products ever compare as equal, and a page can start right after the
+ * last product on the one before it.
+ */
+
+public enum InventorySort {
+
+    TITLE("Title"),
+    PRICE("Price"),
+    RELEASE_DATE("Release Date"),
+    ISSUE("Issue"),
+    COPIES("Copies in Stock");
+
+    private final String label;
+
+    private InventorySort(String label) {
+        this.label = label;
+    }
+
+    /*
+     * Returns the name of the order, as it's shown to the user.
+     */
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,283 @@
+package org.ucvts.comics.index;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.ucvts.comics.dao.CustomerDAO;
+import org.ucvts.comics.dao.CustomerListener;
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.util.LongIntMap;
+
+/**
+ * An in-memory index of every Customer's phone number, for finding
+ * customers at the register by their whole number or its last four digits.
+ *
+ * Phone numbers and customerIds are primitive longs, and they're kept in
+ * primitive arrays, so nothing is boxed and a lookup doesn't allocate.
+ * Finding a whole number takes the same time however many customers there
+ * are, and finding the last four digits takes time proportional to the
+ * number of customers asked for. Customers without a phone number (0)
+ * aren't indexed.
+ *
+ * Like ProductIndex, it's built by load and kept up to date by registering
+ * it with CustomerDAO as a CustomerListener, and it's safe to search from
+ * any number of threads while it's being updated.
+ */
+
+public class PhoneIndex extends ReloadingIndex<PhoneIndex.Contents> implements CustomerListener {
+
+    /**
+     * Creates an empty index. Nothing is indexed until it's loaded.
+     */
+
+    public PhoneIndex() {
+        super(new Contents());
+    }
+
+    /*
+     * Indexes every customer in the database.
+     */
+
+    @Override
+    Contents rebuild() throws SQLException {
+        Contents loaded = new Contents();
+
+        CustomerDAO.forEachCustomer(loaded::add);
+
+        return loaded;
+    }
+
+    /**
+     * Finds the customers with a phone number. More than one customer can
+     * share a number (members of a household, for example).
+     *
+     * @param phone       the phone number
+     * @param customerIds receives the customerIds found, in no particular
+     *                    order, up to its length
+     * @return the number of customerIds found
+     */
+
+    public int find(long phone, long[] customerIds) {
+        Contents contents = beginRead();
+
+        try {
+            return contents.find(phone, customerIds);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Finds the customers whose phone numbers end in four digits.
+     *
+     * @param lastFour    the last four digits of the phone number (0-9999)
+     * @param customerIds receives the customerIds found, most recently
+     *                    saved first, up to its length
+     * @return the number of customerIds found
+     */
+
+    public int findByLastFour(int lastFour, long[] customerIds) {
+        if (lastFour < 0 || lastFour >= Contents.SUFFIXES) {
+            return 0;
+        }
+
+        Contents contents = beginRead();
+
+        try {
+            return contents.findByLastFour(lastFour, customerIds);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Returns the number of customers indexed.
+     *
+     * @return size
+     */
+
+    public int size() {
+        Contents contents = beginRead();
+
+        try {
+            return contents.size;
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public void customerSaved(Customer customer) {
+        update(contents -> contents.add(customer));
+    }
+
+    @Override
+    public void customerDeleted(Customer customer) {
+        update(contents -> contents.remove(customer.getCustomerId()));
+    }
+
+    @Override
+    public void customersChanged() {
+        reload();
+    }
+
+    /*
+     * The phone number and customerId of each customer, and three ways to
+     * find them.
+     *
+     * Each customer is an entry: a position in the phones and ids arrays.
+     * One LongIntMap finds a customer's entry by customerId (to find their
+     * old number when it changes), and another finds the first entry with
+     * a phone number. Customers that share a number are linked together
+     * through the samePhone array.
+     *
+     * There are only 10,000 possible last four digits, so the entries that
+     * end in each are kept in a doubly linked list, threaded through the
+     * next and previous arrays, with the head of each list in heads.
+     *
+     * Positions left behind by removed entries are kept in a free list
+     * (threaded through next) and reused.
+     */
+
+    static class Contents {
+
+        static final int SUFFIXES = 10000;
+        static final int EMPTY = LongIntMap.MISSING;
+
+        private long[] phones = new long[512];
+        private long[] ids = new long[512];
+        private int[] samePhone = new int[512];
+        private int[] next = new int[512];
+        private int[] previous = new int[512];
+        private int end;
+        private int free = EMPTY;
+        private int size;
+
+        private final LongIntMap byPhone = new LongIntMap();
+        private final LongIntMap byId = new LongIntMap();
+        private final int[] heads = new int[SUFFIXES];
+
+        Contents() {
+            Arrays.fill(heads, EMPTY);
+        }
+
+        int find(long phone, long[] customerIds) {
+            int found = 0;
+
+            for (int entry = byPhone.get(phone); entry != LongIntMap.MISSING && found < customerIds.length; entry = samePhone[entry]) {
+                customerIds[found] = ids[entry];
+                found++;
+            }
+
+            return found;
+        }
+
+        int findByLastFour(int lastFour, long[] customerIds) {
+            int found = 0;
+
+            for (int entry = heads[lastFour]; entry != EMPTY && found < customerIds.length; entry = next[entry]) {
+                customerIds[found] = ids[entry];
+                found++;
+            }
+
+            return found;
+        }
+
+        void add(Customer customer) {
+            remove(customer.getCustomerId());
+
+            long phone = customer.getPhone();
+
+            if (phone <= 0) {
+                return;
+            }
+
+            int entry = allocate();
+
+            phones[entry] = phone;
+            ids[entry] = customer.getCustomerId();
+            samePhone[entry] = byPhone.get(phone);
+            size++;
+
+            byPhone.put(phone, entry);
+            byId.put(ids[entry], entry);
+
+            int suffix = (int) (phone % SUFFIXES);
+
+            next[entry] = heads[suffix];
+            previous[entry] = EMPTY;
+
+            if (heads[suffix] != EMPTY) {
+                previous[heads[suffix]] = entry;
+            }
+
+            heads[suffix] = entry;
+        }
+
+        void remove(long customerId) {
+            int entry = byId.remove(customerId);
+
+            if (entry == LongIntMap.MISSING) {
+                return;
+            }
+
+            // other customers may share the number, so we only unlink this
+            // entry from the ones that do.
+
+            int first = byPhone.get(phones[entry]);
+
+            if (first != entry) {
+                int before = first;
+
+                while (samePhone[before] != entry) {
+                    before = samePhone[before];
+                }
+
+                samePhone[before] = samePhone[entry];
+            } else if (samePhone[entry] != EMPTY) {
+                byPhone.put(phones[entry], samePhone[entry]);
+            } else {
+                byPhone.remove(phones[entry]);
+            }
+
+            if (previous[entry] != EMPTY) {
+                next[previous[entry]] = next[entry];
+            } else {
+                heads[(int) (phones[entry] % SUFFIXES)] = next[entry];
+            }
+
+            if (next[entry] != EMPTY) {
+                previous[next[entry]] = previous[entry];
+            }
+
+            next[entry] = free;
+            free = entry;
+            size--;
+        }
+
+        /*
+         * Returns a position for a new entry, reusing a free one if there
+         * is one.
+         */
+
+        private int allocate() {
+            if (free != EMPTY) {
+                int entry = free;
+
+                free = next[entry];
+
+                return entry;
+            }
+
+            if (end == phones.length) {
+                phones = Arrays.copyOf(phones, end * 2);
+                ids = Arrays.copyOf(ids, end * 2);
+                samePhone = Arrays.copyOf(samePhone, end * 2);
+                next = Arrays.copyOf(next, end * 2);
+                previous = Arrays.copyOf(previous, end * 2);
+            }
+
+            return end++;
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package org.ucvts.comics.index;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.dao.ProductListener;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+import org.ucvts.comics.util.LongIntMap;
+
+/**
+ * An in-memory, full-text index of every Product's title, author, and
+ * issue number.
+ *
+ * Each word maps to the sorted list of products it appears in (an inverted
+ * index), and the words are kept in sorted order, so every word starting
+ * with a prefix can be found together. A search matches products that
+ * contain every word of the query, each as a prefix ("amaz spid 3" finds
+ * The Amazing Spider-Man #3), without going to the database at all.
+ *
+ * The index is built by load and kept up to date by registering it with
+ * ProductDAO as a ProductListener. It's safe to search from any number of
+ * threads while it's being updated.
+ */
+
+public class ProductIndex extends ReloadingIndex<ProductIndex.Contents> implements ProductListener {
+
+    // where a word appears. a word can appear in more than one field.
+
+    private static final int TITLE = 1;
+    private static final int AUTHOR = 2;
+    private static final int ISSUE = 4;
+
+    private static final int MAX_SCORE = 0xFFFF;
+
+    /**
+     * Creates an empty index. Nothing is indexed until it's loaded.
+     */
+
+    public ProductIndex() {
+        super(new Contents());
+    }
+
+    /*
+     * Indexes every product in the database.
+     */
+
+    @Override
+    Contents rebuild() throws SQLException {
+        Contents loaded = new Contents();
+
+        ProductDAO.forEachProduct(loaded::add);
+
+        return loaded;
+    }
+
+    /**
+     * Finds the products matching every word of a query. Each word matches
+     * any indexed word it's a prefix of, except for numbers and single
+     * letters, which have to match exactly. Products are ranked by how well
+     * they match: whole words count for more than prefixes, and title and
+     * issue matches count for more than author matches. Ties go to the
+     * product with the shortest title and author.
+     *
+     * @param query the words to search for
+     * @param limit the maximum number of results
+     * @return the productIds of the best matching products, best first
+     */
+
+    public long[] search(String query, int limit) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+
+        words.removeAll(Tokenizer.STOP_WORDS);
+
+        if (words.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+
+        Contents contents = beginRead();
+
+        try {
+            return contents.search(words, limit);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Returns the number of products indexed.
+     *
+     * @return size
+     */
+
+    public int size() {
+        Contents contents = beginRead();
+
+        try {
+            return contents.byProduct.size();
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        update(contents -> contents.add(product));
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        update(contents -> contents.remove(product.getProductId()));
+    }
+
+    /*
+     * Copies aren't indexed, so selling them changes nothing.
+     */
+
+    @Override
+    public void copiesRemoved(List<OrderItem> items) {
+    }
+
+    @Override
+    public void productsChanged() {
+        reload();
+    }
+
+    /*
+     * The words, and the products they appear in.
+     *
+     * Each product is given a number when it's indexed, and numbers only
+     * ever go up, so adding a product just appends its number to the end
+     * of each of its words' lists, which keeps them sorted. A product that
+     * changes is removed and added again with a new number. Numbers left
+     * behind by removed products are reclaimed once they're the majority.
+     */
+
+    static class Contents {
+
+        private final TreeMap<String, Term> terms = new TreeMap<>();
+        private final LongIntMap byProduct = new LongIntMap();     // productId -> product number
+        private Doc[] docs = new Doc[1024];
+        private byte[] lengths = new byte[1024];    // the number of words in each product
+        private int end;
+
+        void add(Product product) {
+            remove(product.getProductId());
+
+            Map<String, Integer> fields = new LinkedHashMap<>();
+
+            for (String word : Tokenizer.tokenize(product.getTitle())) {
+                if (!Tokenizer.STOP_WORDS.contains(word)) {
+                    fields.merge(word, TITLE, (a, b) -> a | b);
+                }
+            }
+
+            for (String word : Tokenizer.tokenize(product.getAuthor())) {
+                if (!Tokenizer.STOP_WORDS.contains(word)) {
+                    fields.merge(word, AUTHOR, (a, b) -> a | b);
+                }
+            }
+
+            fields.merge(Integer.toString(product.getIssue()), ISSUE, (a, b) -> a | b);
+
+            if (end == docs.length) {
+                if (byProduct.size() < end / 2) {
+                    compact();
+                } else {
+                    docs = Arrays.copyOf(docs, docs.length * 2);
+                    lengths = Arrays.copyOf(lengths, lengths.length * 2);
+                }
+            }
+
+            Doc doc = new Doc(product.getProductId(), end, fields.size());
+            int i = 0;
+
+            for (Map.Entry<String, Integer> field : fields.entrySet()) {
+                doc.terms[i] = terms.computeIfAbsent(field.getKey(), Term::new);
+                doc.fields[i] = field.getValue().byteValue();
+                doc.terms[i].add(doc.number, doc.fields[i]);
+                i++;
+            }
+
+            docs[end] = doc;
+            lengths[end] = (byte) Math.min(fields.size(), Byte.MAX_VALUE);
+            end++;
+            byProduct.put(doc.productId, doc.number);
+        }
+
+        void remove(long productId) {
+            int number = byProduct.remove(productId);
+
+            if (number == LongIntMap.MISSING) {
+                return;
+            }
+
+            Doc doc = docs[number];
+
+            for (Term term : doc.terms) {
+                term.remove(doc.number);
+
+                if (term.size == 0) {
+                    terms.remove(term.text);
+                }
+            }
+
+            docs[doc.number] = null;
+        }
+
+        long[] search(List<String> words, int limit) {
+            List<List<Term>> matches = new ArrayList<>(words.size());
+            int rarest = -1;
+            long fewest = Long.MAX_VALUE;
+
+            for (String word : words) {
+                List<Term> terms = find(word);
+                long count = 0;
+
+                for (Term term : terms) {
+                    count += term.size;
+                }
+
+                if (terms.isEmpty()) {
+                    return new long[0];
+                }
+
+                if (count < fewest) {
+                    rarest = matches.size();
+                    fewest = count;
+                }
+
+                matches.add(terms);
+            }
+
+            // every word has to match, so the candidates are the products
+            // matching the rarest word. the other words are checked against
+            // those by stepping through their lists alongside the candidates,
+            // which costs far less than looking at every product they're in.
+
+            Candidates candidates = new Candidates(matches.get(rarest), words.get(rarest), (int) fewest, end);
+
+            for (int i = 0; i < words.size() && candidates.size > 0; i++) {
+                if (i != rarest) {
+                    candidates.match(matches.get(i), words.get(i));
+                }
+            }
+
+            return top(candidates, limit);
+        }
+
+        /*
+         * Returns the indexed words a word of a query matches. Numbers and
+         * single letters only match themselves: "batman 1" means issue #1,
+         * not every issue from #1 to #199, and a single letter would match
+         * too much of the catalog to be a useful prefix.
+         */
+
+        private List<Term> find(String word) {
+            if (word.length() == 1 || isNumber(word)) {
+                Term term = terms.get(word);
+
+                return term == null ? Collections.emptyList() : Collections.singletonList(term);
+            }
+
+            return new ArrayList<>(terms.subMap(word, true, word + Character.MAX_VALUE, false).values());
+        }
+
+        private static boolean isNumber(String word) {
+            for (int i = 0; i < word.length(); i++) {
+                if (!Character.isDigit(word.charAt(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /*
+         * Ranks the candidates, keeping the best few. Ties go to the
+         * product with the fewest words, then the one indexed first.
+         */
+
+        private long[] top(Candidates candidates, int limit) {
+            TopRanks top = new TopRanks(Math.min(limit, candidates.size));
+
+            for (int i = 0; i < candidates.size; i++) {
+                int number = candidates.numbers[i];
+
+                top.offer((long) (MAX_SCORE - Math.min(candidates.scores[i], MAX_SCORE)) << 40
+                    | (long) lengths[number] << 32
+                    | number);
+            }
+
+            long[] ranks = top.drain();
+            long[] productIds = new long[ranks.length];
+
+            for (int i = 0; i < ranks.length; i++) {
+                productIds[i] = docs[TopRanks.number(ranks[i])].productId;
+            }
+
+            return productIds;
+        }
+
+        /*
+         * Renumbers the products that are still indexed, closing up the
+         * numbers left behind by removed ones.
+         */
+
+        private void compact() {
+            for (Term term : terms.values()) {
+                term.size = 0;
+            }
+
+            int live = 0;
+
+            for (int i = 0; i < end; i++) {
+                Doc doc = docs[i];
+
+                if (doc == null) {
+                    continue;
+                }
+
+                doc.number = live;
+                docs[live] = doc;
+                byProduct.put(doc.productId, live);
+                lengths[live] = lengths[i];
+                live++;
+
+                for (int j = 0; j < doc.terms.length; j++) {
+                    doc.terms[j].add(doc.number, doc.fields[j]);
+                }
+            }
+
+            Arrays.fill(docs, live, end, null);
+            end = live;
+        }
+    }
+
+    /*
+     * The products that still match a search, in order, with their scores
+     * so far.
+     *
+     * A word that's the prefix of several indexed words matches every
+     * product in any of their lists. When there are only a few of those,
+     * the lists are combined directly; when there are many, it's cheaper to
+     * mark each product in a table indexed by product number.
+     */
+
+    private static class Candidates {
+
+        private final int end;      // one past the highest product number
+        private int[] numbers;
+        private int[] scores;
+        private int size;
+
+        /*
+         * Starts with every product matching a word. A product in more than
+         * one of the word's lists keeps its best score.
+         */
+
+        Candidates(List<Term> terms, String word, int total, int end) {
+            this.end = end;
+            this.numbers = new int[total];
+            this.scores = new int[total];
+
+            if (terms.size() == 1) {
+                Term term = terms.get(0);
+
+                for (int i = 0; i < term.size; i++) {
+                    numbers[i] = term.docs[i];
+                    scores[i] = weight(term, word, i);
+                }
+
+                size = term.size;
+            } else if (total < end / 16) {
+                union(terms, word, total);
+            } else {
+                byte[] best = mark(terms, word);
+
+                for (int number = 0; number < end; number++) {
+                    if (best[number] > 0) {
+                        numbers[size] = number;
+                        scores[size] = best[number];
+                        size++;
+                    }
+                }
+            }
+        }
+
+        /*
+         * Drops the candidates that don't match a word, and adds the word's
+         * score to the rest.
+         */
+
+        void match(List<Term> terms, String word) {
+            int[] best = new int[size];
+            long stepping = 0;
+            long marking = end / 8;
+
+            for (Term term : terms) {
+                stepping += 8L * Math.min(term.size, size);
+                marking += term.size;
+            }
+
+            if (marking < stepping) {
+                byte[] marks = mark(terms, word);
+
+                for (int i = 0; i < size; i++) {
+                    best[i] = marks[numbers[i]];
+                }
+            } else {
+                for (Term term : terms) {
+                    intersect(term, word, best);
+                }
+            }
+
+            int kept = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (best[i] > 0) {
+                    numbers[kept] = numbers[i];
+                    scores[kept] = scores[i] + best[i];
+                    kept++;
+                }
+            }
+
+            size = kept;
+        }
+
+        /*
+         * Finds the candidates in a word's list, recording the best score
+         * for each. We step through whichever list is shorter, galloping
+         * through the other one to find each of its numbers.
+         */
+
+        private void intersect(Term term, String word, int[] best) {
+            if (term.size < size) {
+                int i = 0;
+
+                for (int j = 0; j < term.size && i < size; j++) {
+                    i = seek(numbers, i, size, term.docs[j]);
+
+                    if (i < size && numbers[i] == term.docs[j]) {
+                        best[i] = Math.max(best[i], weight(term, word, j));
+                    }
+                }
+            } else {
+                int j = 0;
+
+                for (int i = 0; i < size && j < term.size; i++) {
+                    j = seek(term.docs, j, term.size, numbers[i]);
+
+                    if (j < term.size && term.docs[j] == numbers[i]) {
+                        best[i] = Math.max(best[i], weight(term, word, j));
+                    }
+                }
+            }
+        }
+
+        /*
+         * Combines a few lists by sorting their entries together. Each
+         * entry holds a product number and (inverted, so the best sorts
+         * first) its score, so sorting groups each product's entries with
+         * the best one at the front.
+         */
+
+        private void union(List<Term> terms, String word, int total) {
+            long[] entries = new long[total];
+            int count = 0;
+
+            for (Term term : terms) {
+                for (int i = 0; i < term.size; i++) {
+                    entries[count] = (long) term.docs[i] << 8 | (0xFF - weight(term, word, i));
+                    count++;
+                }
+            }
+
+            Arrays.sort(entries, 0, count);
+
+            for (int i = 0; i < count; i++) {
+                int number = (int) (entries[i] >>> 8);
+
+                if (size == 0 || numbers[size - 1] != number) {
+                    numbers[size] = number;
+                    scores[size] = 0xFF - (int) (entries[i] & 0xFF);
+                    size++;
+                }
+            }
+        }
+
+        /*
+         * Returns a table of every product's best score for a word (0 if
+         * the product doesn't match it), indexed by product number.
+         */
+
+        private byte[] mark(List<Term> terms, String word) {
+            byte[] best = new byte[end];
+
+            for (Term term : terms) {
+                for (int i = 0; i < term.size; i++) {
+                    int weight = weight(term, word, i);
+
+                    if (weight > best[term.docs[i]]) {
+                        best[term.docs[i]] = (byte) weight;
+                    }
+                }
+            }
+
+            return best;
+        }
+
+        /*
+         * Returns the position of the first number in sorted[from, size)
+         * that isn't less than target. It gallops ahead in growing steps and then
+         * binary searches the last step, so skipping over a long run of
+         * products costs only a few comparisons.
+         */
+
+        private static int seek(int[] sorted, int from, int size, int target) {
+            int step = 1;
+            int low = from;
+            int high = from;
+
+            while (high < size && sorted[high] < target) {
+                low = high + 1;
+                high = from + step;
+                step *= 2;
+            }
+
+            high = Math.min(high, size);
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (sorted[middle] < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        /*
+         * Scores a word of a query against the indexed word it matched.
+         * Titles and issue numbers count for more than authors, and
+         * matching the whole word counts double.
+         */
+
+        private static int weight(Term term, String word, int i) {
+            int weight = (term.fields[i] & (TITLE | ISSUE)) != 0 ? 3 : 2;
+
+            return term.text.length() == word.length() ? weight * 2 : weight;
+        }
+    }
+
+    /*
+     * A word, and the numbers of the products it appears in (in order),
+     * along with the fields it appears in for each of them.
+     */
+
+    private static class Term {
+
+        private final String text;
+        private int[] docs = new int[1];
+        private byte[] fields = new byte[1];
+        private int size;
+
+        Term(String text) {
+            this.text = text;
+        }
+
+        void add(int number, byte field) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+
+            docs[size] = number;
+            fields[size] = field;
+            size++;
+        }
+
+        void remove(int number) {
+            int i = Arrays.binarySearch(docs, 0, size, number);
+
+            if (i >= 0) {
+                System.arraycopy(docs, i + 1, docs, i, size - i - 1);
+                System.arraycopy(fields, i + 1, fields, i, size - i - 1);
+                size--;
+            }
+        }
+    }
+
+    /*
+     * An indexed product: its words, and which fields each one came from.
+     */
+
+    private static class Doc {
+
+        private final long productId;
+        private final Term[] terms;
+        private final byte[] fields;
+        private int number;
+
+        Doc(long productId, int number, int words) {
+            this.productId = productId;
+            this.number = number;
+            this.terms = new Term[words];
+            this.fields = new byte[words];
+        }
+    }
+}
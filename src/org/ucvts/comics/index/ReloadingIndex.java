@@ -0,0 +1,115 @@
+package org.ucvts.comics.index;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.ucvts.comics.dao.AsyncDAO;
+
+/*
+ * The part every in-memory index has in common: contents that are built
+ * from the database by load, read by any number of threads at once, and
+ * changed one row at a time as the DAO reports changes.
+ *
+ * Readers share a read lock, and changes take the write lock, so a reader
+ * never sees a change half made. A load builds new contents without
+ * holding either lock, and only takes the write lock to swap them in, so
+ * reads carry on against the old contents in the meantime.
+ *
+ * Each index only has to say how its contents are built, in rebuild.
+ */
+
+abstract class ReloadingIndex<C> {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+    private C contents;
+
+    ReloadingIndex(C empty) {
+        this.contents = empty;
+    }
+
+    /**
+     * Builds the index from the database, replacing whatever was indexed
+     * before. Lookups keep using the old index until the new one is ready.
+     *
+     * @throws SQLException
+     */
+
+    public synchronized void load() throws SQLException {
+        C loaded = rebuild();
+
+        lock.writeLock().lock();
+
+        try {
+            contents = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Builds new contents from everything in the database.
+     */
+
+    abstract C rebuild() throws SQLException;
+
+    /*
+     * Takes the read lock and returns the contents. Every call has to be
+     * paired with a call to endRead, in a finally block.
+     */
+
+    final C beginRead() {
+        lock.readLock().lock();
+
+        return contents;
+    }
+
+    final void endRead() {
+        lock.readLock().unlock();
+    }
+
+    /*
+     * Applies a change to the contents. Changes wait for a load that's in
+     * progress to finish, so they're never lost by being made to the old
+     * contents while the new ones are being built.
+     */
+
+    final synchronized void update(Consumer<C> change) {
+        lock.writeLock().lock();
+
+        try {
+            change.accept(contents);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Rebuilds the whole index in the background, for when the DAO can't
+     * say which rows changed. Imports report changes a chunk at a time, so
+     * if a rebuild is already waiting to start, there's no need for another.
+     */
+
+    final void reload() {
+        if (reloadPending.compareAndSet(false, true)) {
+            AsyncDAO.run(this::reloadNow).exceptionally(error -> {
+                error.printStackTrace();
+
+                return null;
+            });
+        }
+    }
+
+    /*
+     * Runs a requested reload. The request only stops being pending once
+     * we hold the lock load takes, so reloads asked for while an earlier
+     * one is still building are all covered by this one.
+     */
+
+    private synchronized void reloadNow() throws SQLException {
+        reloadPending.set(false);
+        load();
+    }
+}
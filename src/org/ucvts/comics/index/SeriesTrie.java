@@ -0,0 +1,644 @@
+package org.ucvts.comics.index;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.dao.ProductListener;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+import org.ucvts.comics.model.Series;
+import org.ucvts.comics.util.LongIntMap;
+
+/**
+ * An in-memory prefix tree of the distinct series titles in inventory,
+ * along with the number of issues and copies in stock of each, for
+ * suggesting series as the user types.
+ *
+ * The tree is a radix tree: each node holds a whole run of characters
+ * instead of just one, and there's one entry per series rather than one
+ * per issue, so it stays small however many issues a series runs to.
+ * Suggesting series walks down the tree along the prefix, then reads the
+ * entries below it in alphabetical order until it has enough, so the time
+ * it takes depends on the prefix and the number of suggestions, not on the
+ * size of the catalog.
+ *
+ * Titles are matched the way ProductIndex matches words: ignoring case,
+ * accents, and punctuation. Series are suggested when the prefix matches
+ * the start of the title, and after those, when it matches the start of a
+ * later word in it, so "spider" suggests Spider-Woman and then The Amazing
+ * Spider-Man.
+ *
+ * Like ProductIndex, the tree is built by load and kept up to date by
+ * registering it with ProductDAO as a ProductListener, and it's safe to
+ * read from any number of threads while it's being updated.
+ */
+
+public class SeriesTrie extends ReloadingIndex<SeriesTrie.Contents> implements ProductListener {
+
+    /**
+     * Creates an empty trie. Nothing is in it until it's loaded.
+     */
+
+    public SeriesTrie() {
+        super(new Contents());
+    }
+
+    /*
+     * Indexes every product in the database.
+     */
+
+    @Override
+    Contents rebuild() throws SQLException {
+        Contents loaded = new Contents();
+
+        ProductDAO.forEachProduct(loaded::add);
+
+        return loaded;
+    }
+
+    /**
+     * Suggests series for what the user has typed so far. Series whose
+     * titles start with it come first, then series with a later word that
+     * starts with it, each group in alphabetical order.
+     *
+     * @param prefix the start of a title, or of a word in a title
+     * @param limit  the maximum number of suggestions
+     * @return the matching series, as they are now
+     */
+
+    public List<Series> suggest(String prefix, int limit) {
+        String key = key(prefix);
+
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // typing a space (or a hyphen) after a word means the word is
+        // finished, so "bat " shouldn't suggest Batman.
+
+        String folded = Tokenizer.fold(prefix);
+        char last = folded.charAt(folded.length() - 1);
+
+        if (!Character.isLetterOrDigit(last) && last != '\'' && last != '\u2019') {
+            key += ' ';
+        }
+
+        Contents contents = beginRead();
+
+        try {
+            return contents.suggest(key, limit);
+        } finally {
+            endRead();
+        }
+    }
+
+    /**
+     * Returns the number of distinct series.
+     *
+     * @return size
+     */
+
+    public int size() {
+        Contents contents = beginRead();
+
+        try {
+            return contents.size;
+        } finally {
+            endRead();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product) {
+        update(contents -> contents.add(product));
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        update(contents -> contents.remove(product.getProductId()));
+    }
+
+    @Override
+    public void copiesRemoved(List<OrderItem> items) {
+        update(contents -> {
+            for (OrderItem item : items) {
+                contents.removeCopies(item.getProduct().getProductId(), item.getQuantity());
+            }
+        });
+    }
+
+    @Override
+    public void productsChanged() {
+        reload();
+    }
+
+    /*
+     * Returns the form of a title (or part of one) that's stored in the
+     * tree: its words, folded, separated by single spaces. "Spider-Man"
+     * and "SPIDER MAN" both become "spider man".
+     */
+
+    private static String key(String title) {
+        return String.join(" ", Tokenizer.tokenize(title));
+    }
+
+    /*
+     * The series, and the products in each.
+     *
+     * Series are kept in two trees. The first holds each series under its
+     * whole title. The second holds it under the rest of its title from
+     * each later word on (skipping stop words), so "the amazing spider man"
+     * is also under "amazing spider man", "spider man", and "man".
+     *
+     * To know which series a product was counted in, and how many of its
+     * copies, when it changes or is deleted, each product's series and
+     * copies are kept in a hash table keyed by productId.
+     */
+
+    static class Contents {
+
+        private final Tree titles = new Tree();
+        private final Tree words = new Tree();
+        private final Issues issues = new Issues();
+        private int size;
+
+        void add(Product product) {
+            remove(product.getProductId());
+
+            List<String> tokens = Tokenizer.tokenize(product.getTitle());
+
+            if (tokens.isEmpty()) {
+                return;
+            }
+
+            String key = String.join(" ", tokens);
+            Entry entry = titles.get(key);
+
+            if (entry == null) {
+                entry = new Entry(key);
+                titles.insert(key, entry);
+
+                for (String suffix : suffixes(tokens)) {
+                    words.insert(suffix, entry);
+                }
+
+                size++;
+            }
+
+            // issues of the same series may not agree on how its title is
+            // written. we show it the way it was written most recently.
+
+            entry.title = product.getTitle();
+            entry.issues++;
+            entry.copies += product.getCopies();
+
+            issues.put(product.getProductId(), entry, product.getCopies());
+        }
+
+        void remove(long productId) {
+            int slot = issues.find(productId);
+
+            if (slot == Issues.EMPTY) {
+                return;
+            }
+
+            Entry entry = issues.entries[slot];
+
+            entry.issues--;
+            entry.copies -= issues.copies[slot];
+            issues.remove(productId);
+
+            if (entry.issues == 0) {
+                titles.remove(entry.key, entry);
+
+                for (String suffix : suffixes(Arrays.asList(entry.key.split(" ")))) {
+                    words.remove(suffix, entry);
+                }
+
+                size--;
+            }
+        }
+
+        void removeCopies(long productId, int quantity) {
+            int slot = issues.find(productId);
+
+            if (slot != Issues.EMPTY) {
+                issues.copies[slot] -= quantity;
+                issues.entries[slot].copies -= quantity;
+            }
+        }
+
+        List<Series> suggest(String key, int limit) {
+            List<Entry> found = new ArrayList<>();
+
+            titles.collect(key, found, limit);
+            words.collect(key, found, limit);
+
+            List<Series> suggestions = new ArrayList<>(found.size());
+
+            for (Entry entry : found) {
+                suggestions.add(new Series(entry.title, entry.issues, entry.copies));
+            }
+
+            return suggestions;
+        }
+
+        /*
+         * Returns the keys a series can also be found under: the rest of
+         * its title, starting from each word after the first that isn't a
+         * stop word.
+         */
+
+        private static List<String> suffixes(List<String> tokens) {
+            List<String> suffixes = new ArrayList<>();
+
+            for (int i = 1; i < tokens.size(); i++) {
+                if (!Tokenizer.STOP_WORDS.contains(tokens.get(i))) {
+                    suffixes.add(String.join(" ", tokens.subList(i, tokens.size())));
+                }
+            }
+
+            return suffixes;
+        }
+    }
+
+    /*
+     * A series, and its running totals.
+     */
+
+    private static class Entry {
+
+        private final String key;
+        private String title;
+        private int issues;
+        private int copies;
+
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+
+    /*
+     * A radix tree mapping keys to entries. Every node but the root has a
+     * label, the characters on the way to it from its parent, and the key
+     * of the entries at a node is the labels from the root down to it
+     * joined together. No two children of a node have labels that start
+     * with the same character, so there's only one way down the tree for
+     * any key; children are sorted by that character, which keeps the
+     * tree in alphabetical order. A node with no entries always has at
+     * least two children, since otherwise it could be merged with its
+     * child, so the tree never has more nodes than twice its keys.
+     *
+     * More than one entry can share a key (in the tree of later words,
+     * "spider man" could be Spider-Man or The Amazing Spider-Man), so each
+     * node holds an array of them, sorted by their own keys.
+     */
+
+    private static class Tree {
+
+        private final Node root = new Node(new char[0]);
+
+        /*
+         * Returns the first entry with a key, or null if there isn't one.
+         */
+
+        Entry get(String key) {
+            Node node = root;
+            int i = 0;
+
+            while (i < key.length()) {
+                int c = node.find(key.charAt(i));
+
+                if (c < 0) {
+                    return null;
+                }
+
+                Node child = node.children[c];
+
+                if (child.common(key, i) < child.label.length) {
+                    return null;
+                }
+
+                node = child;
+                i += child.label.length;
+            }
+
+            return node.entries.length == 0 ? null : node.entries[0];
+        }
+
+        void insert(String key, Entry entry) {
+            Node node = root;
+            int i = 0;
+
+            while (i < key.length()) {
+                int c = node.find(key.charAt(i));
+
+                // nothing shares the next character, so the rest of the key
+                // becomes the label of a new leaf.
+
+                if (c < 0) {
+                    Node leaf = new Node(key.substring(i).toCharArray());
+
+                    leaf.entries = new Entry[] { entry };
+                    node.insertChild(-c - 1, leaf);
+
+                    return;
+                }
+
+                Node child = node.children[c];
+                int n = child.common(key, i);
+
+                // the key leaves the child's label part way through, so the
+                // label is split in two, with a new node where they differ.
+
+                if (n < child.label.length) {
+                    Node split = new Node(Arrays.copyOf(child.label, n));
+
+                    child.label = Arrays.copyOfRange(child.label, n, child.label.length);
+                    split.children = new Node[] { child };
+                    node.children[c] = split;
+                    child = split;
+                }
+
+                node = child;
+                i += n;
+            }
+
+            node.addEntry(entry);
+        }
+
+        void remove(String key, Entry entry) {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            int i = 0;
+
+            path.add(root);
+
+            while (i < key.length()) {
+                int c = node.find(key.charAt(i));
+
+                if (c < 0) {
+                    return;
+                }
+
+                node = node.children[c];
+                i += node.label.length;
+                path.add(node);
+            }
+
+            node.removeEntry(entry);
+
+            // then we tidy up on the way back to the root: a node with
+            // nothing left under it is removed, and a node left with just
+            // one child and no entries of its own is merged into it.
+
+            for (int depth = path.size() - 1; depth > 0; depth--) {
+                node = path.get(depth);
+
+                if (node.entries.length > 0 || node.children.length > 1) {
+                    break;
+                }
+
+                if (node.children.length == 1) {
+                    node.absorb(node.children[0]);
+                    break;
+                }
+
+                path.get(depth - 1).removeChild(node.label[0]);
+            }
+        }
+
+        /*
+         * Adds the entries whose keys start with a prefix to a list, in
+         * order, until the list has limit entries. Entries already in the
+         * list aren't added again.
+         */
+
+        void collect(String prefix, List<Entry> found, int limit) {
+            Node node = root;
+            int i = 0;
+
+            while (i < prefix.length()) {
+                int c = node.find(prefix.charAt(i));
+
+                if (c < 0) {
+                    return;
+                }
+
+                Node child = node.children[c];
+                int n = child.common(prefix, i);
+
+                // the prefix can end part way through a label, but it can't
+                // leave it.
+
+                if (n < child.label.length && i + n < prefix.length()) {
+                    return;
+                }
+
+                node = child;
+                i += n;
+            }
+
+            collect(node, found, limit);
+        }
+
+        private static void collect(Node node, List<Entry> found, int limit) {
+            for (Entry entry : node.entries) {
+                if (found.size() == limit) {
+                    return;
+                }
+
+                if (!found.contains(entry)) {
+                    found.add(entry);
+                }
+            }
+
+            for (Node child : node.children) {
+                if (found.size() == limit) {
+                    return;
+                }
+
+                collect(child, found, limit);
+            }
+        }
+    }
+
+    /*
+     * A node in a Tree. Arrays are sized exactly, since most nodes have
+     * only one or two entries or children, and nodes change far less often
+     * than they're read.
+     */
+
+    private static class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        private char[] label;
+        private Node[] children = NO_CHILDREN;
+        private Entry[] entries = NO_ENTRIES;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        /*
+         * Returns the position of the child whose label starts with a
+         * character, or (-(insertion point) - 1) if there isn't one.
+         */
+
+        int find(char c) {
+            int low = 0;
+            int high = children.length - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = children[mid].label[0];
+
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+
+            return -(low + 1);
+        }
+
+        /*
+         * Returns how many characters of the label match the key, starting
+         * from a position in the key.
+         */
+
+        int common(String key, int from) {
+            int n = 0;
+
+            while (n < label.length && from + n < key.length() && label[n] == key.charAt(from + n)) {
+                n++;
+            }
+
+            return n;
+        }
+
+        void insertChild(int position, Node child) {
+            Node[] grown = new Node[children.length + 1];
+
+            System.arraycopy(children, 0, grown, 0, position);
+            System.arraycopy(children, position, grown, position + 1, children.length - position);
+            grown[position] = child;
+            children = grown;
+        }
+
+        void removeChild(char first) {
+            int position = find(first);
+            Node[] shrunk = new Node[children.length - 1];
+
+            System.arraycopy(children, 0, shrunk, 0, position);
+            System.arraycopy(children, position + 1, shrunk, position, shrunk.length - position);
+            children = shrunk.length == 0 ? NO_CHILDREN : shrunk;
+        }
+
+        void addEntry(Entry entry) {
+            int position = 0;
+
+            while (position < entries.length && entries[position].key.compareTo(entry.key) <= 0) {
+                position++;
+            }
+
+            Entry[] grown = new Entry[entries.length + 1];
+
+            System.arraycopy(entries, 0, grown, 0, position);
+            System.arraycopy(entries, position, grown, position + 1, entries.length - position);
+            grown[position] = entry;
+            entries = grown;
+        }
+
+        void removeEntry(Entry entry) {
+            for (int position = 0; position < entries.length; position++) {
+                if (entries[position] == entry) {
+                    Entry[] shrunk = new Entry[entries.length - 1];
+
+                    System.arraycopy(entries, 0, shrunk, 0, position);
+                    System.arraycopy(entries, position + 1, shrunk, position, shrunk.length - position);
+                    entries = shrunk.length == 0 ? NO_ENTRIES : shrunk;
+
+                    return;
+                }
+            }
+        }
+
+        /*
+         * Merges this node's only child into it, so the two labels become
+         * one and the child's entries and children become this node's.
+         */
+
+        void absorb(Node child) {
+            char[] merged = Arrays.copyOf(label, label.length + child.label.length);
+
+            System.arraycopy(child.label, 0, merged, label.length, child.label.length);
+            label = merged;
+            children = child.children;
+            entries = child.entries;
+        }
+    }
+
+    /*
+     * The series and copies of each product, in slots found by productId
+     * through a LongIntMap, so nothing is boxed. Slots left behind by
+     * removed products are kept in a free list, threaded through copies,
+     * and reused.
+     */
+
+    private static class Issues {
+
+        static final int EMPTY = LongIntMap.MISSING;
+
+        private final LongIntMap slots = new LongIntMap();
+        private Entry[] entries = new Entry[512];      // null if this slot isn't in use
+        private int[] copies = new int[512];
+        private int end;
+        private int free = EMPTY;
+
+        /*
+         * Returns the slot holding a productId, or EMPTY.
+         */
+
+        int find(long productId) {
+            return slots.get(productId);
+        }
+
+        void put(long productId, Entry entry, int count) {
+            int slot = free;
+
+            if (slot != EMPTY) {
+                free = copies[slot];
+            } else {
+                if (end == entries.length) {
+                    entries = Arrays.copyOf(entries, end * 2);
+                    copies = Arrays.copyOf(copies, end * 2);
+                }
+
+                slot = end++;
+            }
+
+            entries[slot] = entry;
+            copies[slot] = count;
+            slots.put(productId, slot);
+        }
+
+        void remove(long productId) {
+            int slot = slots.remove(productId);
+
+            if (slot != EMPTY) {
+                entries[slot] = null;
+                copies[slot] = free;
+                free = slot;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.ucvts.comics.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ * Splits text into the words the indexes are built from.
+ *
+ * Text is lower-cased and accent-folded first, so "Pokemon" (with or
+ * without its accent) and "POKEMON" become the same word. Words are runs
+ * of letters and digits; everything else separates them, except
+ * apostrophes, which are dropped so that "Marvel's" is one word
+ * ("marvels") rather than two.
+ */
+
+final class Tokenizer {
+
+    // words so common they'd match much of the catalog without narrowing
+    // anything down. they're left out of the indexes and ignored in searches.
+
+    static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("a", "an", "and", "of", "the"));
+
+    private Tokenizer() {
+        // just static helpers
+    }
+
+    /*
+     * Returns the words in a piece of text, in the order they appear.
+     */
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+
+        if (text == null) {
+            return tokens;
+        }
+
+        String folded = fold(text);
+        StringBuilder token = new StringBuilder();
+
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (c != '\'' && c != '\u2019') {
+                if (token.length() > 0) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                }
+            }
+        }
+
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+
+        return tokens;
+    }
+
+    /*
+     * Lower-cases a piece of text and strips the accents from it.
+     */
+
+    static String fold(String text) {
+        boolean ascii = true;
+
+        for (int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+
+        // almost everything we index is plain ascii, which has no accents
+        // to strip, so we only pay for normalizing when we have to.
+
+        if (!ascii) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        }
+
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
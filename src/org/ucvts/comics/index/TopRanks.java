@@ -0,0 +1,103 @@
+package org.ucvts.comics.index;
+
+/*
+ * Keeps the best few of any number of ranks, for returning the top results
+ * of a search.
+ *
+ * A rank is a single long, where smaller is better: the score goes in the
+ * high bits (subtracted from its maximum, so a better score is smaller),
+ * any tie-breakers below it, and the number of what's being ranked in the
+ * low 32 bits. The best ranks are kept in a heap with the worst of them on
+ * top, so most ranks can be turned away with one comparison against it.
+ */
+
+final class TopRanks {
+
+    private final long[] heap;
+    private int size;
+
+    TopRanks(int limit) {
+        this.heap = new long[limit];
+    }
+
+    /*
+     * Keeps a rank if it's one of the best so far.
+     */
+
+    void offer(long rank) {
+        if (size < heap.length) {
+            heap[size] = rank;
+            siftUp(size);
+            size++;
+        } else if (size > 0 && rank < heap[0]) {
+            heap[0] = rank;
+            siftDown();
+        }
+    }
+
+    /*
+     * Removes the ranks that were kept, and returns them best first.
+     */
+
+    long[] drain() {
+        long[] ranks = new long[size];
+
+        // taking the worst off the top each time fills the ranks in from
+        // the back.
+
+        while (size > 0) {
+            size--;
+            ranks[size] = heap[0];
+            heap[0] = heap[size];
+            siftDown();
+        }
+
+        return ranks;
+    }
+
+    /*
+     * Returns the number in the low 32 bits of a rank.
+     */
+
+    static int number(long rank) {
+        return (int) rank;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0 && heap[(i - 1) / 2] < heap[i]) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private void siftDown() {
+        int i = 0;
+
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+
+            if (left < size && heap[left] > heap[largest]) {
+                largest = left;
+            }
+
+            if (right < size && heap[right] > heap[largest]) {
+                largest = right;
+            }
+
+            if (largest == i) {
+                return;
+            }
+
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+}
@@ -0,0 +1,154 @@
+package org.ucvts.comics.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a CSV file one record at a time.
+ *
+ * The file is read through a fixed-size buffer, so only the current record
+ * is ever held in memory, no matter how large the file is. Fields may be
+ * quoted, and quoted fields may contain commas, doubled quotes, and line
+ * breaks.
+ */
+
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private long lineNumber;
+    private long recordLine;
+
+    /**
+     * Opens a CSV file encoded in UTF-8. Malformed characters are replaced
+     * rather than failing the whole file.
+     *
+     * @param path the file to read
+     * @throws IOException
+     */
+
+    public CsvReader(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        this.in = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the fields of the record, or null at the end of the file
+     * @throws IOException
+     */
+
+    public List<String> next() throws IOException {
+        int c = read();
+
+        if (c < 0) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        boolean quoted = false;
+
+        recordLine = ++lineNumber;
+        field.setLength(0);
+
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field starting at line " + recordLine);
+                } else if (c == '"') {
+                    c = read();
+
+                    if (c != '"') {
+                        quoted = false;     // closing quote; c is the next character
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    lineNumber++;
+                }
+
+                field.append((char) c);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c < 0) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+
+                fields.add(field.toString());
+
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+
+            c = read();
+        }
+    }
+
+    /**
+     * Returns the line the most recent record started on.
+     *
+     * @return the line number, starting at 1
+     */
+
+    public long getLineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException
+     */
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+
+        position = 0;
+        limit = Math.max(n, 0);
+
+        return n > 0;
+    }
+}
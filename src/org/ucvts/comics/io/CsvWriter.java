@@ -0,0 +1,121 @@
+package org.ucvts.comics.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes records to a CSV file, quoting any field that contains a comma,
+ * a quote, or a line break.
+ */
+
+public class CsvWriter implements Closeable {
+
+    private final Writer out;
+
+    /**
+     * Creates a CSV writer that writes to the specified writer.
+     *
+     * @param out where to write the records
+     */
+
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a single record.
+     *
+     * @param fields the fields of the record
+     * @throws IOException
+     */
+
+    public void write(List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+
+            writeField(fields.get(i));
+        }
+
+        out.write("\r\n");
+    }
+
+    /**
+     * Writes a single field, without ending the record. Fields written this
+     * way must be separated with writeSeparator and the record finished with
+     * endRecord.
+     *
+     * @param field the field (null is written as an empty field)
+     * @throws IOException
+     */
+
+    public void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+
+        if (needsQuotes(field)) {
+            out.write('"');
+            out.write(field.replace("\"", "\"\""));
+            out.write('"');
+        } else {
+            out.write(field);
+        }
+    }
+
+    /**
+     * Separates two fields written with writeField.
+     *
+     * @throws IOException
+     */
+
+    public void writeSeparator() throws IOException {
+        out.write(',');
+    }
+
+    /**
+     * Ends a record written with writeField.
+     *
+     * @throws IOException
+     */
+
+    public void endRecord() throws IOException {
+        out.write("\r\n");
+    }
+
+    /**
+     * Flushes any buffered records.
+     *
+     * @throws IOException
+     */
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the underlying writer.
+     *
+     * @throws IOException
+     */
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package org.ucvts.comics.io;
+
+/**
+ * The file formats data can be exported in.
+ */
+
+public enum ExportFormat {
+
+    /**
+     * Comma-separated values, with a header row naming the columns.
+     */
+
+    CSV(".csv"),
+
+    /**
+     * Newline-delimited JSON: one JSON object per line.
+     */
+
+    NDJSON(".ndjson");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Returns the usual file extension for this format.
+     *
+     * @return the extension, including the leading dot
+     */
+
+    public String getExtension() {
+        return extension;
+    }
+}
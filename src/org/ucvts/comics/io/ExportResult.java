@@ -0,0 +1,72 @@
+package org.ucvts.comics.io;
+
+public class ExportResult {
+
+    private final long rows;
+    private final long bytes;
+    private final long elapsedMillis;
+
+    /**
+     * Creates an instance of the ExportResult class.
+     *
+     * @param rows          the number of records written
+     * @param bytes         the size of the file written
+     * @param elapsedMillis how long the export took
+     */
+
+    public ExportResult(long rows, long bytes, long elapsedMillis) {
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the number of records written.
+     *
+     * @return rows
+     */
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the size of the file written (after compression, if any).
+     *
+     * @return bytes
+     */
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns how long the export took.
+     *
+     * @return elapsedMillis
+     */
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the number of records written per second.
+     *
+     * @return the throughput in rows per second
+     */
+
+    public double getRowsPerSecond() {
+        return rows * 1000.0 / Math.max(1, elapsedMillis);
+    }
+
+    /**
+     * Returns the number of megabytes written per second.
+     *
+     * @return the throughput in MB/s
+     */
+
+    public double getMegabytesPerSecond() {
+        return bytes / (1024.0 * 1024.0) * 1000.0 / Math.max(1, elapsedMillis);
+    }
+}
@@ -0,0 +1,409 @@
+package org.ucvts.comics.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.ucvts.comics.dao.CustomerDAO;
+import org.ucvts.comics.dao.OrderDAO;
+import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.Money;
+import org.ucvts.comics.model.Order;
+import org.ucvts.comics.model.OrderItem;
+
+/**
+ * Exports products, customers, and orders to CSV or newline-delimited JSON.
+ *
+ * Rows are read from a database cursor and written straight to a buffered
+ * file channel as they arrive, so an export never holds more than one row
+ * (or one order) in memory. Output can optionally be gzipped.
+ *
+ * In CSV, each order is written as one row per item, with the order's
+ * columns repeated on each row. In JSON, each order is a single object
+ * with its items in an array.
+ */
+
+public class Exporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final List<String> PRODUCT_COLUMNS = Arrays.asList(
+        "id", "title", "author", "releasedate", "issue", "unitprice", "copies"
+    );
+
+    private static final List<String> CUSTOMER_COLUMNS = Arrays.asList(
+        "id", "firstname", "lastname", "phone", "email", "street", "city", "state", "postalcode"
+    );
+
+    private static final List<String> ORDER_COLUMNS = Arrays.asList(
+        "id", "orderdate", "status", "total", "customerid"
+    );
+
+    private static final List<String> ITEM_COLUMNS = Arrays.asList(
+        "itemid", "productid", "quantity", "price"
+    );
+
+    /**
+     * Exports every product.
+     *
+     * @param target where to write the file
+     * @param format the file format
+     * @param gzip   whether to compress the file
+     * @return the number of rows written and the throughput
+     * @throws IOException
+     * @throws SQLException
+     */
+
+    public static ExportResult exportProducts(Path target, ExportFormat format, boolean gzip)
+            throws IOException, SQLException
+    {
+        try (Output out = new Output(target, format, gzip, PRODUCT_COLUMNS)) {
+            ProductDAO.forEachProduct(p -> out.write(
+                p.getProductId(),
+                p.getTitle(),
+                p.getAuthor(),
+                p.getReleaseDate(),
+                p.getIssue(),
+                money(p.getUnitPrice()),
+                p.getCopies()
+            ));
+
+            return out.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Exports every customer.
+     *
+     * @param target where to write the file
+     * @param format the file format
+     * @param gzip   whether to compress the file
+     * @return the number of rows written and the throughput
+     * @throws IOException
+     * @throws SQLException
+     */
+
+    public static ExportResult exportCustomers(Path target, ExportFormat format, boolean gzip)
+            throws IOException, SQLException
+    {
+        try (Output out = new Output(target, format, gzip, CUSTOMER_COLUMNS)) {
+            CustomerDAO.forEachCustomer(c -> out.write(
+                c.getCustomerId(),
+                c.getFirstName(),
+                c.getLastName(),
+                c.getPhone(),
+                c.getEmail(),
+                c.getStreetAddress(),
+                c.getCity(),
+                c.getState(),
+                c.getPostalCode()
+            ));
+
+            return out.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Exports every order, along with its items.
+     *
+     * @param target where to write the file
+     * @param format the file format
+     * @param gzip   whether to compress the file
+     * @return the number of rows written (order items for CSV, orders for
+     *         JSON) and the throughput
+     * @throws IOException
+     * @throws SQLException
+     */
+
+    public static ExportResult exportOrders(Path target, ExportFormat format, boolean gzip)
+            throws IOException, SQLException
+    {
+        List<String> columns = new ArrayList<>(ORDER_COLUMNS);
+
+        if (format == ExportFormat.CSV) {
+            columns.addAll(ITEM_COLUMNS);
+        } else {
+            columns.add("items");
+        }
+
+        try (Output out = new Output(target, format, gzip, columns)) {
+            OrderDAO.forEachOrderWithItems(order -> {
+                if (format == ExportFormat.CSV) {
+                    writeOrderRows(out, order);
+                } else {
+                    writeOrderObject(out, order);
+                }
+            });
+
+            return out.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /*
+     * Writes an order as one CSV row per item. An order without items is
+     * written as a single row with the item columns left empty.
+     */
+
+    private static void writeOrderRows(Output out, Order order) {
+        Object[] values = new Object[ORDER_COLUMNS.size() + ITEM_COLUMNS.size()];
+
+        values[0] = order.getOrderId();
+        values[1] = order.getOrderDate();
+        values[2] = order.getStatus();
+        values[3] = money(order.getTotal());
+        values[4] = order.getCustomer() == null ? null : order.getCustomer().getCustomerId();
+
+        if (order.getItems().isEmpty()) {
+            out.write(values);
+        }
+
+        for (OrderItem item : order.getItems()) {
+            values[5] = item.getItemId();
+            values[6] = item.getProduct().getProductId();
+            values[7] = item.getQuantity();
+            values[8] = money(item.getPrice());
+
+            out.write(values);
+        }
+    }
+
+    /*
+     * Writes an order as a single JSON object, with its items nested in it.
+     */
+
+    private static void writeOrderObject(Output out, Order order) {
+        List<Map<String, Object>> items = new ArrayList<>(order.getItems().size());
+
+        for (OrderItem item : order.getItems()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+
+            values.put(ITEM_COLUMNS.get(0), item.getItemId());
+            values.put(ITEM_COLUMNS.get(1), item.getProduct().getProductId());
+            values.put(ITEM_COLUMNS.get(2), item.getQuantity());
+            values.put(ITEM_COLUMNS.get(3), money(item.getPrice()));
+
+            items.add(values);
+        }
+
+        Customer customer = order.getCustomer();
+
+        out.write(
+            order.getOrderId(),
+            order.getOrderDate(),
+            order.getStatus(),
+            money(order.getTotal()),
+            customer == null ? null : customer.getCustomerId(),
+            items
+        );
+    }
+
+    private static BigDecimal money(long cents) {
+        return Money.toBigDecimal(cents);
+    }
+
+    /*
+     * An export file. Values are written as they're given to write, and the
+     * file is finished (and its trailer written, if it's gzipped) by finish.
+     */
+
+    private static class Output implements Closeable {
+
+        private final ExportFormat format;
+        private final List<String> columns;
+        private final CountingOutputStream file;
+        private final Writer writer;
+        private final CsvWriter csv;
+        private final long start = System.currentTimeMillis();
+        private long rows;
+
+        Output(Path target, ExportFormat format, boolean gzip, List<String> columns) throws IOException {
+            this.format = format;
+            this.columns = columns;
+            this.file = new CountingOutputStream(Channels.newOutputStream(FileChannel.open(target,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+
+            OutputStream out = gzip ? new GZIPOutputStream(file, BUFFER_SIZE) : file;
+
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.csv = format == ExportFormat.CSV ? new CsvWriter(writer) : null;
+
+            if (csv != null) {
+                csv.write(columns);
+            }
+        }
+
+        /*
+         * Writes a record. This is called from inside a DAO's forEach, which
+         * can't throw an IOException, so one is passed along unchecked.
+         */
+
+        void write(Object... values) {
+            try {
+                if (csv != null) {
+                    writeCsv(values);
+                } else {
+                    writeJson(values);
+                }
+
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        ExportResult finish() throws IOException {
+            writer.close();
+
+            return new ExportResult(rows, file.count, System.currentTimeMillis() - start);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+        private void writeCsv(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    csv.writeSeparator();
+                }
+
+                csv.writeField(values[i] == null ? null : values[i].toString());
+            }
+
+            csv.endRecord();
+        }
+
+        private void writeJson(Object[] values) throws IOException {
+            writer.write('{');
+
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+
+                writeString(columns.get(i));
+                writer.write(':');
+                writeValue(values[i]);
+            }
+
+            writer.write("}\n");
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                writer.write("null");
+            } else if (value instanceof Number) {
+                writer.write(value.toString());
+            } else if (value instanceof List) {
+                writer.write('[');
+
+                boolean first = true;
+
+                for (Object element : (List<?>) value) {
+                    if (!first) {
+                        writer.write(',');
+                    }
+
+                    writeValue(element);
+                    first = false;
+                }
+
+                writer.write(']');
+            } else if (value instanceof Map) {
+                writer.write('{');
+
+                boolean first = true;
+
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    if (!first) {
+                        writer.write(',');
+                    }
+
+                    writeString(entry.getKey().toString());
+                    writer.write(':');
+                    writeValue(entry.getValue());
+                    first = false;
+                }
+
+                writer.write('}');
+            } else {
+                writeString(value.toString());
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            writer.write('"');
+
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+
+                switch (c) {
+                    case '"':  writer.write("\\\""); break;
+                    case '\\': writer.write("\\\\"); break;
+                    case '\n': writer.write("\\n"); break;
+                    case '\r': writer.write("\\r"); break;
+                    case '\t': writer.write("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            writer.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            writer.write(c);
+                        }
+                }
+            }
+
+            writer.write('"');
+        }
+    }
+
+    /*
+     * Counts the bytes that actually reach the file.
+     */
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
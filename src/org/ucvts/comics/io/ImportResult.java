@@ -0,0 +1,65 @@
+package org.ucvts.comics.io;
+
+public class ImportResult {
+
+    private final long rowsRead;
+    private final long imported;
+    private final long rejected;
+    private final long elapsedMillis;
+
+    /**
+     * Creates an instance of the ImportResult class.
+     *
+     * @param rowsRead      the number of data rows read so far
+     * @param imported      the number of rows saved to the database
+     * @param rejected      the number of rows that failed validation
+     * @param elapsedMillis how long the import has been running
+     */
+
+    public ImportResult(long rowsRead, long imported, long rejected, long elapsedMillis) {
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the number of data rows read so far (not counting the header).
+     *
+     * @return rowsRead
+     */
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Returns the number of rows saved to the database.
+     *
+     * @return imported
+     */
+
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Returns the number of rows that failed validation.
+     *
+     * @return rejected
+     */
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns how long the import has been running.
+     *
+     * @return elapsedMillis
+     */
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
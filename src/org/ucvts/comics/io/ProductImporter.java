@@ -0,0 +1,372 @@
+package org.ucvts.comics.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.ucvts.comics.dao.DAO;
+import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.dao.UncheckedSQLException;
+import org.ucvts.comics.model.Money;
+import org.ucvts.comics.model.Product;
+
+/**
+ * Imports a distributor catalog (a CSV file) into the products table.
+ *
+ * The first row must name the columns: title, author, releasedate (in
+ * YYYYMMDD format), issue, unitprice, and copies, in any order. Other
+ * columns are ignored. Each row is added to inventory, or, if a product
+ * with the same title and issue already exists, replaces it.
+ *
+ * The file is processed in chunks. Each chunk is validated in parallel and
+ * then saved in the background while the next chunk is read, so there are
+ * never more than two chunks in memory regardless of the size of the file.
+ * Rows that fail validation are written to a reject file, along with the
+ * reason they were rejected, so they can be fixed and imported again.
+ */
+
+public class ProductImporter {
+
+    private static final List<String> COLUMNS = Arrays.asList(
+        "title", "author", "releasedate", "issue", "unitprice", "copies"
+    );
+
+    private static final int CHUNK_SIZE = Integer.getInteger("midtowncomics.import.chunkSize",
+            DAO.DEFAULT_BATCH_SIZE);
+
+    private final Path rejectPath;
+    private final long start = System.currentTimeMillis();
+    private int[] columns;
+    private List<String> header;
+    private CsvWriter rejects;
+    private long rowsRead;
+    private long imported;
+    private long rejected;
+
+    private ProductImporter(Path rejectPath) {
+        this.rejectPath = rejectPath;
+    }
+
+    /**
+     * Imports a catalog file.
+     *
+     * @param source   the CSV file to import
+     * @param rejects  where to write rows that fail validation, or null to
+     *                 discard them (the reject file is only created if at
+     *                 least one row is rejected)
+     * @param progress receives the running totals after each chunk, on the
+     *                 importing thread (may be null)
+     * @return the final totals
+     * @throws IOException  if a file can't be read or written, or the header
+     *                      is missing a required column
+     * @throws SQLException if the products can't be saved; every chunk
+     *                      before the failed one has already been saved
+     */
+
+    public static ImportResult importProducts(Path source, Path rejects, Consumer<ImportResult> progress)
+            throws IOException, SQLException
+    {
+        return new ProductImporter(rejects).run(source, progress);
+    }
+
+    private ImportResult run(Path source, Consumer<ImportResult> progress) throws IOException, SQLException {
+
+        // a single writer thread keeps the saves in file order, so if a
+        // product appears more than once, the last row wins.
+
+        ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "product-import-writer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // the products are saved without notifying anyone, and the cache
+        // and indexes are refreshed once, when the import is over.
+
+        ProductDAO.Upsert upsert = ProductDAO.beginUpsert();
+        CompletableFuture<Integer> pending = CompletableFuture.completedFuture(0);
+
+        try (CsvReader in = new CsvReader(source)) {
+            readHeader(in);
+
+            List<Row> chunk;
+
+            while (!(chunk = readChunk(in)).isEmpty()) {
+                chunk.parallelStream().forEach(this::validate);
+
+                List<Product> valid = new ArrayList<>(chunk.size());
+
+                for (Row row : chunk) {
+                    if (row.error == null) {
+                        valid.add(row.product);
+                    } else {
+                        reject(row);
+                    }
+                }
+
+                // wait for the previous chunk to finish saving before we
+                // start on this one, so at most one chunk is ever waiting.
+
+                imported += await(pending);
+                pending = CompletableFuture.supplyAsync(() -> save(upsert, valid), writer);
+
+                if (progress != null) {
+                    progress.accept(result());
+                }
+            }
+
+            imported += await(pending);
+        } finally {
+            writer.shutdown();
+
+            // if something went wrong while a chunk was still saving, it
+            // has to finish before anyone's told the products changed.
+
+            pending.handle((count, error) -> count).join();
+            upsert.close();
+
+            if (rejects != null) {
+                rejects.close();
+            }
+        }
+
+        ImportResult result = result();
+
+        if (progress != null) {
+            progress.accept(result);
+        }
+
+        return result;
+    }
+
+    /*
+     * Reads the header row and works out which column holds each field.
+     */
+
+    private void readHeader(CsvReader in) throws IOException {
+        header = in.next();
+
+        if (header == null) {
+            throw new IOException("The file is empty");
+        }
+
+        List<String> names = header.stream()
+            .map(name -> name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", ""))
+            .collect(Collectors.toList());
+
+        List<String> missing = new ArrayList<>();
+        columns = new int[COLUMNS.size()];
+
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = names.indexOf(COLUMNS.get(i));
+
+            if (columns[i] < 0) {
+                missing.add(COLUMNS.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            throw new IOException("Missing column(s): " + String.join(", ", missing));
+        }
+    }
+
+    /*
+     * Reads up to CHUNK_SIZE rows, skipping blank lines.
+     */
+
+    private List<Row> readChunk(CsvReader in) throws IOException {
+        List<Row> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<String> fields;
+
+        while (chunk.size() < CHUNK_SIZE && (fields = in.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).trim().isEmpty()) {
+                continue;
+            }
+
+            chunk.add(new Row(in.getLineNumber(), fields));
+            rowsRead++;
+        }
+
+        return chunk;
+    }
+
+    /*
+     * Builds a product from a row, or records why it can't be built. Rows
+     * are validated on several threads at once, so this mustn't touch
+     * anything other than the row itself.
+     */
+
+    private void validate(Row row) {
+        String[] values = new String[columns.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] >= row.fields.size()) {
+                row.error = "Expected " + header.size() + " columns but found " + row.fields.size();
+                return;
+            }
+
+            values[i] = row.fields.get(columns[i]).trim();
+        }
+
+        try {
+            String title = required(values[0], "title");
+            String author = required(values[1], "author");
+            long releaseDate = parseDate(values[2]);
+            int issue = parseCount(values[3], "issue");
+            long unitPrice = parsePrice(values[4]);
+            int copies = parseCount(values[5], "copies");
+
+            row.product = new Product(0, title, author, releaseDate, issue, unitPrice, copies);
+        } catch (IllegalArgumentException e) {
+            row.error = e.getMessage();
+        }
+    }
+
+    private static String required(String value, String column) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException(column + " is required");
+        }
+
+        return value;
+    }
+
+    private static long parseDate(String value) {
+        if (!value.matches("\\d{8}")) {
+            throw new IllegalArgumentException("releasedate must be in YYYYMMDD format");
+        }
+
+        try {
+            LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("releasedate is not a valid date");
+        }
+
+        return Long.parseLong(value);
+    }
+
+    private static int parseCount(String value, String column) {
+        try {
+            int count = Integer.parseInt(value);
+
+            if (count >= 0) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+
+        throw new IllegalArgumentException(column + " must be a whole number, 0 or more");
+    }
+
+    private static long parsePrice(String value) {
+        try {
+            long price = Money.parse(value);
+
+            if (price >= 0) {
+                return price;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+
+        throw new IllegalArgumentException("unitprice must be a price, 0 or more, with at most two decimal places");
+    }
+
+    /*
+     * Writes a row to the reject file, with the line it came from and the
+     * reason it was rejected in two extra columns.
+     */
+
+    private void reject(Row row) throws IOException {
+        rejected++;
+
+        if (rejectPath == null) {
+            return;
+        }
+
+        if (rejects == null) {
+            rejects = new CsvWriter(new BufferedWriter(Channels.newWriter(FileChannel.open(rejectPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                    StandardCharsets.UTF_8.newEncoder(), -1)));
+
+            List<String> fields = new ArrayList<>(header);
+            fields.add("line");
+            fields.add("error");
+            rejects.write(fields);
+        }
+
+        List<String> fields = new ArrayList<>(row.fields);
+        fields.add(String.valueOf(row.line));
+        fields.add(row.error);
+        rejects.write(fields);
+    }
+
+    private static int save(ProductDAO.Upsert upsert, List<Product> products) {
+        if (products.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            upsert.upsertProducts(products);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+
+        return products.size();
+    }
+
+    /*
+     * Waits for a chunk to finish saving, rethrowing anything that went wrong.
+     */
+
+    private static int await(CompletableFuture<Integer> pending) throws SQLException {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedSQLException) {
+                throw ((UncheckedSQLException) e.getCause()).getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private ImportResult result() {
+        return new ImportResult(rowsRead, imported, rejected, System.currentTimeMillis() - start);
+    }
+
+    /*
+     * A row of the file, and what became of it.
+     */
+
+    private static class Row {
+
+        private final long line;
+        private final List<String> fields;
+        private Product product;
+        private String error;
+
+        Row(long line, List<String> fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+}
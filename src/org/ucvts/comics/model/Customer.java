@@ -2,8 +2,6 @@ package org.ucvts.comics.model;
 
 public class Customer {
 
-    private static long lastCustomerId = 1L; // initial customer ID
-
     private long customerId;
     private String firstName;
     private String lastName;
@@ -19,7 +17,7 @@ public class Customer {
      */
 
     public Customer() {
-        this.customerId = Customer.lastCustomerId++; // auto-generate ID
+        this.customerId = 0;    // assigned when it's saved
     }
 
     /**
@@ -0,0 +1,77 @@
+package org.ucvts.comics.model;
+
+public class CustomerStats {
+
+    private long customerId;
+    private int orderCount;
+    private long lifetimeTotal;     // in cents
+    private long lastOrderDate;
+
+    /**
+     * Creates an instance of the CustomerStats class for a customer who
+     * hasn't placed any orders.
+     *
+     * @param customerId the customer ID
+     */
+
+    public CustomerStats(long customerId) {
+        this(customerId, 0, 0, 0L);
+    }
+
+    /**
+     * Creates an instance of the CustomerStats class.
+     *
+     * @param customerId    the customer ID
+     * @param orderCount    the number of orders the customer has placed
+     * @param lifetimeTotal the combined total of every order, in cents
+     * @param lastOrderDate the date of the most recent order, in YYYYMMDD
+     *                      format (or 0 if there are no orders)
+     */
+
+    public CustomerStats(long customerId, int orderCount, long lifetimeTotal, long lastOrderDate) {
+        this.customerId = customerId;
+        this.orderCount = orderCount;
+        this.lifetimeTotal = lifetimeTotal;
+        this.lastOrderDate = lastOrderDate;
+    }
+
+    /**
+     * Returns the customer ID.
+     *
+     * @return customerId
+     */
+
+    public long getCustomerId() {
+        return customerId;
+    }
+
+    /**
+     * Returns the number of orders the customer has placed.
+     *
+     * @return orderCount
+     */
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Returns the combined total of every order the customer has placed.
+     *
+     * @return lifetimeTotal, in cents
+     */
+
+    public long getLifetimeTotal() {
+        return lifetimeTotal;
+    }
+
+    /**
+     * Returns the date of the customer's most recent order.
+     *
+     * @return lastOrderDate (YYYYMMDD), or 0 if there are no orders
+     */
+
+    public long getLastOrderDate() {
+        return lastOrderDate;
+    }
+}
@@ -0,0 +1,193 @@
+package org.ucvts.comics.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money, stored as a whole number of cents in a long.
+ *
+ * Adding up doubles drifts by fractions of a cent (0.1 + 0.2 isn't 0.3),
+ * and BigDecimal creates a new object for every step of every sum. Cents
+ * are exact, and adding them up is as cheap as adding up any other long.
+ * Amounts are only converted to BigDecimal on their way into and out of
+ * the database, which stores them as DECIMAL(x, 2).
+ */
+
+public final class Money {
+
+    private Money() {
+        // there's nothing to create; amounts are just longs
+    }
+
+    /**
+     * Multiplies a price by a quantity.
+     *
+     * @param cents    the price, in cents
+     * @param quantity the quantity
+     * @return the product, in cents
+     * @throws ArithmeticException if the result doesn't fit in a long
+     */
+
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+
+    /**
+     * Parses an amount such as 19.99, $1,250, or -0.5. There may be at most
+     * two digits after the decimal point.
+     *
+     * @param text the amount
+     * @return the amount, in cents
+     * @throws NumberFormatException if the text isn't an amount of money
+     */
+
+    public static long parse(String text) {
+        String s = text.trim();
+        int i = 0;
+        boolean negative = false;
+
+        if (i < s.length() && s.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+
+        if (i < s.length() && s.charAt(i) == '$') {
+            i++;
+        }
+
+        long dollars = 0;
+        long cents = 0;
+        int digits = 0;
+        int decimals = -1;     // -1 until we see the decimal point
+
+        try {
+            for (; i < s.length(); i++) {
+                char c = s.charAt(i);
+
+                if (c >= '0' && c <= '9') {
+                    if (decimals < 0) {
+                        dollars = Math.addExact(Math.multiplyExact(dollars, 10L), c - '0');
+                    } else if (++decimals > 2) {
+                        throw new NumberFormatException("More than two decimal places: " + text);
+                    } else {
+                        cents = cents * 10 + (c - '0');
+                    }
+
+                    digits++;
+                } else if (c == ',' && decimals < 0) {
+                    continue;
+                } else if (c == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    throw new NumberFormatException("Not an amount of money: " + text);
+                }
+            }
+
+            if (digits == 0) {
+                throw new NumberFormatException("Not an amount of money: " + text);
+            }
+
+            if (decimals == 1) {
+                cents *= 10;    // .5 is 50 cents
+            }
+
+            long amount = Math.addExact(Math.multiplyExact(dollars, 100L), cents);
+
+            return negative ? -amount : amount;
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount is too large: " + text);
+        }
+    }
+
+    /**
+     * Formats an amount with two decimal places and no currency symbol or
+     * grouping, e.g., 1250.00.
+     *
+     * @param cents the amount, in cents
+     * @return the formatted amount
+     */
+
+    public static String format(long cents) {
+        StringBuilder sb = new StringBuilder(24);
+
+        if (cents < 0) {
+            sb.append('-');
+        }
+
+        // Math.abs(Long.MIN_VALUE) is still negative, so we work with the
+        // remainder's absolute value instead of the amount's.
+
+        long dollars = Math.abs(cents / 100);
+        int remainder = (int) Math.abs(cents % 100);
+
+        sb.append(dollars).append('.');
+
+        if (remainder < 10) {
+            sb.append('0');
+        }
+
+        return sb.append(remainder).toString();
+    }
+
+    /**
+     * Formats an amount as dollars, e.g., $1,250.00.
+     *
+     * @param cents the amount, in cents
+     * @return the formatted amount
+     */
+
+    public static String formatDollars(long cents) {
+        String digits = format(cents);
+        int start = cents < 0 ? 1 : 0;
+        StringBuilder sb = new StringBuilder(digits.length() + 8);
+
+        if (cents < 0) {
+            sb.append('-');
+        }
+
+        sb.append('$');
+
+        // a comma every three digits, counting back from the decimal point
+
+        int whole = digits.length() - 3;
+
+        for (int i = start; i < whole; i++) {
+            if (i > start && (whole - i) % 3 == 0) {
+                sb.append(',');
+            }
+
+            sb.append(digits.charAt(i));
+        }
+
+        return sb.append(digits, whole, digits.length()).toString();
+    }
+
+    /**
+     * Converts an amount to a BigDecimal with two decimal places, for
+     * storing in a DECIMAL column.
+     *
+     * @param cents the amount, in cents
+     * @return the amount, in dollars
+     */
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * Converts an amount read from a DECIMAL column to cents, rounding to
+     * the nearest cent if it has more than two decimal places.
+     *
+     * @param amount the amount, in dollars (may be null)
+     * @return the amount, in cents (0 if it was null)
+     * @throws ArithmeticException if the amount doesn't fit in a long
+     */
+
+    public static long fromBigDecimal(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+
+        return amount.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+}
@@ -1,29 +1,28 @@
 package org.ucvts.comics.model;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.List;
 
 public class Order {
 
-    private static long lastOrderId = 1L; // initial order ID
-
     private long orderId;
     private Customer customer;
     private long orderDate;
     private String status;
-    private ArrayList<OrderItem> items;
-    private double total;
+    private OrderItemIndex items;
+    private long total;     // in cents
+    private int itemCount;  // copies, across every item
 
     /**
      * Creates a default instance of the Order class.
      */
 
     public Order() {
-        this.orderId = Order.lastOrderId++; // auto-generate ID
-        this.customer = new Customer();
+        this.orderId = 0;                 // assigned when it's saved
+        this.customer = null;             // a walk-in sale until a customer is attached
         this.orderDate = getDate();
         this.status = "Open";
-        this.items = new ArrayList<>();
+        this.items = new OrderItemIndex();
         this.total = 0;
     }
 
@@ -35,33 +34,54 @@ public class Order {
      * @param orderDate the date the order was placed
      * @param status    the status of the order
      * @param items     the items included in the order
-     * @param total     the total price of the order
+     * @param total     the total price of the order, in cents
      */
 
-    public Order(long orderId, Customer customer, long orderDate, String status, ArrayList<OrderItem> items,
-            double total)
+    public Order(long orderId, Customer customer, long orderDate, String status, List<OrderItem> items,
+            long total)
     {
         this.orderId = orderId;
         this.customer = customer;
         this.orderDate = orderDate;
         this.status = status;
-        this.items = items;
+        this.items = new OrderItemIndex();
         this.total = total;
+
+        // the total is as it was saved. we only need to count the copies.
+
+        if (items != null) {
+            for (OrderItem item : items) {
+                attach(item);
+                this.items.add(item);
+                itemCount += item.getQuantity();
+            }
+        }
     }
 
     /**
-     * Adds an OrderItem to the Order.
+     * Adds an OrderItem to the Order. The total is updated by the item's
+     * price rather than added up again, and from then on, changing the
+     * item's quantity updates the total as well.
      * 
      * @param item the item to be added
+     * @throws IllegalArgumentException if the item belongs to another order,
+     *                                  or the order already has an item for
+     *                                  the same product
      */
 
     public void addItem(OrderItem item) {
-        if (items == null) {
-            items = new ArrayList<>();
+        if (item.getOrder() == this) {
+            return;     // it's already in this order
+        }
+
+        if (items.get(item.getProduct().getProductId()) != null) {
+            throw new IllegalArgumentException("Order already has an item for product " +
+                    item.getProduct().getProductId());
         }
 
+        attach(item);
         items.add(item);
-        this.updateTotal();
+        itemChanged(item.getPrice(), item.getQuantity());
     }
 
     /**
@@ -71,11 +91,57 @@ public class Order {
      */
 
     public void removeItem(OrderItem item) {
-        if (items != null) {
-            items.remove(item);
+        if (item.getOrder() == this && items.remove(item)) {
+            detach(item);
+        }
+    }
+
+    /**
+     * Removes the OrderItem for a Product from the Order.
+     * 
+     * @param productId the productId of the product
+     * @return the item that was removed, or null if the product isn't in
+     *         the order
+     */
+
+    public OrderItem removeItem(long productId) {
+        OrderItem item = items.remove(productId);
+
+        if (item != null) {
+            detach(item);
         }
 
-        this.updateTotal();
+        return item;
+    }
+
+    /**
+     * Returns the OrderItem for a Product.
+     * 
+     * @param productId the productId of the product
+     * @return the item, or null if the product isn't in the order
+     */
+
+    public OrderItem getItem(long productId) {
+        return items.get(productId);
+    }
+
+    /**
+     * Changes the quantity of the OrderItem for a Product, updating the
+     * total.
+     * 
+     * @param productId the productId of the product
+     * @param quantity  the new quantity
+     * @return whether the product is in the order
+     */
+
+    public boolean setQuantity(long productId, int quantity) {
+        OrderItem item = items.get(productId);
+
+        if (item != null) {
+            item.setQuantity(quantity);
+        }
+
+        return item != null;
     }
     
     /**
@@ -88,6 +154,16 @@ public class Order {
         return orderId;
     }
     
+    /**
+     * Sets the order ID.
+     *
+     * @param orderId the new order ID
+     */
+    
+    public void setOrderId(long orderId) {
+        this.orderId = orderId;
+    }
+    
     /**
      * Returns the Customer.
      *
@@ -98,6 +174,16 @@ public class Order {
         return customer;
     }
     
+    /**
+     * Sets the Customer.
+     *
+     * @param customer the customer placing the order
+     */
+    
+    public void setCustomer(Customer customer) {
+        this.customer = customer;
+    }
+    
     /**
      * Returns the order date.
      *
@@ -129,25 +215,47 @@ public class Order {
     }
     
     /**
-     * Returns the list of OrderItems.
+     * Returns the OrderItems, in the order they were added. The list can't
+     * be changed directly; use addItem and removeItem instead, so the total
+     * stays correct.
      *
      * @return items
      */
 
-    public ArrayList<OrderItem> getItems() {
-        return items;
+    public List<OrderItem> getItems() {
+        return items.asList();
     }
     
     /**
      * Returns the order total.
      *
-     * @return total
+     * @return total, in cents
      */
 
-    public double getTotal() {
+    public long getTotal() {
         return total;
     }
 
+    /**
+     * Returns the number of copies in the order, across every item.
+     *
+     * @return itemCount
+     */
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /*
+     * Updates the total and item count when an item is added, removed, or
+     * has its quantity changed.
+     */
+
+    void itemChanged(long priceChange, int quantityChange) {
+        total = Math.addExact(total, priceChange);
+        itemCount += quantityChange;
+    }
+
     /*
      * Gets the current date in YYYYMMDD format.
      */
@@ -161,22 +269,25 @@ public class Order {
 
         return Long.valueOf(year + month + day);
     }
-    
+
     /*
-     * Updates the order total using the price of each item.
+     * Makes this order the owner of an item.
      */
 
-    private void updateTotal() {
-        if (items == null) {
-            this.total = 0;
-        } else {
-            double total = 0;
+    private void attach(OrderItem item) {
+        if (item.getOrder() != null && item.getOrder() != this) {
+            throw new IllegalArgumentException("An item for product " + item.getProduct().getProductId() + " already belongs to another order");
+        }
 
-            for (OrderItem item : items) {
-                total = total + item.getPrice();
-            }
+        item.setOrder(this);
+    }
 
-            this.total = total;
-        }
+    /*
+     * Releases an item that was removed from this order.
+     */
+
+    private void detach(OrderItem item) {
+        item.setOrder(null);
+        itemChanged(-item.getPrice(), -item.getQuantity());
     }
-}
\ No newline at end of file
+}
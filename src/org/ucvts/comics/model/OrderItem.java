@@ -2,11 +2,11 @@ package org.ucvts.comics.model;
 
 public class OrderItem {
 
-    private static long lastItemId = 1L; // initial item ID
-
     private long itemId;
     private Product product;
     private int quantity;
+    private long price;     // quantity * unit price, in cents
+    private Order order;    // the order this item belongs to, if any
 
     /**
      * Creates a default instance of the OrderItem class.
@@ -15,9 +15,10 @@ public class OrderItem {
      */
 
     public OrderItem(Product product) {
-        this.itemId = OrderItem.lastItemId++; // auto-generate ID
+        this.itemId = 0;        // assigned when it's saved
         this.product = product;
         this.quantity = 1;
+        this.price = product.getUnitPrice();
     }
 
     /**
@@ -32,16 +33,19 @@ public class OrderItem {
         this.itemId = itemId;
         this.product = product;
         this.quantity = quantity;
+        this.price = Money.times(product.getUnitPrice(), quantity);
     }
 
     /**
-     * Returns the price based on quantity and product unit price.
+     * Returns the price based on quantity and product unit price. The price
+     * is worked out when the item is created and whenever its quantity
+     * changes, so this is just a field access.
      * 
-     * @return the price
+     * @return the price, in cents
      */
 
-    public double getPrice() {
-        return quantity * product.getUnitPrice();
+    public long getPrice() {
+        return price;
     }
     
     /**
@@ -54,6 +58,16 @@ public class OrderItem {
         return itemId;
     }
     
+    /**
+     * Sets the item ID.
+     *
+     * @param itemId the new item ID
+     */
+    
+    public void setItemId(long itemId) {
+        this.itemId = itemId;
+    }
+    
     /**
      * Returns the Product.
      *
@@ -75,12 +89,37 @@ public class OrderItem {
     }
     
     /**
-     * Sets the quantity.
+     * Sets the quantity, and updates the total of the order this item
+     * belongs to (if any).
      *
      * @param quantity the new quantity
      */
 
     public void setQuantity(int quantity) {
+        long price = Money.times(product.getUnitPrice(), quantity);
+
+        if (order != null) {
+            order.itemChanged(price - this.price, quantity - this.quantity);
+        }
+
         this.quantity = quantity;
+        this.price = price;
+    }
+
+    /*
+     * Returns the order this item belongs to.
+     */
+
+    Order getOrder() {
+        return order;
+    }
+
+    /*
+     * Records which order this item belongs to. Only Order calls this, as
+     * items are added to and removed from it.
+     */
+
+    void setOrder(Order order) {
+        this.order = order;
     }
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+package org.ucvts.comics.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.ucvts.comics.util.LongIntMap;
+
+/*
+ * The items in an Order, in the order they were added, indexed by productId.
+ *
+ * Items are kept in an array, so they can be listed in order and read by
+ * position. Alongside it, a LongIntMap maps each productId (a primitive
+ * long, so nothing is boxed) to the item's position, which makes finding,
+ * updating, and removing an item by product O(1) instead of a scan through
+ * the whole order.
+ *
+ * Removing an item just clears its slot in the array. The gaps are closed
+ * up the next time the items are read by position, or once they outnumber
+ * the items, so the cost of closing them is spread across the removals.
+ */
+
+class OrderItemIndex {
+
+    private final LongIntMap positions = new LongIntMap(16);
+
+    private OrderItem[] items = new OrderItem[8];
+    private int end;        // items[0..end) holds every item, and the gaps left by removals
+    private int size;       // the number of items (not counting gaps)
+
+    private final View view = new View();
+
+    /*
+     * Returns the item for a product, or null if the product isn't indexed.
+     */
+
+    OrderItem get(long productId) {
+        int position = positions.get(productId);
+
+        return position == LongIntMap.MISSING ? null : items[position];
+    }
+
+    /*
+     * Adds an item to the end of the list, indexing it by its product unless
+     * another item for the same product is already indexed.
+     *
+     * @return whether the item was indexed
+     */
+
+    boolean add(OrderItem item) {
+        if (end == items.length) {
+            compact();
+
+            if (end == items.length) {
+                items = Arrays.copyOf(items, items.length * 2);
+            }
+        }
+
+        items[end] = item;
+        end++;
+        size++;
+        view.changed();
+
+        long key = item.getProduct().getProductId();
+
+        if (positions.get(key) != LongIntMap.MISSING) {
+            return false;
+        }
+
+        positions.put(key, end - 1);
+
+        return true;
+    }
+
+    /*
+     * Removes the item for a product.
+     *
+     * @return the item that was removed, or null if the product isn't indexed
+     */
+
+    OrderItem remove(long productId) {
+        int position = positions.remove(productId);
+
+        if (position == LongIntMap.MISSING) {
+            return null;
+        }
+
+        OrderItem item = items[position];
+
+        clear(position);
+
+        return item;
+    }
+
+    /*
+     * Removes a specific item, which might not be the one indexed for its
+     * product (if an order was loaded with two items for the same product).
+     *
+     * @return whether the item was found and removed
+     */
+
+    boolean remove(OrderItem item) {
+        if (get(item.getProduct().getProductId()) == item) {
+            return remove(item.getProduct().getProductId()) != null;
+        }
+
+        for (int i = 0; i < end; i++) {
+            if (items[i] == item) {
+                clear(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Returns the number of items.
+     */
+
+    int size() {
+        return size;
+    }
+
+    /*
+     * Returns a read-only, live view of the items, in the order they were
+     * added.
+     */
+
+    List<OrderItem> asList() {
+        return view;
+    }
+
+    private void clear(int position) {
+        items[position] = null;
+        size--;
+        view.changed();
+
+        int gaps = end - size;
+
+        if (gaps > 8 && gaps > size) {
+            compact();
+        }
+    }
+
+    /*
+     * Closes up the gaps left by removed items, updating the position of
+     * every item that moves.
+     */
+
+    private void compact() {
+        int to = 0;
+
+        for (int from = 0; from < end; from++) {
+            OrderItem item = items[from];
+
+            if (item == null) {
+                continue;
+            }
+
+            if (from != to) {
+                items[to] = item;
+
+                long key = item.getProduct().getProductId();
+
+                if (positions.get(key) == from) {
+                    positions.put(key, to);
+                }
+            }
+
+            to++;
+        }
+
+        Arrays.fill(items, to, end, null);
+        end = to;
+    }
+
+    /*
+     * The list view returned by asList. Reading an item by position first
+     * closes up any gaps, so positions always match the order items were
+     * added in.
+     */
+
+    private class View extends AbstractList<OrderItem> implements RandomAccess {
+
+        @Override
+        public OrderItem get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+
+            if (end != size) {
+                compact();
+            }
+
+            return items[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        void changed() {
+            modCount++;
+        }
+    }
+}
@@ -2,14 +2,12 @@ package org.ucvts.comics.model;
 
 public class Product {
 
-    private static long lastProductId = 1L; // initial product ID
-
     private long productId;
     private String title;
     private String author;
     private long releaseDate;
     private int issue;
-    private double unitPrice;
+    private long unitPrice;     // in cents
     private int copies;
 
     /**
@@ -17,7 +15,7 @@ public class Product {
      */
 
     public Product() {
-        this.productId = Product.lastProductId++; // auto-generate ID
+        this.productId = 0;     // assigned when it's saved
     }
 
     /**
@@ -28,11 +26,11 @@ public class Product {
      * @param author      the creator or artist
      * @param releaseDate the date it was released
      * @param issue       the issue number
-     * @param unitPrice   the price
+     * @param unitPrice   the price, in cents
      * @param copies      the number of remaining copies
      */
 
-    public Product(long productId, String title, String author, long releaseDate, int issue, double unitPrice,
+    public Product(long productId, String title, String author, long releaseDate, int issue, long unitPrice,
             int copies)
     {
         this.productId = productId;
@@ -51,12 +49,12 @@ public class Product {
      * @param author      the creator or artist
      * @param releaseDate the date it was released
      * @param issue       the issue number
-     * @param unitPrice   the price
+     * @param unitPrice   the price, in cents
      * @param copies      the number of remaining copies
      */
 
-    public Product(String title, String author, long releaseDate, int issue, double unitPrice, int copies) {
-        this.productId = Product.lastProductId++; // auto-generate ID
+    public Product(String title, String author, long releaseDate, int issue, long unitPrice, int copies) {
+        this.productId = 0;     // assigned when it's saved
         this.title = title;
         this.author = author;
         this.releaseDate = releaseDate;
@@ -168,20 +166,20 @@ public class Product {
     /**
      * Returns the price of one copy.
      *
-     * @return unitPrice
+     * @return unitPrice, in cents
      */
      
-    public double getUnitPrice() {
+    public long getUnitPrice() {
         return unitPrice;
     }
 
     /**
      * Sets the price of one copy.
      *
-     * @param unitPrice the new price
+     * @param unitPrice the new price, in cents
      */
      
-    public void setUnitPrice(double unitPrice) {
+    public void setUnitPrice(long unitPrice) {
         this.unitPrice = unitPrice;
     }
 
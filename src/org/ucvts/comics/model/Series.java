@@ -0,0 +1,52 @@
+package org.ucvts.comics.model;
+
+public class Series {
+
+    private String title;
+    private int issues;
+    private int copies;
+
+    /**
+     * Creates an instance of the Series class.
+     *
+     * @param title  the title shared by every issue in the series
+     * @param issues the number of issues in inventory
+     * @param copies the number of copies in stock, across every issue
+     */
+
+    public Series(String title, int issues, int copies) {
+        this.title = title;
+        this.issues = issues;
+        this.copies = copies;
+    }
+
+    /**
+     * Returns the title of the series.
+     *
+     * @return title
+     */
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Returns the number of issues of the series in inventory.
+     *
+     * @return issues
+     */
+
+    public int getIssues() {
+        return issues;
+    }
+
+    /**
+     * Returns the number of copies in stock, across every issue.
+     *
+     * @return copies
+     */
+
+    public int getCopies() {
+        return copies;
+    }
+}
@@ -0,0 +1,190 @@
+package org.ucvts.comics.util;
+
+/**
+ * A hash table from longs to ints, neither of them boxed, for finding
+ * something by id (usually its position in an array) without allocating
+ * a Long and a map entry for every row.
+ *
+ * It uses open addressing with linear probing, and it's kept at most half
+ * full, so probe sequences stay short. Removing a key shifts later entries
+ * in its probe sequence back to fill the hole rather than leaving a marker
+ * behind, so lookups never have to step over deleted slots.
+ *
+ * It isn't thread-safe; anything that shares one between threads has to
+ * guard it itself.
+ */
+
+public final class LongIntMap {
+
+    /**
+     * The value returned for a key that isn't in the map.
+     */
+
+    public static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+
+    /**
+     * Creates an empty map with room for 512 keys before it has to grow.
+     */
+
+    public LongIntMap() {
+        this(1024);
+    }
+
+    /**
+     * Creates an empty map.
+     *
+     * @param capacity the initial size of the table, a power of two; it
+     *                 holds up to half that many keys before it grows
+     */
+
+    public LongIntMap(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    /**
+     * Returns the value for a key.
+     *
+     * @param key the key
+     * @return its value, or MISSING if the key isn't in the map
+     */
+
+    public int get(long key) {
+        int slot = find(key);
+
+        return slot < 0 ? MISSING : values[slot];
+    }
+
+    /**
+     * Sets the value for a key, adding the key if it isn't in the map.
+     *
+     * @param key   the key
+     * @param value its value
+     */
+
+    public void put(long key, int value) {
+        int slot = find(key);
+
+        if (slot >= 0) {
+            values[slot] = value;
+            return;
+        }
+
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+
+        slot = hash(key, mask);
+
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        size++;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     * @return its value, or MISSING if the key wasn't in the map
+     */
+
+    public int remove(long key) {
+        int slot = find(key);
+
+        if (slot < 0) {
+            return MISSING;
+        }
+
+        int value = values[slot];
+        int mask = keys.length - 1;
+        int hole = slot;
+        int i = slot;
+
+        while (true) {
+            i = (i + 1) & mask;
+
+            if (!used[i]) {
+                break;
+            }
+
+            // the entry at i can move into the hole as long as the hole
+            // is between the entry's home slot and i.
+
+            int home = hash(keys[i], mask);
+
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+
+        used[hole] = false;
+        size--;
+
+        return value;
+    }
+
+    /**
+     * Returns the number of keys in the map.
+     *
+     * @return size
+     */
+
+    public int size() {
+        return size;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+
+        for (int slot = hash(key, mask); used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key, int mask) {
+
+        // ids are sequential, and other keys (phone numbers, say) tend to
+        // share their leading digits, so we scramble the bits to spread
+        // them across the table.
+
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -14,6 +14,7 @@ import javax.swing.JSeparator;
 import javax.swing.SwingConstants;
 
 import org.ucvts.comics.controller.ViewManager;
+import org.ucvts.comics.model.Money;
 import org.ucvts.comics.model.Product;
 
 @SuppressWarnings("serial")
@@ -84,7 +85,7 @@ public class CartItemPanel extends JPanel implements ActionListener {
     private JPanel getActionPanel() {
         JPanel panel = new JPanel(new GridLayout(0, 1));
         
-        JLabel price = new JLabel("$" + manager.getSubtotal(product), SwingConstants.CENTER);        
+        JLabel price = new JLabel(Money.formatDollars(manager.getSubtotal(product)), SwingConstants.CENTER);        
         price.setFont(new Font("DialogInput", Font.BOLD, 15));
 
         panel.add(price);
@@ -10,18 +10,28 @@ import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTextField;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import org.ucvts.comics.MidtownComics;
 import org.ucvts.comics.controller.ViewManager;
+import org.ucvts.comics.model.Customer;
 
 @SuppressWarnings("serial")
 public class CustomerListView extends JPanel implements ActionListener {
 	
+	 private static final int PAGE_SIZE = 50;
+	 
 	 private ViewManager manager;
 	 private JScrollPane scroll;
+	 private JPanel body;
+	 private Customer last;
+	 private JButton more;
 	 private JButton inventoryView;
 	 private JButton addCustomer;
+	 private JTextField search;
 	 
 	 /**
 	 * Creates an instance of the CustomerListView class.
@@ -44,6 +54,8 @@ public class CustomerListView extends JPanel implements ActionListener {
 		 this.remove(scroll);
 	        
 	     initCustomerList();
+	     this.revalidate();
+	     this.repaint();
 	  }	 
 	 
 	 /*
@@ -66,28 +78,169 @@ public class CustomerListView extends JPanel implements ActionListener {
         JLabel label = new JLabel("Midtown Comics");
         label.setFont(new Font("DialogInput", Font.BOLD, 21));
         label.setBorder(new EmptyBorder(15, 15, 10, 0));
+        
+        // customers are looked up by name, email, or phone number as the
+        // user types
+        
+        search = new JTextField(20);
+        search.setToolTipText("Find by name, email, phone number, or the last 4 digits of a phone number");
+        search.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                refreshCustomerList();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                refreshCustomerList();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                refreshCustomerList();
+            }
+        });
+        
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        searchPanel.setBorder(new EmptyBorder(15, 15, 10, 15));
+        searchPanel.add(search, BorderLayout.CENTER);
 	                
         panel.add(label, BorderLayout.WEST);
+        panel.add(searchPanel, BorderLayout.CENTER);
         this.add(panel, BorderLayout.NORTH);
     }	 
     
     /*
-     * Initializes the customer list UI components.
+     * Initializes the customer list UI components. If there's a search, the
+     * list shows the customers that match it instead of every customer:
+     * by phone number if it's all digits, and by name or email if it isn't.
      */
     
     private void initCustomerList() {
-        JPanel body = new JPanel();
+        body = new JPanel();
         body.setLayout(new BoxLayout(body, BoxLayout.Y_AXIS));
         body.setBorder(new EmptyBorder(15, 15, 15, 15));
         
-        for (int i = 0; i < manager.getCustomerList().size(); i++) {            
-            body.add(new CustomerPanel(manager, manager.getCustomerList().get(i)));
+        more = new JButton("Show More");
+        more.putClientProperty("id", -1L);
+        more.addActionListener(this);
+        
+        last = null;
+        
+        // people type phone numbers with all sorts of punctuation, so we
+        // only look at the digits.
+        
+        String query = search.getText().trim();
+        String digits = query.replaceAll("[\\s()./+-]", "");
+        
+        if (query.isEmpty()) {
+            loadNextPage();
+        } else if (!digits.matches("\\d+")) {
+            loadNameMatches(query);
+        } else if (digits.matches("\\d{4}|\\d{7,15}")) {
+            loadPhoneMatches(digits);
+        } else {
+            body.add(new JLabel("Enter a whole phone number, or its last 4 digits"));
         }
         
         scroll = new JScrollPane(body);
         this.add(scroll, BorderLayout.CENTER);
     }
     
+    /*
+     * Adds the next page of customers to the customer list. The show more
+     * button stays at the bottom of the list as long as there might be more.
+     */
+    
+    private void loadNextPage() {
+        JPanel list = body;
+        more.setEnabled(false);
+        
+        manager.getCustomerPage(last, PAGE_SIZE, page -> {
+            
+            // the list may have been refreshed while this page was loading,
+            // in which case this page belongs to a list no one can see.
+            
+            if (list != body) {
+                return;
+            }
+            
+            body.remove(more);
+            
+            for (Customer c : page) {
+                body.add(new CustomerPanel(manager, c));
+            }
+            
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            }
+            
+            if (page.size() == PAGE_SIZE) {
+                more.setEnabled(true);
+                body.add(more);
+            }
+            
+            body.revalidate();
+            body.repaint();
+        });
+    }
+    
+    /*
+     * Fills the list with the customers that have a phone number, or whose
+     * phone numbers end in four digits.
+     */
+    
+    private void loadPhoneMatches(String digits) {
+        JPanel list = body;
+        
+        manager.findCustomersByPhone(digits, PAGE_SIZE, results -> {
+            
+            // the user may have kept typing, in which case these customers
+            // are for a number that's already been replaced.
+            
+            if (list != body) {
+                return;
+            }
+            
+            for (Customer c : results) {
+                body.add(new CustomerPanel(manager, c));
+            }
+            
+            if (results.isEmpty()) {
+                body.add(new JLabel("No customers match " + digits));
+            }
+            
+            body.revalidate();
+            body.repaint();
+        });
+    }
+    
+    /*
+     * Fills the list with the customers whose names or email addresses are
+     * most similar to a search.
+     */
+    
+    private void loadNameMatches(String query) {
+        JPanel list = body;
+        
+        manager.searchCustomers(query, PAGE_SIZE, results -> {
+            if (list != body) {
+                return;
+            }
+            
+            for (Customer c : results) {
+                body.add(new CustomerPanel(manager, c));
+            }
+            
+            if (results.isEmpty()) {
+                body.add(new JLabel("No customers match \"" + query + "\""));
+            }
+            
+            body.revalidate();
+            body.repaint();
+        });
+    }
+    
     /*
      * Initializes the footer UI components.
      */
@@ -123,6 +276,8 @@ public class CustomerListView extends JPanel implements ActionListener {
             manager.switchTo(MidtownComics.InventoryView);
         } else if (source.equals(addCustomer)) {
         	manager.switchTo(MidtownComics.CustomerView);
+        } else if (source.equals(more)) {
+            loadNextPage();
         }
     }
 }
\ No newline at end of file
@@ -97,12 +97,12 @@ public class CustomerPanel extends JPanel implements ActionListener {
         Long id = (Long) source.getClientProperty("id");
         String type = (String) source.getClientProperty("type");
         
-        for (Customer c : manager.getCustomerList()) {
-            if (id.longValue() == c.getCustomerId() && type.equals("EDIT")) {
+        manager.getCustomer(id.longValue(), c -> {
+            if (c != null && type.equals("EDIT")) {
                 manager.attachCustomer(c);
                 manager.switchTo(MidtownComics.CustomerView);
             }
-        }
+        });
         
     }
 }
\ No newline at end of file
@@ -5,23 +5,38 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 
+import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
 import javax.swing.border.EmptyBorder;
 
 import org.ucvts.comics.MidtownComics;
 import org.ucvts.comics.controller.ViewManager;
 import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.CustomerStats;
+import org.ucvts.comics.model.Money;
+import org.ucvts.comics.model.Order;
 
 @SuppressWarnings("serial")
 public class CustomerView extends JPanel implements ActionListener {
 
+    private static final int PAGE_SIZE = 20;
+    
     private ViewManager manager;
     private Customer customer;
     private CustomerForm customerForm;
+    private JLabel stats;
+    private JScrollPane historyScroll;
+    private JPanel history;
+    private Order last;
+    private JButton more;
+    private JButton addToOrder;
     private JButton save;
     private JButton remove;
     private JButton cancel;
@@ -50,7 +65,18 @@ public class CustomerView extends JPanel implements ActionListener {
         this.customer = customer;
         
         remove.setEnabled(true);
+        addToOrder.setEnabled(customer != null);
         customerForm.updateFields(customer);
+        stats.setText("");
+        refreshOrderHistory();
+        
+        if (customer != null) {
+            manager.getCustomerStats(customer.getCustomerId(), s -> {
+                if (this.customer == customer) {
+                    stats.setText(describe(s));
+                }
+            });
+        }
     }
 
     /*
@@ -74,17 +100,101 @@ public class CustomerView extends JPanel implements ActionListener {
         label.setFont(new Font("DialogInput", Font.BOLD, 21));
         label.setBorder(new EmptyBorder(15, 15, 10, 0));
 
+        stats = new JLabel();
+        stats.setFont(new Font("DialogInput", Font.ITALIC, 12));
+        stats.setBorder(new EmptyBorder(15, 0, 10, 15));
+
         panel.add(label, BorderLayout.WEST);
+        panel.add(stats, BorderLayout.EAST);
         this.add(panel, BorderLayout.NORTH);
     }
   
     
     /*
-     * Initializes the customer form.
+     * Initializes the customer form, with the customer's order history on
+     * a tab of its own.
      */
 
     private void initCustomerForm() {
-        this.add(new JScrollPane(customerForm), BorderLayout.CENTER);
+        historyScroll = new JScrollPane();
+        
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Details", new JScrollPane(customerForm));
+        tabs.addTab("Order History", historyScroll);
+        
+        initOrderHistory();
+        this.add(tabs, BorderLayout.CENTER);
+    }
+    
+    /*
+     * Initializes the order history UI components, and loads the first page
+     * of the customer's orders.
+     */
+    
+    private void initOrderHistory() {
+        history = new JPanel();
+        history.setLayout(new BoxLayout(history, BoxLayout.Y_AXIS));
+        history.setBorder(new EmptyBorder(15, 15, 15, 15));
+        
+        more = new JButton("Show More");
+        more.addActionListener(this);
+        
+        last = null;
+        historyScroll.setViewportView(history);
+        
+        if (customer != null) {
+            loadNextOrders();
+        }
+    }
+    
+    /*
+     * Replaces the order history with the current customer's.
+     */
+    
+    private void refreshOrderHistory() {
+        initOrderHistory();
+        historyScroll.revalidate();
+        historyScroll.repaint();
+    }
+    
+    /*
+     * Adds the next page of orders to the order history, most recent first.
+     * The show more button stays at the bottom as long as there might be more.
+     */
+    
+    private void loadNextOrders() {
+        JPanel list = history;
+        more.setEnabled(false);
+        
+        manager.getOrderHistory(customer.getCustomerId(), last, PAGE_SIZE, page -> {
+            
+            // another customer may have been attached while this page was
+            // loading, in which case it belongs to a list no one can see.
+            
+            if (list != history) {
+                return;
+            }
+            
+            history.remove(more);
+            
+            for (Order o : page) {
+                history.add(new JLabel(describe(o)));
+            }
+            
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            } else if (last == null) {
+                history.add(new JLabel("No orders yet"));
+            }
+            
+            if (page.size() == PAGE_SIZE) {
+                more.setEnabled(true);
+                history.add(more);
+            }
+            
+            history.revalidate();
+            history.repaint();
+        });
     }
     
     /*
@@ -102,15 +212,54 @@ public class CustomerView extends JPanel implements ActionListener {
         remove.setEnabled(false);
         remove.addActionListener(this);
 
+        addToOrder = new JButton("Add to Order");
+        addToOrder.setEnabled(false);
+        addToOrder.addActionListener(this);
+
         save = new JButton("Save");
         save.addActionListener(this);
 
         panel.add(cancel);
         panel.add(remove);
+        panel.add(addToOrder);
         panel.add(save);
         this.add(panel, BorderLayout.SOUTH);
     }
 
+    /*
+     * Summarizes a customer's order history.
+     */
+    
+    private String describe(CustomerStats s) {
+        if (s.getOrderCount() == 0) {
+            return "No orders yet";
+        }
+        
+        LocalDate last = LocalDate.parse(String.valueOf(s.getLastOrderDate()), DateTimeFormatter.BASIC_ISO_DATE);
+        
+        return String.format("%d order%s  %s  Last order %s",
+                s.getOrderCount(),
+                s.getOrderCount() == 1 ? "" : "s",
+                Money.formatDollars(s.getLifetimeTotal()),
+                last.format(DateTimeFormatter.ofPattern("MMMM d, yyyy")));
+    }
+
+    /*
+     * Summarizes a single order in the customer's order history.
+     */
+    
+    private String describe(Order o) {
+        LocalDate date = LocalDate.parse(String.valueOf(o.getOrderDate()), DateTimeFormatter.BASIC_ISO_DATE);
+        int copies = o.getItemCount();
+        
+        return String.format("Order #%d  %s  %d cop%s  %s",
+                o.getOrderId(),
+                date.format(DateTimeFormatter.ofPattern("MMMM d, yyyy")),
+                copies,
+                copies == 1 ? "y" : "ies",
+                Money.formatDollars(o.getTotal()));
+    }
+
     /*
      * Handles button clicks in this view.
      *
@@ -129,6 +278,11 @@ public class CustomerView extends JPanel implements ActionListener {
             }
         } else if (source.equals(remove)) {
             manager.removeCustomerFromList(customer);
+        } else if (source.equals(addToOrder)) {
+            manager.setOrderCustomer(customer);
+            manager.switchTo(MidtownComics.CartView);
+        } else if (source.equals(more)) {
+            loadNextOrders();
         } else if (source.equals(cancel)) {
             manager.detachCustomer();
             manager.switchTo(MidtownComics.CustomerListView);
@@ -15,6 +15,7 @@ import javax.swing.SwingConstants;
 
 import org.ucvts.comics.MidtownComics;
 import org.ucvts.comics.controller.ViewManager;
+import org.ucvts.comics.model.Money;
 import org.ucvts.comics.model.OrderItem;
 import org.ucvts.comics.model.Product;
 
@@ -80,7 +81,7 @@ public class InventoryItemPanel extends JPanel implements ActionListener {
     private JPanel getActionPanel(Product p) {
         JPanel panel = new JPanel(new GridLayout(0, 1));
         
-        JLabel price = new JLabel("$" + p.getUnitPrice(), SwingConstants.CENTER);
+        JLabel price = new JLabel(Money.formatDollars(p.getUnitPrice()), SwingConstants.CENTER);
         price.setFont(new Font("DialogInput", Font.BOLD, 15));
         
         JButton buy = new JButton("Buy");
@@ -148,16 +149,20 @@ public class InventoryItemPanel extends JPanel implements ActionListener {
         Long id = (Long) source.getClientProperty("id");
         String type = (String) source.getClientProperty("type");
         
-        for (Product p : manager.getInventory()) {
-            if (id.longValue() == p.getProductId() && type.equals("BUY")) {
+        manager.getProduct(id.longValue(), p -> {
+            if (p == null) {
+                return;
+            }
+            
+            if (type.equals("BUY")) {
                 if (!manager.productExistsInOrder(p)) {
                     manager.addItemToOrder(new OrderItem(p));
                 }
-            } else if (id.longValue() == p.getProductId() && type.equals("EDIT")) {
+            } else if (type.equals("EDIT")) {
                 manager.attachProduct(p);
                 manager.switchTo(MidtownComics.ProductView);
             }
-        }
+        });
         
     }
 }
\ No newline at end of file
@@ -1,28 +1,66 @@
 package org.ucvts.comics.view;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.function.Consumer;
 
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
+import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
+import javax.swing.JTextField;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import org.ucvts.comics.MidtownComics;
 import org.ucvts.comics.controller.ViewManager;
+import org.ucvts.comics.index.InventoryFilter;
+import org.ucvts.comics.index.InventorySort;
+import org.ucvts.comics.io.ImportResult;
+import org.ucvts.comics.model.Money;
+import org.ucvts.comics.model.Product;
+import org.ucvts.comics.model.Series;
 
 @SuppressWarnings("serial")
 public class InventoryView extends JPanel implements ActionListener {
     
+    private static final int PAGE_SIZE = 50;
+    private static final int SUGGESTIONS = 8;
+    private static final String ALL_PRODUCTS = "All Products";
+    private static final String NEW_ARRIVALS = "New This Week";
+    private static final String BACK_ISSUES = "Back Issues";
+    
     private ViewManager manager;
     private JScrollPane scroll;
+    private JPanel body;
+    private Product last;
+    private JButton more;
     private JButton addProduct;
     private JButton viewCart;
     private JButton customerList;
+    private JButton importCatalog;
+    private JLabel importStatus;
+    private JTextField search;
+    private JPopupMenu suggestions;
+    private JComboBox<String> show;
+    private JComboBox<InventorySort> sort;
+    private JCheckBox descending;
+    private JTextField minPrice;
+    private JTextField maxPrice;
+    private JTextField year;
+    private JCheckBox inStock;
     
     /**
      * Creates an instance of the InventoryView class.
@@ -45,6 +83,8 @@ public class InventoryView extends JPanel implements ActionListener {
         this.remove(scroll);
         
         initInventoryList();
+        this.revalidate();
+        this.repaint();
     }
     
     /*
@@ -67,28 +107,387 @@ public class InventoryView extends JPanel implements ActionListener {
         JLabel label = new JLabel("Midtown Comics");
         label.setFont(new Font("DialogInput", Font.BOLD, 21));
         label.setBorder(new EmptyBorder(15, 15, 10, 0));
+        
+        importStatus = new JLabel();
+        importStatus.setFont(new Font("DialogInput", Font.ITALIC, 12));
+        importStatus.setBorder(new EmptyBorder(0, 15, 5, 15));
+        
+        // the list is searched, and series are suggested, as the user types
+        
+        search = new JTextField(20);
+        search.setToolTipText("Search by title, author, or issue number");
+        search.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchChanged();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchChanged();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchChanged();
+            }
+        });
+        
+        // the suggestions can't take the focus, or the user couldn't keep
+        // typing while they're showing.
+        
+        suggestions = new JPopupMenu();
+        suggestions.setFocusable(false);
+        
+        JPanel searchPanel = new JPanel(new BorderLayout());
+        searchPanel.setBorder(new EmptyBorder(15, 15, 10, 15));
+        searchPanel.add(search, BorderLayout.CENTER);
+        
+        importCatalog = new JButton("Import Catalog");
+        importCatalog.putClientProperty("id", -1L);
+        importCatalog.addActionListener(this);
+        
+        JPanel actions = new JPanel(new BorderLayout());
+        actions.setBorder(new EmptyBorder(15, 0, 10, 15));
+        actions.add(importCatalog, BorderLayout.CENTER);
+                
+        JPanel status = new JPanel(new BorderLayout());
+        status.add(initFilters(), BorderLayout.NORTH);
+        status.add(importStatus, BorderLayout.SOUTH);
                 
         panel.add(label, BorderLayout.WEST);
+        panel.add(searchPanel, BorderLayout.CENTER);
+        panel.add(actions, BorderLayout.EAST);
+        panel.add(status, BorderLayout.SOUTH);
         this.add(panel, BorderLayout.NORTH);
     }
     
     /*
-     * Initializes the inventory list UI components.
+     * Initializes the sort and filter UI components. The list is refreshed
+     * as soon as any of them changes.
+     */
+    
+    private JPanel initFilters() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        panel.setBorder(new EmptyBorder(0, 10, 5, 15));
+        
+        DocumentListener filterChanged = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                refreshInventoryList();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                refreshInventoryList();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                refreshInventoryList();
+            }
+        };
+        
+        // new arrivals and back issues are listed in order of release, so
+        // the sort and filter only apply to all products.
+        
+        show = new JComboBox<>(new String[] { ALL_PRODUCTS, NEW_ARRIVALS, BACK_ISSUES });
+        show.addActionListener(e -> refreshInventoryList());
+        
+        sort = new JComboBox<>(InventorySort.values());
+        sort.addActionListener(e -> refreshInventoryList());
+        
+        descending = new JCheckBox("Descending");
+        descending.addActionListener(e -> refreshInventoryList());
+        
+        minPrice = new JTextField(5);
+        minPrice.getDocument().addDocumentListener(filterChanged);
+        
+        maxPrice = new JTextField(5);
+        maxPrice.getDocument().addDocumentListener(filterChanged);
+        
+        year = new JTextField(4);
+        year.getDocument().addDocumentListener(filterChanged);
+        
+        inStock = new JCheckBox("In stock only");
+        inStock.addActionListener(e -> refreshInventoryList());
+        
+        panel.add(show);
+        panel.add(new JLabel("  Sort by"));
+        panel.add(sort);
+        panel.add(descending);
+        panel.add(new JLabel("  Price"));
+        panel.add(minPrice);
+        panel.add(new JLabel("to"));
+        panel.add(maxPrice);
+        panel.add(new JLabel("  Year"));
+        panel.add(year);
+        panel.add(inStock);
+        
+        return panel;
+    }
+    
+    /*
+     * Returns the filter the user has chosen. A price or year that can't be
+     * read is left out, as if it hadn't been entered yet.
+     */
+    
+    private InventoryFilter getFilter() {
+        long min = InventoryFilter.ANY_PRICE;
+        long max = InventoryFilter.ANY_PRICE;
+        int released = InventoryFilter.ANY_YEAR;
+        
+        try {
+            min = Math.max(Money.parse(minPrice.getText()), 0);
+        } catch (NumberFormatException e) {
+            // no minimum
+        }
+        
+        try {
+            max = Math.max(Money.parse(maxPrice.getText()), 0);
+        } catch (NumberFormatException e) {
+            // no maximum
+        }
+        
+        try {
+            released = Integer.parseInt(year.getText().trim());
+        } catch (NumberFormatException e) {
+            // any year
+        }
+        
+        return new InventoryFilter(min, max, released > 0 ? released : InventoryFilter.ANY_YEAR, inStock.isSelected());
+    }
+    
+    /*
+     * Initializes the inventory list UI components. If there's a search,
+     * the list shows the best matches instead of the whole inventory.
      */
     
     private void initInventoryList() {
-        JPanel body = new JPanel();
+        body = new JPanel();
         body.setLayout(new BoxLayout(body, BoxLayout.Y_AXIS));
         body.setBorder(new EmptyBorder(15, 15, 15, 15));
         
-        for (int i = 0; i < manager.getInventory().size(); i++) {            
-            body.add(new InventoryItemPanel(manager, manager.getInventory().get(i)));
+        more = new JButton("Show More");
+        more.putClientProperty("id", -1L);
+        more.addActionListener(this);
+        
+        last = null;
+        
+        String query = search.getText().trim();
+        
+        // search results are listed best match first, so the sort and
+        // filter only apply to the whole inventory.
+        
+        show.setEnabled(query.isEmpty());
+        
+        for (Component c : new Component[] { sort, descending, minPrice, maxPrice, year, inStock }) {
+            c.setEnabled(query.isEmpty() && ALL_PRODUCTS.equals(show.getSelectedItem()));
+        }
+        
+        if (query.isEmpty() && NEW_ARRIVALS.equals(show.getSelectedItem())) {
+            loadArrivalCount();
+            loadNextPage();
+        } else if (query.isEmpty()) {
+            loadNextPage();
+        } else {
+            loadSearchResults(query);
         }
         
         scroll = new JScrollPane(body);
         this.add(scroll, BorderLayout.CENTER);
     }
     
+    /*
+     * Adds the next page of products to the inventory list. The show more
+     * button stays at the bottom of the list as long as there might be more.
+     */
+    
+    private void loadNextPage() {
+        JPanel list = body;
+        more.setEnabled(false);
+        
+        Consumer<List<Product>> callback = page -> {
+            
+            // the list may have been refreshed while this page was loading,
+            // in which case this page belongs to a list no one can see.
+            
+            if (list != body) {
+                return;
+            }
+            
+            body.remove(more);
+            
+            for (Product p : page) {
+                body.add(new InventoryItemPanel(manager, p));
+            }
+            
+            if (!page.isEmpty()) {
+                last = page.get(page.size() - 1);
+            }
+            
+            if (page.size() == PAGE_SIZE) {
+                more.setEnabled(true);
+                body.add(more);
+            }
+            
+            body.revalidate();
+            body.repaint();
+        };
+        
+        if (NEW_ARRIVALS.equals(show.getSelectedItem())) {
+            manager.getNewArrivals(last, PAGE_SIZE, callback);
+        } else if (BACK_ISSUES.equals(show.getSelectedItem())) {
+            manager.getBackIssues(last, PAGE_SIZE, callback);
+        } else {
+            manager.getInventoryPage(getFilter(), (InventorySort) sort.getSelectedItem(), descending.isSelected(), last, PAGE_SIZE, callback);
+        }
+    }
+    
+    /*
+     * Adds the number of new arrivals to the top of the list.
+     */
+    
+    private void loadArrivalCount() {
+        JPanel list = body;
+        
+        manager.countNewArrivals(count -> {
+            if (list != body) {
+                return;
+            }
+            
+            JLabel label = new JLabel(count == 0 ? "Nothing new this week" : String.format("%,d new this week", count));
+            label.setFont(new Font("DialogInput", Font.BOLD, 14));
+            label.setBorder(new EmptyBorder(0, 0, 10, 0));
+            
+            body.add(label, 0);
+            body.revalidate();
+            body.repaint();
+        });
+    }
+    
+    /*
+     * Fills the list with the products that best match a search.
+     */
+    
+    private void loadSearchResults(String query) {
+        JPanel list = body;
+        
+        manager.searchInventory(query, PAGE_SIZE, results -> {
+            
+            // the user may have kept typing, in which case these results
+            // are for a search that's already been replaced.
+            
+            if (list != body) {
+                return;
+            }
+            
+            for (Product p : results) {
+                body.add(new InventoryItemPanel(manager, p));
+            }
+            
+            if (results.isEmpty()) {
+                body.add(new JLabel("No products match \"" + query + "\""));
+            }
+            
+            body.revalidate();
+            body.repaint();
+        });
+    }
+    
+    /*
+     * Refreshes the list for the new search, and suggests series for it.
+     */
+    
+    private void searchChanged() {
+        refreshInventoryList();
+        loadSuggestions(search.getText().trim());
+    }
+    
+    /*
+     * Shows the series that match what's been typed so far under the search
+     * field. Choosing one searches for the series.
+     */
+    
+    private void loadSuggestions(String prefix) {
+        if (prefix.isEmpty()) {
+            suggestions.setVisible(false);
+            return;
+        }
+        
+        manager.suggestSeries(prefix, SUGGESTIONS, results -> {
+            
+            // as with search results, these may be for something the user
+            // has already typed past.
+            
+            if (!prefix.equals(search.getText().trim())) {
+                return;
+            }
+            
+            suggestions.setVisible(false);
+            suggestions.removeAll();
+            
+            // there's nothing to suggest if the only match has already been
+            // typed (or chosen) in full.
+            
+            if (results.isEmpty() || results.size() == 1 && results.get(0).getTitle().equalsIgnoreCase(prefix)) {
+                return;
+            }
+            
+            for (Series s : results) {
+                JMenuItem item = new JMenuItem(String.format(
+                    "%s  (%,d %s, %,d in stock)",
+                    s.getTitle(), s.getIssues(), s.getIssues() == 1 ? "issue" : "issues", s.getCopies()
+                ));
+                
+                item.addActionListener(e -> search.setText(s.getTitle()));
+                suggestions.add(item);
+            }
+            
+            if (search.isShowing()) {
+                suggestions.show(search, 0, search.getHeight());
+                search.requestFocusInWindow();
+            }
+        });
+    }
+    
+    /*
+     * Asks for a catalog file and imports it, showing the progress in the
+     * header as it goes.
+     */
+    
+    private void importCatalog() {
+        JFileChooser chooser = new JFileChooser();
+        
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        importCatalog.setEnabled(false);
+        importStatus.setText("Importing...");
+        
+        manager.importProducts(chooser.getSelectedFile().toPath(), r -> {
+            importStatus.setText(String.format("Importing... %,d rows read", r.getRowsRead()));
+        }, r -> {
+            importCatalog.setEnabled(true);
+            importStatus.setText(r == null ? "Import failed" : describe(r));
+        });
+    }
+    
+    /*
+     * Summarizes a finished import.
+     */
+    
+    private String describe(ImportResult r) {
+        String status = String.format("Imported %,d of %,d rows", r.getImported(), r.getRowsRead());
+        
+        if (r.getRejected() > 0) {
+            status += String.format(" (%,d rejected)", r.getRejected());
+        }
+        
+        return status;
+    }
+    
     /*
      * Initializes the footer UI components.
      */
@@ -131,6 +530,10 @@ public class InventoryView extends JPanel implements ActionListener {
             manager.switchTo(MidtownComics.CartView);
         } else if (source.equals(customerList)) {
         	manager.switchTo(MidtownComics.CustomerListView);
+        } else if (source.equals(more)) {
+            loadNextPage();
+        } else if (source.equals(importCatalog)) {
+            importCatalog();
         }
     }
 }
\ No newline at end of file
@@ -12,13 +12,17 @@ import javax.swing.SwingConstants;
 import javax.swing.border.EmptyBorder;
 
 import org.ucvts.comics.controller.ViewManager;
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.Money;
 
 @SuppressWarnings("serial")
 public class OrderView extends JPanel implements ActionListener {
     
     private ViewManager manager;
     private PaymentForm form;
+    private JLabel customer;
     private JLabel total;
+    private JButton walkIn;
     private JButton submit;
     
     public OrderView(ViewManager manager) {
@@ -31,11 +35,27 @@ public class OrderView extends JPanel implements ActionListener {
     /**
      * Updates the order total label.
      * 
-     * @param total the new total
+     * @param total the new total, in cents
      */
     
-    public void updateOrderTotal(double total) {
-        this.total.setText("Order Total: $" + total);
+    public void updateOrderTotal(long total) {
+        this.total.setText("Order Total: " + Money.formatDollars(total));
+    }
+    
+    /**
+     * Updates the order customer label.
+     * 
+     * @param customer the customer placing the order, or null for a walk-in
+     */
+    
+    public void updateOrderCustomer(Customer customer) {
+        if (customer == null) {
+            this.customer.setText("Walk-in");
+        } else {
+            this.customer.setText(customer.getFirstName() + " " + customer.getLastName());
+        }
+        
+        walkIn.setEnabled(customer != null);
     }
     
     /**
@@ -44,6 +64,7 @@ public class OrderView extends JPanel implements ActionListener {
     
     public void clearOrder() {
         total.setText("");
+        updateOrderCustomer(null);
         form.clearFields();
     }
     
@@ -59,9 +80,28 @@ public class OrderView extends JPanel implements ActionListener {
         total.setFont(new Font("DialogInput", Font.BOLD, 16));
         total.setBorder(new EmptyBorder(10, 10, 10, 10));
         
+        // customers are attached from the customer view. staff can
+        // switch back to a walk-in sale from here.
+        
+        customer = new JLabel("Walk-in");
+        customer.setFont(new Font("DialogInput", Font.BOLD, 16));
+        customer.setBorder(new EmptyBorder(10, 10, 10, 10));
+        
+        walkIn = new JButton("Walk-in");
+        walkIn.setEnabled(false);
+        walkIn.addActionListener(this);
+        
+        JPanel buttons = new JPanel();
+        buttons.add(walkIn);
+        
+        JPanel header = new JPanel(new BorderLayout());
+        header.add(customer, BorderLayout.WEST);
+        header.add(buttons, BorderLayout.CENTER);
+        header.add(total, BorderLayout.EAST);
+        
         form = new PaymentForm();
         
-        this.add(total, BorderLayout.NORTH);
+        this.add(header, BorderLayout.NORTH);
         this.add(form, BorderLayout.CENTER);
         this.add(submit, BorderLayout.SOUTH);
     }
@@ -78,6 +118,8 @@ public class OrderView extends JPanel implements ActionListener {
         
         if (source.equals(submit)) {
             manager.submitOrder();
+        } else if (source.equals(walkIn)) {
+            manager.setOrderCustomer(null);
         }
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 
+import org.ucvts.comics.model.Money;
 import org.ucvts.comics.model.Product;
 
 @SuppressWarnings("serial")
@@ -71,7 +72,7 @@ public class ProductForm extends JPanel {
         dayDropdown.setSelectedIndex(day);
         yearDropdown.setSelectedItem(year);
         issueField.setText(String.valueOf(product.getIssue()));
-        priceField.setText(String.format("%.2f", product.getUnitPrice()));
+        priceField.setText(Money.format(product.getUnitPrice()));
         copiesField.setText(String.valueOf(product.getCopies()));
     }
     
@@ -395,10 +396,10 @@ public class ProductForm extends JPanel {
     }
     
     /*
-     * Parses a numeric price from the textfield.
+     * Parses a price, in cents, from the textfield.
      */
     
-    private double parseUnitPrice() {
-        return Double.parseDouble(priceField.getText());
+    private long parseUnitPrice() {
+        return Money.parse(priceField.getText());
     }
 }
\ No newline at end of file
@@ -51,6 +51,18 @@ public class ProductView extends JPanel implements ActionListener {
         
         remove.setEnabled(true);
         productForm.updateFields(product);
+        productForm.updateErrorMessage("");
+    }
+    
+    /**
+     * Shows an error message under the form, such as why the product
+     * couldn't be saved or removed.
+     *
+     * @param message the message
+     */
+    
+    public void showError(String message) {
+        productForm.updateErrorMessage(message);
     }
 
     /*
@@ -0,0 +1,174 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * None of these queries touch the database.
+ */
+
+public class AsyncDAOTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<CompletableFuture<Void>> blockers = new ArrayList<>();
+
+    @AfterEach
+    public void releaseBlockers() throws Exception {
+        release.countDown();
+
+        for (CompletableFuture<Void> blocker : blockers) {
+            blocker.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void queryRunsOffTheCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+
+        assertNotSame(caller, AsyncDAO.supply(Thread::currentThread).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedQueryCompletesExceptionally() {
+        CompletableFuture<Object> future = AsyncDAO.supply(() -> {
+            throw new SQLException("broken");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof SQLException);
+    }
+
+    @Test
+    public void queryCancelledBeforeItStartsNeverRuns() throws Exception {
+        takeEveryPermit();
+
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Boolean> query = AsyncDAO.supply(() -> ran.getAndSet(true));
+
+        query.cancel(false);
+        releaseBlockers();
+        drain();
+
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void queuedQueryRunsOnceAPermitIsFree() throws Exception {
+        takeEveryPermit();
+
+        CompletableFuture<String> query = AsyncDAO.supply(() -> "done");
+
+        assertFalse(query.isDone());
+
+        releaseBlockers();
+
+        assertEquals("done", query.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queryAfterAnotherWaitsForIt() throws Exception {
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CompletableFuture<String> second = AsyncDAO.supply(first, () -> "second");
+
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+
+        first.complete(null);
+
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queryAfterAFailureFailsWithoutRunning() throws Exception {
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Boolean> second = AsyncDAO.supply(first, () -> ran.getAndSet(true));
+
+        first.completeExceptionally(new SQLException("broken"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof SQLException);
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void queryCancelledWhileWaitingForAnotherNeverRuns() throws Exception {
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Boolean> second = AsyncDAO.supply(first, () -> ran.getAndSet(true));
+
+        second.cancel(false);
+        first.complete(null);
+        drain();
+
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void queryCancelledWhileQueuedAfterAnotherNeverRuns() throws Exception {
+        takeEveryPermit();
+
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Boolean> second = AsyncDAO.supply(CompletableFuture.completedFuture(null),
+                () -> ran.getAndSet(true));
+
+        second.cancel(false);
+        releaseBlockers();
+        drain();
+
+        assertFalse(ran.get());
+    }
+
+    /*
+     * Starts queries that wait until the test is over, until one of them
+     * can't start because every permit is taken.
+     */
+
+    private void takeEveryPermit() throws InterruptedException {
+        while (blockers.size() < 256) {
+            CountDownLatch started = new CountDownLatch(1);
+
+            blockers.add(AsyncDAO.run(() -> {
+                started.countDown();
+
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+
+            if (!started.await(200, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+
+        throw new AssertionError("every query started; the number of permits isn't bounded");
+    }
+
+    /*
+     * Waits for the work queued so far to finish.
+     */
+
+    private static void drain() throws Exception {
+        AsyncDAO.supply(() -> null).get(5, TimeUnit.SECONDS);
+        Thread.sleep(50);
+    }
+}
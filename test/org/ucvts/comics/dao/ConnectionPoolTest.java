@@ -0,0 +1,225 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @AfterEach
+    public void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void borrowingPastMaxSizeTimesOut() throws SQLException {
+        pool = newPool(2, 200);
+
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+
+        SQLException e = assertThrows(SQLException.class, pool::borrow);
+        assertTrue(e.getMessage().contains("2 of 2 in use"), e.getMessage());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void closingReturnsTheConnectionToThePool() throws SQLException {
+        pool = newPool(1, 200);
+
+        Connection first = pool.borrow();
+        String physical = first.toString();
+        first.close();
+
+        Connection second = pool.borrow();
+
+        assertEquals(physical, second.toString());
+        second.close();
+    }
+
+    @Test
+    public void waitingBorrowerGetsAReturnedConnection() throws Exception {
+        pool = newPool(1, 5000);
+
+        Connection first = pool.borrow();
+        Thread returner = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                first.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        returner.start();
+
+        Connection second = pool.borrow();
+
+        assertFalse(second.isClosed());
+        second.close();
+        returner.join();
+    }
+
+    @Test
+    public void returnedHandleCantBeUsedAgain() throws SQLException {
+        pool = newPool(1, 200);
+
+        Connection conn = pool.borrow();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+    }
+
+    @Test
+    public void uncommittedWorkIsRolledBackOnReturn() throws SQLException {
+        pool = newPool(1, 200);
+
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        conn.close();
+
+        conn = pool.borrow();
+
+        assertTrue(conn.getAutoCommit());
+        conn.close();
+    }
+
+    @Test
+    public void statementsHandBackTheBorrowedConnection() throws SQLException {
+        pool = newPool(1, 200);
+
+        Connection conn = pool.borrow();
+
+        try (Statement stmt = conn.createStatement()) {
+            assertSame(conn, stmt.getConnection());
+            assertSame(conn, conn.getMetaData().getConnection());
+
+            // so closing it through the statement returns it to the pool,
+            // rather than closing the physical connection
+
+            stmt.getConnection().close();
+        }
+
+        assertTrue(conn.isClosed());
+
+        conn = pool.borrow();
+
+        assertFalse(conn.isClosed());
+        conn.close();
+    }
+
+    @Test
+    public void leaksAreReportedWithoutATraceByDefault() throws Exception {
+        pool = newPool(1, 200, false);
+
+        Connection conn = pool.borrow();
+        String report = leakReport();
+
+        assertTrue(report.startsWith("Possible connection leak"), report);
+        assertFalse(report.contains("Connection borrowed here"), report);
+        conn.close();
+    }
+
+    @Test
+    public void leaksAreReportedWithATraceWhenAskedFor() throws Exception {
+        pool = newPool(1, 200, true);
+
+        Connection conn = pool.borrow();
+        String report = leakReport();
+
+        assertTrue(report.contains("Connection borrowed here"), report);
+        assertTrue(report.contains("leaksAreReportedWithATraceWhenAskedFor"), report);
+        conn.close();
+    }
+
+    @Test
+    public void leaksAreOnlyReportedOnce() throws Exception {
+        pool = newPool(1, 200, false);
+
+        Connection conn = pool.borrow();
+        leakReport();
+
+        assertEquals("", leakReport());
+        conn.close();
+    }
+
+    @Test
+    public void closedPoolRefusesToLend() {
+        pool = newPool(1, 200);
+        pool.close();
+
+        assertThrows(SQLException.class, pool::borrow);
+    }
+
+    /*
+     * Waits past the leak threshold, then runs the housekeeper and returns
+     * whatever it printed.
+     */
+
+    private String leakReport() throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream err = System.err;
+
+        Thread.sleep(LEAK_THRESHOLD * 2);
+        System.setErr(new PrintStream(out, true));
+
+        try {
+            pool.housekeep();
+        } finally {
+            System.setErr(err);
+        }
+
+        return out.toString();
+    }
+
+    /*
+     * The pool reads its sizing from system properties when it's created,
+     * so they're only set for as long as it takes to create one. Each pool
+     * gets its own in-memory database.
+     */
+
+    private static final long LEAK_THRESHOLD = 50;
+
+    private static int databases;
+
+    private static ConnectionPool newPool(int maxSize, long borrowTimeout) {
+        return newPool(maxSize, borrowTimeout, false);
+    }
+
+    private static ConnectionPool newPool(int maxSize, long borrowTimeout, boolean leakTraces) {
+        System.setProperty("midtowncomics.pool.minSize", "0");
+        System.setProperty("midtowncomics.pool.maxSize", String.valueOf(maxSize));
+        System.setProperty("midtowncomics.pool.borrowTimeoutMillis", String.valueOf(borrowTimeout));
+        System.setProperty("midtowncomics.pool.leakThresholdMillis", String.valueOf(LEAK_THRESHOLD));
+        System.setProperty("midtowncomics.pool.leakTraces", String.valueOf(leakTraces));
+
+        try {
+            return new ConnectionPool("jdbc:derby:memory:pooltest" + (++databases) + ";create=true", new Properties());
+        } finally {
+            System.clearProperty("midtowncomics.pool.minSize");
+            System.clearProperty("midtowncomics.pool.maxSize");
+            System.clearProperty("midtowncomics.pool.borrowTimeoutMillis");
+            System.clearProperty("midtowncomics.pool.leakThresholdMillis");
+            System.clearProperty("midtowncomics.pool.leakTraces");
+        }
+    }
+}
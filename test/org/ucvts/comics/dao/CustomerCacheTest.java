@@ -0,0 +1,72 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Customer;
+
+public class CustomerCacheTest {
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void phoneAndEmailLookupsShareOneCachedCustomer() throws SQLException {
+        Customer customer = insertCustomer("Ada");
+
+        Customer byId = CustomerCache.getCustomer(customer.getCustomerId());
+        long hits = CustomerCache.getHits();
+
+        assertSame(byId, CustomerCache.getCustomerByPhone(customer.getPhone()));
+        assertSame(byId, CustomerCache.getCustomerByEmail("  " + customer.getEmail().toUpperCase() + " "));
+        assertEquals(hits + 2, CustomerCache.getHits());
+    }
+
+    @Test
+    public void updateInvalidatesTheOldPhoneAndEmail() throws SQLException {
+        Customer customer = insertCustomer("Grace");
+        long oldPhone = customer.getPhone();
+        String oldEmail = customer.getEmail();
+
+        CustomerCache.getCustomer(customer.getCustomerId());
+
+        Customer changed = TestData.newCustomer("Grace");
+
+        customer.setPhone(changed.getPhone());
+        customer.setEmail(changed.getEmail());
+        CustomerDAO.updateCustomer(customer);
+
+        assertNull(CustomerCache.getCustomerByPhone(oldPhone));
+        assertNull(CustomerCache.getCustomerByEmail(oldEmail));
+        assertEquals(customer.getCustomerId(), CustomerCache.getCustomerByPhone(changed.getPhone()).getCustomerId());
+        assertEquals(changed.getEmail(), CustomerCache.getCustomer(customer.getCustomerId()).getEmail());
+    }
+
+    @Test
+    public void deleteInvalidatesEveryKey() throws SQLException {
+        Customer customer = insertCustomer("Alan");
+
+        CustomerCache.getCustomerByEmail(customer.getEmail());
+        CustomerDAO.deleteCustomer(customer);
+
+        assertNull(CustomerCache.getCustomer(customer.getCustomerId()));
+        assertNull(CustomerCache.getCustomerByPhone(customer.getPhone()));
+        assertNull(CustomerCache.getCustomerByEmail(customer.getEmail()));
+    }
+
+    private static Customer insertCustomer(String firstName) throws SQLException {
+        Customer customer = TestData.newCustomer(firstName);
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+
+        return customer;
+    }
+}
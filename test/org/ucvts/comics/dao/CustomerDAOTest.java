@@ -0,0 +1,135 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Customer;
+
+public class CustomerDAOTest {
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void insertCustomersSetsEveryGeneratedId() throws SQLException {
+        Customer first = TestData.newCustomer("Ada");
+        Customer second = TestData.newCustomer("Grace");
+
+        long[] keys = CustomerDAO.insertCustomers(Arrays.asList(first, second));
+
+        assertEquals(keys[0], first.getCustomerId());
+        assertEquals(keys[1], second.getCustomerId());
+        assertEquals(first.getEmail(), CustomerDAO.getCustomer(keys[0]).getEmail());
+        assertEquals(second.getEmail(), CustomerDAO.getCustomer(keys[1]).getEmail());
+    }
+
+    @Test
+    public void upsertCustomersMatchesOnEmail() throws SQLException {
+        Customer existing = TestData.newCustomer("Alan");
+
+        CustomerDAO.insertCustomers(Arrays.asList(existing));
+
+        Customer moved = new Customer(0, "Alan", "Tester", 5550199, existing.getEmail(), "2 Oak Ave",
+                "Trenton", "NJ", "08608");
+
+        assertEquals(1, CustomerDAO.upsertCustomers(Arrays.asList(moved)));
+
+        Customer saved = CustomerDAO.getCustomer(existing.getCustomerId());
+
+        assertEquals("2 Oak Ave", saved.getStreetAddress());
+        assertEquals(5550199, saved.getPhone());
+    }
+
+    @Test
+    public void emailLookupsIgnoreCaseAndSurroundingSpaces() throws SQLException {
+        Customer customer = TestData.newCustomer("Edsger");
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+
+        Customer found = CustomerDAO.getCustomerByEmail("  " + customer.getEmail().toUpperCase() + " ");
+
+        assertEquals(customer.getCustomerId(), found.getCustomerId());
+    }
+
+    @Test
+    public void upsertMatchesEmailTheWayLookupsDo() throws SQLException {
+        Customer existing = TestData.newCustomer("Barbara");
+
+        CustomerDAO.insertCustomers(Arrays.asList(existing));
+
+        Customer renamed = TestData.newCustomer("Barbara");
+
+        renamed.setEmail(existing.getEmail().toUpperCase());
+
+        assertEquals(1, CustomerDAO.upsertCustomers(Arrays.asList(renamed)));
+        assertEquals(existing.getEmail().toUpperCase(), CustomerDAO.getCustomer(existing.getCustomerId()).getEmail());
+    }
+
+    @Test
+    public void pagesByLastNameBreakTiesOnFirstNameThenId() throws SQLException {
+        String lastName = TestData.uniqueTitle("Paged");
+        List<Customer> added = new ArrayList<>();
+
+        for (String firstName : new String[] { "Cy", "Al", "Bo", "Al" }) {
+            Customer customer = TestData.newCustomer(firstName);
+
+            customer.setLastName(lastName);
+            added.add(customer);
+        }
+
+        CustomerDAO.insertCustomers(added);
+
+        List<Long> ids = new ArrayList<>();
+        List<Customer> page = CustomerDAO.getCustomers(CustomerSort.LAST_NAME, null, 3);
+
+        while (!page.isEmpty()) {
+            for (Customer customer : page) {
+                assertTrue(!ids.contains(customer.getCustomerId()), "repeated " + customer.getCustomerId());
+
+                if (customer.getLastName().equals(lastName)) {
+                    ids.add(customer.getCustomerId());
+                }
+            }
+
+            page = CustomerDAO.getCustomers(CustomerSort.LAST_NAME, page.get(page.size() - 1), 3);
+        }
+
+        assertEquals(Arrays.asList(
+            added.get(1).getCustomerId(),
+            added.get(3).getCustomerId(),
+            added.get(2).getCustomerId(),
+            added.get(0).getCustomerId()
+        ), ids);
+    }
+
+    @Test
+    public void customersByLastNameAreInFirstNameOrder() throws SQLException {
+        String lastName = TestData.uniqueTitle("Family");
+        List<Customer> family = new ArrayList<>();
+
+        for (String firstName : new String[] { "Bea", "Abe", "Cal" }) {
+            Customer customer = TestData.newCustomer(firstName);
+
+            customer.setLastName(lastName);
+            family.add(customer);
+        }
+
+        CustomerDAO.insertCustomers(family);
+
+        List<Customer> found = CustomerDAO.getCustomersByLastName(lastName);
+
+        assertEquals(3, found.size());
+        assertEquals("Abe", found.get(0).getFirstName());
+        assertEquals("Bea", found.get(1).getFirstName());
+        assertEquals("Cal", found.get(2).getFirstName());
+    }
+}
@@ -0,0 +1,78 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.CustomerStats;
+import org.ucvts.comics.model.Order;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+public class CustomerStatsDAOTest {
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void checkoutAddsToTheCustomersStats() throws SQLException {
+        Customer customer = TestData.newCustomer("Stats");
+        Product product = TestData.insertProduct(10);
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+
+        Order first = placeOrder(customer, product, 1);
+        Order second = placeOrder(customer, product, 2);
+
+        CustomerStats stats = CustomerStatsDAO.getCustomerStats(customer.getCustomerId());
+
+        assertEquals(2, stats.getOrderCount());
+        assertEquals(first.getTotal() + second.getTotal(), stats.getLifetimeTotal());
+        assertEquals(Math.max(first.getOrderDate(), second.getOrderDate()), stats.getLastOrderDate());
+    }
+
+    @Test
+    public void customerWithoutOrdersHasEmptyStats() throws SQLException {
+        Customer customer = TestData.newCustomer("Browser");
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+
+        CustomerStats stats = CustomerStatsDAO.getCustomerStats(customer.getCustomerId());
+
+        assertEquals(0, stats.getOrderCount());
+        assertEquals(0, stats.getLifetimeTotal());
+    }
+
+    @Test
+    public void failedCheckoutLeavesTheStatsAlone() throws SQLException {
+        Customer customer = TestData.newCustomer("Unlucky");
+        Product product = TestData.insertProduct(1);
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+        placeOrder(customer, product, 1);
+
+        try {
+            placeOrder(customer, product, 1);
+        } catch (InsufficientStockException e) {
+            // sold out, as expected
+        }
+
+        assertEquals(1, CustomerStatsDAO.getCustomerStats(customer.getCustomerId()).getOrderCount());
+    }
+
+    private static Order placeOrder(Customer customer, Product product, int quantity) throws SQLException {
+        Order order = new Order();
+
+        order.setCustomer(customer);
+        order.addItem(new OrderItem(0, product, quantity));
+        OrderDAO.insertOrder(order);
+
+        return order;
+    }
+}
@@ -0,0 +1,87 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Product;
+
+public class IdAllocatorTest {
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void concurrentCallersNeverShareAnId() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<long[]>> results = new ArrayList<>();
+
+        // enough ids that every thread has to reserve several blocks
+
+        for (int t = 0; t < 8; t++) {
+            results.add(threads.submit(() -> {
+                long[] ids = new long[IdAllocator.BLOCK_SIZE * 3];
+
+                try (Connection conn = DAO.getConnection()) {
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = IdAllocator.ORDER_ITEMS.next(conn);
+                    }
+                }
+
+                return ids;
+            }));
+        }
+
+        Set<Long> seen = new HashSet<>();
+
+        for (Future<long[]> result : results) {
+            long[] ids = result.get();
+
+            for (int i = 0; i < ids.length; i++) {
+                assertTrue(seen.add(ids[i]), "id " + ids[i] + " was handed out twice");
+                assertTrue(i == 0 || ids[i] > ids[i - 1], "ids went backwards");
+            }
+        }
+
+        threads.shutdown();
+
+        assertEquals(8 * IdAllocator.BLOCK_SIZE * 3, seen.size());
+    }
+
+    @Test
+    public void insertedRowsKeepTheirAllocatedIds() throws SQLException {
+        Product product = TestData.newProduct(1);
+
+        ProductDAO.insertProduct(product);
+
+        assertTrue(product.getProductId() > 0);
+        assertEquals(product.getProductId(), TestData.idOf(product.getTitle()));
+    }
+
+    @Test
+    public void upsertedRowsKeepTheIdsTheyHave() throws SQLException {
+        Product product = TestData.newProduct(1);
+
+        try (Connection conn = DAO.getConnection()) {
+            product.setProductId(IdAllocator.PRODUCTS.next(conn));
+        }
+
+        ProductDAO.upsertProducts(Arrays.asList(product));
+
+        assertEquals(product.getProductId(), TestData.idOf(product.getTitle()));
+    }
+}
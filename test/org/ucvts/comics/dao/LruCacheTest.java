@@ -0,0 +1,92 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LruCacheTest {
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        LruCache<Long, String> cache = new LruCache<>(2, 0);
+
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.get(1L);
+        cache.put(3L, "three");
+
+        assertEquals("one", cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals("three", cache.get(3L));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void expiredEntriesAreMisses() throws InterruptedException {
+        LruCache<Long, String> cache = new LruCache<>(10, 20);
+
+        cache.put(1L, "one");
+        Thread.sleep(50);
+
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        LruCache<Long, String> cache = new LruCache<>(10, 0);
+
+        cache.put(1L, "one");
+        cache.get(1L);
+        cache.get(1L);
+        cache.get(2L);
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void invalidatedEntriesAreGone() {
+        LruCache<Long, String> cache = new LruCache<>(10, 0);
+
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        assertEquals("one", cache.invalidate(1L));
+        assertNull(cache.get(1L));
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void valuesReadBeforeAnInvalidationArentCached() {
+        LruCache<Long, String> cache = new LruCache<>(10, 0);
+        long generation = cache.generation(1L);
+
+        cache.invalidate(1L);
+
+        assertFalse(cache.putIfUnchanged(1L, "old", generation));
+        assertNull(cache.get(1L));
+        assertTrue(cache.putIfUnchanged(1L, "new", cache.generation(1L)));
+        assertEquals("new", cache.get(1L));
+    }
+
+    @Test
+    public void invalidatingEverythingMovesOnEveryKey() {
+        LruCache<Long, String> cache = new LruCache<>(10, 0);
+        long one = cache.generation(1L);
+        long two = cache.generation(2L);
+
+        cache.invalidateAll();
+
+        assertFalse(cache.putIfUnchanged(1L, "one", one));
+        assertFalse(cache.putIfUnchanged(2L, "two", two));
+        assertEquals(0, cache.size());
+    }
+}
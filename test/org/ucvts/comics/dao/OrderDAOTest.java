@@ -0,0 +1,247 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.Order;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+public class OrderDAOTest {
+
+    private static final String COPIES = "SELECT copies FROM products WHERE id = ?";
+    private static final String ORDERS = "SELECT COUNT(*) FROM orders";
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void insertOrderSavesItemsAndTakesStock() throws SQLException {
+        Product first = TestData.insertProduct(5);
+        Product second = TestData.insertProduct(3);
+        Order order = new Order();
+
+        order.addItem(new OrderItem(0, first, 2));
+        order.addItem(new OrderItem(0, second, 3));
+
+        OrderDAO.insertOrder(order);
+
+        assertEquals(1, TestData.queryInt("SELECT COUNT(*) FROM orders WHERE id = ?", order.getOrderId()));
+        assertEquals(2, TestData.queryInt("SELECT COUNT(*) FROM orderitems WHERE orderid = ?", order.getOrderId()));
+        assertEquals(3, TestData.queryInt(COPIES, first.getProductId()));
+        assertEquals(0, TestData.queryInt(COPIES, second.getProductId()));
+    }
+
+    @Test
+    public void oversoldOrderIsRolledBack() throws SQLException {
+        Product plenty = TestData.insertProduct(5);
+        Product scarce = TestData.insertProduct(1);
+        Order order = new Order();
+        OrderItem oversold = new OrderItem(0, scarce, 2);
+
+        order.addItem(new OrderItem(0, plenty, 2));
+        order.addItem(oversold);
+
+        int orders = TestData.queryInt(ORDERS);
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+                () -> OrderDAO.insertOrder(order));
+
+        assertEquals(1, e.getItems().size());
+        assertSame(oversold, e.getItems().get(0));
+        assertEquals(orders, TestData.queryInt(ORDERS));
+        assertEquals(5, TestData.queryInt(COPIES, plenty.getProductId()));
+        assertEquals(1, TestData.queryInt(COPIES, scarce.getProductId()));
+    }
+
+    @Test
+    public void lastCopyIsOnlySoldOnce() throws Exception {
+        Product product = TestData.insertProduct(1);
+        ExecutorService terminals = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] sales = new Future<?>[4];
+
+        // four terminals try to sell the last copy at the same moment
+
+        for (int i = 0; i < sales.length; i++) {
+            sales[i] = terminals.submit((Callable<Void>) () -> {
+                Order order = new Order();
+
+                order.addItem(new OrderItem(0, product, 1));
+                start.await();
+                OrderDAO.insertOrder(order);
+
+                return null;
+            });
+        }
+
+        start.countDown();
+
+        int sold = 0;
+
+        for (Future<?> sale : sales) {
+            try {
+                sale.get();
+                sold++;
+            } catch (Exception e) {
+                // another terminal got there first
+            }
+        }
+
+        terminals.shutdown();
+
+        assertEquals(1, sold);
+        assertEquals(0, TestData.queryInt(COPIES, product.getProductId()));
+    }
+
+    @Test
+    public void orderHeadersByCustomerAreNewestFirstWithoutItems() throws SQLException {
+        Customer customer = TestData.newCustomer("Orders");
+        Product product = TestData.insertProduct(5);
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+
+        Order first = new Order();
+        Order second = new Order();
+
+        for (Order order : new Order[] { first, second }) {
+            order.setCustomer(customer);
+            order.addItem(new OrderItem(0, product, 1));
+            OrderDAO.insertOrder(order);
+        }
+
+        List<Order> orders = OrderDAO.getOrderHeadersByCustomer(customer.getCustomerId());
+
+        assertEquals(2, orders.size());
+        assertEquals(second.getOrderId(), orders.get(0).getOrderId());
+        assertEquals(first.getOrderId(), orders.get(1).getOrderId());
+        assertTrue(orders.get(0).getItems().isEmpty());
+    }
+
+    @Test
+    public void orderItemsComeWithTheirProducts() throws SQLException {
+        Product first = TestData.insertProduct(5);
+        Product second = TestData.insertProduct(5);
+        Order order = new Order();
+
+        order.addItem(new OrderItem(0, first, 2));
+        order.addItem(new OrderItem(0, second, 1));
+        OrderDAO.insertOrder(order);
+
+        List<OrderItem> items = OrderItemDAO.getOrderItems(order.getOrderId());
+
+        assertEquals(2, items.size());
+        assertEquals(first.getTitle(), items.get(0).getProduct().getTitle());
+        assertEquals(2, items.get(0).getQuantity());
+        assertEquals(second.getProductId(), items.get(1).getProduct().getProductId());
+        assertEquals(4, items.get(1).getProduct().getCopies());
+    }
+
+    @Test
+    public void getOrderLoadsTheWholeOrder() throws SQLException {
+        Customer customer = TestData.newCustomer("Graph");
+        Product product = TestData.insertProduct(5);
+        Product other = TestData.insertProduct(5);
+        Order order = new Order();
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+        order.setCustomer(customer);
+        order.addItem(new OrderItem(0, product, 2));
+        order.addItem(new OrderItem(0, other, 1));
+        OrderDAO.insertOrder(order);
+
+        Order loaded = OrderDAO.getOrder(order.getOrderId());
+
+        assertEquals(customer.getEmail(), loaded.getCustomer().getEmail());
+        assertEquals(2, loaded.getItems().size());
+        assertEquals(2, loaded.getItems().get(0).getQuantity());
+        assertEquals(other.getTitle(), loaded.getItems().get(1).getProduct().getTitle());
+    }
+
+    @Test
+    public void walkInOrderHasNoCustomer() throws SQLException {
+        Order order = new Order();
+
+        order.addItem(new OrderItem(0, TestData.insertProduct(1), 1));
+        OrderDAO.insertOrder(order);
+
+        Order loaded = OrderDAO.getOrder(order.getOrderId());
+
+        assertNull(loaded.getCustomer());
+        assertEquals(1, loaded.getItems().size());
+    }
+
+    @Test
+    public void pagesOfOrdersFollowOnFromTheLastOrderSeen() throws SQLException {
+        Product product = TestData.insertProduct(10);
+        long[] ids = new long[3];
+
+        for (int i = 0; i < ids.length; i++) {
+            Order order = new Order();
+
+            order.addItem(new OrderItem(0, product, 1));
+            order.addItem(new OrderItem(0, TestData.insertProduct(1), 1));
+            OrderDAO.insertOrder(order);
+            ids[i] = order.getOrderId();
+        }
+
+        List<Order> first = OrderDAO.getOrders(ids[0] - 1, 2);
+
+        // orders on the same page share one Product for the same product
+
+        assertSame(first.get(0).getItems().get(0).getProduct(), first.get(1).getItems().get(0).getProduct());
+
+        List<Order> second = OrderDAO.getOrders(first.get(1).getOrderId(), 2);
+
+        assertEquals(2, first.size());
+        assertEquals(ids[0], first.get(0).getOrderId());
+        assertEquals(ids[1], first.get(1).getOrderId());
+        assertEquals(1, second.size());
+        assertEquals(ids[2], second.get(0).getOrderId());
+        assertEquals(2, second.get(0).getItems().size());
+    }
+
+    @Test
+    public void orderHistoryPagesBackFromTheNewestOrder() throws SQLException {
+        Customer customer = TestData.newCustomer("History");
+        Product product = TestData.insertProduct(10);
+        long[] ids = new long[3];
+
+        CustomerDAO.insertCustomers(Arrays.asList(customer));
+
+        for (int i = 0; i < ids.length; i++) {
+            Order order = new Order();
+
+            order.setCustomer(customer);
+            order.addItem(new OrderItem(0, product, 1));
+            OrderDAO.insertOrder(order);
+            ids[i] = order.getOrderId();
+        }
+
+        List<Order> first = OrderDAO.getOrdersByCustomer(customer.getCustomerId(), null, 2);
+        List<Order> second = OrderDAO.getOrdersByCustomer(customer.getCustomerId(), first.get(1), 2);
+
+        assertEquals(2, first.size());
+        assertEquals(ids[2], first.get(0).getOrderId());
+        assertEquals(ids[1], first.get(1).getOrderId());
+        assertEquals(1, second.size());
+        assertEquals(ids[0], second.get(0).getOrderId());
+        assertEquals(1, second.get(0).getItems().size());
+    }
+}
@@ -0,0 +1,65 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+public class ProductCacheTest {
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void secondLookupIsServedFromTheCache() throws SQLException {
+        Product product = TestData.insertProduct(3);
+
+        Product first = ProductCache.getProduct(product.getProductId());
+        long hits = ProductCache.getHits();
+        Product second = ProductCache.getProduct(product.getProductId());
+
+        assertSame(first, second);
+        assertEquals(hits + 1, ProductCache.getHits());
+    }
+
+    @Test
+    public void updateInvalidatesTheCachedProduct() throws SQLException {
+        Product product = TestData.insertProduct(3);
+
+        ProductCache.getProduct(product.getProductId());
+
+        product.setCopies(8);
+        ProductDAO.updateProduct(product);
+
+        assertEquals(8, ProductCache.getProduct(product.getProductId()).getCopies());
+    }
+
+    @Test
+    public void saleInvalidatesTheCachedProduct() throws SQLException {
+        Product product = TestData.insertProduct(3);
+
+        ProductCache.getProduct(product.getProductId());
+        ProductDAO.decrementCopies(Arrays.asList(new OrderItem(0, product, 2)));
+
+        assertEquals(1, ProductCache.getProduct(product.getProductId()).getCopies());
+    }
+
+    @Test
+    public void deleteInvalidatesTheCachedProduct() throws SQLException {
+        Product product = TestData.insertProduct(3);
+
+        ProductCache.getProduct(product.getProductId());
+        ProductDAO.deleteProduct(product);
+
+        assertNull(ProductCache.getProduct(product.getProductId()));
+    }
+}
@@ -0,0 +1,257 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Order;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+public class ProductDAOTest {
+
+    private static final String COPIES = "SELECT copies FROM products WHERE id = ?";
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void decrementCopiesOnlyTakesWhatsInStock() throws SQLException {
+        Product plenty = TestData.insertProduct(4);
+        Product scarce = TestData.insertProduct(1);
+
+        boolean[] results = ProductDAO.decrementCopies(Arrays.asList(
+            new OrderItem(0, plenty, 4),
+            new OrderItem(0, scarce, 2)
+        ));
+
+        assertArrayEquals(new boolean[] { true, false }, results);
+        assertEquals(0, TestData.queryInt(COPIES, plenty.getProductId()));
+        assertEquals(1, TestData.queryInt(COPIES, scarce.getProductId()));
+    }
+
+    @Test
+    public void unsoldProductsCanBeDeleted() throws SQLException {
+        Product product = TestData.insertProduct(1);
+
+        ProductDAO.deleteProduct(product);
+
+        assertEquals(0, TestData.queryInt("SELECT COUNT(*) FROM products WHERE id = ?", product.getProductId()));
+    }
+
+    @Test
+    public void soldProductsCantBeDeleted() throws SQLException {
+        Product product = TestData.insertProduct(2);
+        Order order = new Order();
+
+        order.addItem(new OrderItem(0, product, 1));
+        OrderDAO.insertOrder(order);
+
+        ProductInUseException e = assertThrows(ProductInUseException.class, () -> ProductDAO.deleteProduct(product));
+
+        assertSame(product, e.getProduct());
+        assertEquals(1, TestData.queryInt(COPIES, product.getProductId()));
+    }
+
+    @Test
+    public void insertProductsSetsEveryGeneratedId() throws SQLException {
+        List<Product> products = new ArrayList<>();
+
+        for (int i = 0; i < 7; i++) {
+            products.add(TestData.newProduct(i));
+        }
+
+        // a batch size that doesn't divide the list evenly, so the last
+        // batch is a short one
+
+        long[] keys = ProductDAO.insertProducts(products, 3);
+
+        assertEquals(7, keys.length);
+
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], products.get(i).getProductId());
+            assertEquals(keys[i], TestData.idOf(products.get(i).getTitle()));
+        }
+    }
+
+    @Test
+    public void aFailedBatchInsertSavesNothing() throws SQLException {
+        Product existing = TestData.insertProduct(1);
+        List<Product> products = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            products.add(TestData.newProduct(i));
+        }
+
+        // the last product reuses an id that's taken, so the insert fails
+        // in the last batch, after two others have already been sent
+
+        Product duplicate = TestData.newProduct(4);
+        duplicate.setProductId(existing.getProductId());
+        products.add(duplicate);
+
+        assertThrows(SQLException.class, () -> ProductDAO.insertProducts(products, 2));
+
+        for (Product product : products.subList(0, 4)) {
+            assertEquals(-1, TestData.idOf(product.getTitle()));
+        }
+    }
+
+    @Test
+    public void upsertProductsUpdatesMatchesAndInsertsTheRest() throws SQLException {
+        Product existing = TestData.insertProduct(2);
+        Product updated = new Product(0, existing.getTitle(), "New Author", existing.getReleaseDate(),
+                existing.getIssue(), 499, 9);
+        Product added = TestData.newProduct(6);
+
+        int affected = ProductDAO.upsertProducts(Arrays.asList(updated, added), 1);
+
+        assertEquals(2, affected);
+        assertEquals(9, TestData.queryInt(COPIES, existing.getProductId()));
+
+        long addedId = TestData.idOf(added.getTitle());
+
+        assertNotEquals(-1, addedId);
+        assertEquals(6, TestData.queryInt(COPIES, addedId));
+    }
+
+    @Test
+    public void pagesByIdCoverEveryProductOnce() throws SQLException {
+        TestData.insertProduct(1);
+        TestData.insertProduct(1);
+
+        List<Product> products = everyPage(ProductSort.ID, 2);
+        int total = TestData.queryInt("SELECT COUNT(*) FROM products");
+
+        assertEquals(total, products.size());
+
+        for (int i = 1; i < products.size(); i++) {
+            assertTrue(products.get(i - 1).getProductId() < products.get(i).getProductId());
+        }
+    }
+
+    @Test
+    public void pagesByTitleBreakTiesOnIssueThenId() throws SQLException {
+        String title = TestData.uniqueTitle("Paged Comic");
+        List<Product> added = new ArrayList<>();
+
+        for (int issue : new int[] { 3, 1, 2, 1, 2 }) {
+            added.add(new Product(title, "Test Author", 20200101, issue, 399, 1));
+        }
+
+        ProductDAO.insertProducts(added);
+
+        List<Long> ids = new ArrayList<>();
+        List<Integer> issues = new ArrayList<>();
+
+        for (Product product : everyPage(ProductSort.TITLE_ISSUE, 2)) {
+            if (product.getTitle().equals(title)) {
+                ids.add(product.getProductId());
+                issues.add(product.getIssue());
+            }
+        }
+
+        assertEquals(Arrays.asList(1, 1, 2, 2, 3), issues);
+        assertEquals(Arrays.asList(
+            added.get(1).getProductId(),
+            added.get(3).getProductId(),
+            added.get(2).getProductId(),
+            added.get(4).getProductId(),
+            added.get(0).getProductId()
+        ), ids);
+    }
+
+    @Test
+    public void forEachProductVisitsEveryRow() throws SQLException {
+        TestData.insertProduct(1);
+
+        AtomicInteger visited = new AtomicInteger();
+
+        ProductDAO.forEachProduct(product -> visited.incrementAndGet());
+
+        assertEquals(TestData.queryInt("SELECT COUNT(*) FROM products"), visited.get());
+    }
+
+    @Test
+    public void streamReadsEveryRowLazily() throws SQLException {
+        TestData.insertProduct(1);
+
+        try (Stream<Product> products = ProductDAO.streamProducts()) {
+            assertEquals(TestData.queryInt("SELECT COUNT(*) FROM products"), products.count());
+        }
+    }
+
+    @Test
+    public void closingAStreamEarlyReturnsItsConnection() throws SQLException {
+        TestData.insertProduct(1);
+        TestData.insertProduct(1);
+
+        // more streams than the pool has connections, so one that wasn't
+        // given back would leave the last ones waiting for a connection
+
+        for (int i = 0; i < 12; i++) {
+            try (Stream<Product> products = ProductDAO.streamProducts()) {
+                assertTrue(products.findFirst().isPresent());
+            }
+        }
+    }
+
+    @Test
+    public void seriesIsInIssueOrder() throws SQLException {
+        String title = TestData.uniqueTitle("Series");
+        List<Product> issues = new ArrayList<>();
+
+        for (int issue : new int[] { 2, 3, 1 }) {
+            issues.add(new Product(title, "Test Author", 20200101, issue, 399, 1));
+        }
+
+        ProductDAO.insertProducts(issues);
+
+        List<Product> series = ProductDAO.getSeries(title);
+
+        assertEquals(3, series.size());
+
+        for (int i = 0; i < series.size(); i++) {
+            assertEquals(i + 1, series.get(i).getIssue());
+        }
+    }
+
+    /*
+     * Fetches every product a page at a time, the way the inventory view
+     * does, checking that no page repeats a product from an earlier one.
+     */
+
+    private static List<Product> everyPage(ProductSort sort, int pageSize) throws SQLException {
+        List<Product> products = new ArrayList<>();
+        List<Long> seen = new ArrayList<>();
+        List<Product> page = ProductDAO.getProducts(sort, null, pageSize);
+
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= pageSize);
+
+            for (Product product : page) {
+                assertTrue(!seen.contains(product.getProductId()), "repeated " + product.getProductId());
+                seen.add(product.getProductId());
+                products.add(product);
+            }
+
+            page = ProductDAO.getProducts(sort, page.get(page.size() - 1), pageSize);
+        }
+
+        return products;
+    }
+}
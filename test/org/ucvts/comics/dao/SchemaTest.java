@@ -0,0 +1,132 @@
+package org.ucvts.comics.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Each test migrates its own in-memory database, so it starts from nothing
+ * no matter what the other tests have done.
+ */
+
+public class SchemaTest {
+
+    private static int databases;
+
+    private Connection conn;
+
+    @AfterEach
+    public void closeDatabase() throws SQLException {
+        if (conn != null) {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void newDatabaseIsMigratedToTheLatestVersion() throws SQLException {
+        conn = newDatabase();
+
+        Schema.migrate(conn);
+
+        assertEquals(Schema.LATEST, queryInt("SELECT MAX(version) FROM schema_version"));
+        assertEquals(Schema.LATEST, queryInt("SELECT COUNT(*) FROM schema_version"));
+        assertEquals(10, queryInt("SELECT COUNT(*) FROM products"));
+    }
+
+    @Test
+    public void lookupColumnsAreIndexed() throws SQLException {
+        conn = newDatabase();
+
+        Schema.migrate(conn);
+
+        assertEquals(8, queryInt(
+            "SELECT COUNT(*) FROM sys.sysconglomerates " +
+            "WHERE isindex AND conglomeratename IN (" +
+            "   'ORDERS_CUSTOMER_IDX', 'ORDERITEMS_ORDER_IDX', 'ORDERITEMS_PRODUCT_IDX', " +
+            "   'PRODUCTS_TITLE_ISSUE_IDX', 'PRODUCTS_RELEASEDATE_IDX', " +
+            "   'CUSTOMERS_LASTNAME_IDX', 'CUSTOMERS_PHONE_IDX', 'CUSTOMERS_EMAILKEY_IDX')"
+        ));
+    }
+
+    @Test
+    public void migratingAgainChangesNothing() throws SQLException {
+        conn = newDatabase();
+
+        Schema.migrate(conn);
+        Schema.migrate(conn);
+
+        assertEquals(Schema.LATEST, queryInt("SELECT COUNT(*) FROM schema_version"));
+        assertEquals(10, queryInt("SELECT COUNT(*) FROM products"));
+    }
+
+    @Test
+    public void unversionedDatabaseIsUpgradedInPlace() throws SQLException {
+        conn = newDatabase();
+
+        // a database created before the schema was versioned already has
+        // the original tables (and whatever's been added to them since)
+
+        DAO.createTables(conn);
+        execute("DELETE FROM products WHERE issue > 1");
+
+        execute("INSERT INTO customers (firstname, lastname, phone, email, street, city, state, postalcode) " +
+                "VALUES ('Old', 'Customer', 5550100, ' Old@Example.com', '1 Main St', 'Springfield', 'NJ', '07081')");
+        execute("INSERT INTO orders (orderdate, status, total, customerid) " +
+                "SELECT 20200101, 'C', 10.00, id FROM customers");
+        execute("INSERT INTO orders (orderdate, status, total, customerid) " +
+                "SELECT 20200202, 'C', 5.50, id FROM customers");
+
+        Schema.migrate(conn);
+
+        assertEquals(Schema.LATEST, queryInt("SELECT MAX(version) FROM schema_version"));
+        assertEquals(1, queryInt("SELECT COUNT(*) FROM products"));
+
+        // new ids carry on from the ones that were already there
+
+        assertTrue(queryInt("VALUES NEXT VALUE FOR orders_id_seq") > queryInt("SELECT MAX(id) FROM orders"));
+
+        // customer stats are seeded from the orders that were already there
+
+        assertEquals(2, queryInt("SELECT ordercount FROM customerstats"));
+        assertEquals(1550, queryInt("SELECT INT(lifetimetotal * 100) FROM customerstats"));
+        assertEquals(20200202, queryInt("SELECT INT(lastorderdate) FROM customerstats"));
+
+        // and existing addresses are given their lookup keys
+
+        assertEquals(1, queryInt("SELECT COUNT(*) FROM customers WHERE emailkey = 'old@example.com'"));
+    }
+
+    private static Connection newDatabase() throws SQLException {
+        return DriverManager.getConnection("jdbc:derby:memory:schematest" + (++databases) + ";create=true",
+                "user1", "user1");
+    }
+
+    private void execute(String sql) throws SQLException {
+        Statement stmt = conn.createStatement();
+
+        stmt.execute(sql);
+        stmt.close();
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery(sql);
+
+        rs.next();
+
+        int value = rs.getInt(1);
+
+        rs.close();
+        stmt.close();
+
+        return value;
+    }
+}
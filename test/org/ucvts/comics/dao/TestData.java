@@ -0,0 +1,108 @@
+package org.ucvts.comics.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.ucvts.comics.model.Customer;
+import org.ucvts.comics.model.Product;
+
+/*
+ * Rows for the DAO tests to work with. Every test in a run shares one
+ * database, so each row gets a title no other test will use.
+ */
+
+class TestData {
+
+    private static int titles;
+
+    /*
+     * Returns a title that hasn't been used before.
+     */
+
+    static String uniqueTitle(String prefix) {
+        return prefix + " " + System.nanoTime() + "-" + (++titles);
+    }
+
+    /*
+     * Returns a product that hasn't been saved, with the specified number
+     * of copies.
+     */
+
+    static Product newProduct(int copies) {
+        return new Product(uniqueTitle("Test Comic"), "Test Author", 20200101, 1, 399, copies);
+    }
+
+    /*
+     * Inserts a product with the specified number of copies, returning it
+     * with the ID the database gave it.
+     */
+
+    static Product insertProduct(int copies) throws SQLException {
+        Product product = newProduct(copies);
+
+        ProductDAO.insertProduct(product);
+        product.setProductId(idOf(product.getTitle()));
+
+        return product;
+    }
+
+    /*
+     * Runs a query with ID parameters, returning the number in the first
+     * column of its first row (or 0 if there aren't any rows).
+     */
+
+    static int queryInt(String sql, long... ids) throws SQLException {
+        Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+
+        for (int i = 0; i < ids.length; i++) {
+            pstmt.setLong(i + 1, ids[i]);
+        }
+
+        ResultSet rs = pstmt.executeQuery();
+        int value = rs.next() ? rs.getInt(1) : 0;
+
+        rs.close();
+        pstmt.close();
+        conn.close();
+
+        return value;
+    }
+
+    /*
+     * Returns a customer that hasn't been saved, with an email address no
+     * other test will use.
+     */
+
+    static Customer newCustomer(String firstName) {
+        String email = uniqueTitle(firstName).replace(' ', '.').toLowerCase() + "@example.com";
+
+        return new Customer(0, firstName, "Tester", uniquePhone(), email, "1 Main St", "Springfield", "NJ", "07081");
+    }
+
+    /*
+     * Returns a ten digit phone number that hasn't been used before.
+     */
+
+    static long uniquePhone() {
+        return 2000000000L + Math.floorMod(System.nanoTime() + (++titles), 7000000000L);
+    }
+
+    static long idOf(String title) throws SQLException {
+        Connection conn = DAO.getConnection();
+        PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM products WHERE title = ?");
+
+        pstmt.setString(1, title);
+
+        ResultSet rs = pstmt.executeQuery();
+        long id = rs.next() ? rs.getLong(1) : -1;
+
+        rs.close();
+        pstmt.close();
+        conn.close();
+
+        return id;
+    }
+}
@@ -0,0 +1,179 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Customer;
+
+/*
+ * Like ProductIndexTest, the index is filled through its listener methods.
+ */
+
+public class CustomerNameIndexTest {
+
+    private final CustomerNameIndex index = new CustomerNameIndex();
+
+    @Test
+    public void findsMisspelledNames() {
+        save(1, "John", "Smith", "jsmith@example.com");
+        save(2, "Jane", "Doe", "jane.doe@example.com");
+
+        assertArrayEquals(new long[] { 1 }, index.search("jon smyth", 10));
+        assertArrayEquals(new long[] { 2 }, index.search("doe", 10));
+        assertArrayEquals(new long[0], index.search("xyzzy", 10));
+    }
+
+    @Test
+    public void closerNamesRankFirst() {
+        save(1, "Jon", "Stewart", "one@example.com");
+        save(2, "John", "Stewart", "two@example.com");
+        save(3, "Johnny", "Storm", "three@example.com");
+
+        assertArrayEquals(new long[] { 2, 3, 1 }, index.search("john", 10));
+        assertArrayEquals(new long[] { 2 }, index.search("john", 1));
+    }
+
+    @Test
+    public void emailsAreMatchedUpToTheAt() {
+        save(1, "Peter", "Parker", "webhead@example.com");
+        save(2, "Mary", "Watson", "mj@example.com");
+
+        assertArrayEquals(new long[] { 1 }, index.search("webhead@elsewhere.com", 10));
+        assertArrayEquals(new long[0], index.search("@example.com", 10));
+    }
+
+    @Test
+    public void savingAgainReplacesTheOldName() {
+        save(1, "Bruce", "Banner", "one@example.com");
+        save(1, "Bruce", "Wayne", "one@example.com");
+
+        assertArrayEquals(new long[0], index.search("banner", 10));
+        assertArrayEquals(new long[] { 1 }, index.search("wayne", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void deletedCustomersAreGone() {
+        Customer customer = save(1, "Diana", "Prince", "one@example.com");
+        save(2, "Diane", "Prince", "two@example.com");
+
+        index.customerDeleted(customer);
+
+        assertArrayEquals(new long[] { 2 }, index.search("diana prince", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void findsTheSameCustomersAsAScan() {
+        String[] firsts = { "john", "jon", "jonathan", "jane", "janet", "mary", "maria", "marie", "peter", "pete" };
+        String[] lasts = { "smith", "smyth", "smithers", "parker", "park", "watson", "walton", "stark", "storm" };
+        Random random = new Random(23);
+        Map<Long, Customer> customers = new HashMap<>();
+
+        // enough saves and deletes that removed numbers are reclaimed more
+        // than once
+
+        for (int i = 0; i < 20000; i++) {
+            long customerId = 1 + random.nextInt(800);
+
+            if (random.nextInt(4) == 0) {
+                Customer removed = customers.remove(customerId);
+
+                if (removed != null) {
+                    index.customerDeleted(removed);
+                }
+            } else {
+                String first = firsts[random.nextInt(firsts.length)];
+                String last = lasts[random.nextInt(lasts.length)];
+
+                customers.put(customerId, save(customerId, first, last, first.charAt(0) + last + "@example.com"));
+            }
+        }
+
+        assertEquals(customers.size(), index.size());
+
+        String[] queries = { "jon smith", "mari", "petr parkr", "stark", "jsmith", "watsn", "j" };
+
+        for (String query : queries) {
+            Set<Long> expected = new HashSet<>();
+
+            for (Customer customer : customers.values()) {
+                if (similarity(customer, query) >= 0.25) {
+                    expected.add(customer.getCustomerId());
+                }
+            }
+
+            long[] found = index.search(query, 10000);
+            Set<Long> actual = new HashSet<>();
+            double last = 1;
+
+            for (long customerId : found) {
+                double score = similarity(customers.get(customerId), query);
+
+                assertTrue(score <= last + 1e-6, query + " isn't ranked best first");
+                actual.add(customerId);
+                last = score;
+            }
+
+            assertEquals(expected, actual, query);
+        }
+    }
+
+    private Customer save(long customerId, String first, String last, String email) {
+        Customer customer = new Customer(customerId, first, last, 0, email, "1 Main St", "Town", "NJ", "07000");
+
+        index.customerSaved(customer);
+
+        return customer;
+    }
+
+    /*
+     * The best Jaccard similarity between a query and a customer's first
+     * name, last name, whole name, or email address, the slow way.
+     */
+
+    private static double similarity(Customer customer, String query) {
+        Set<String> q = trigrams(query);
+        Set<String> name = trigrams(customer.getFirstName() + " " + customer.getLastName());
+        String email = customer.getEmail();
+        double best = 0;
+
+        for (Set<String> field : new Set[] { trigrams(customer.getFirstName()), trigrams(customer.getLastName()),
+                name, trigrams(email.substring(0, email.indexOf('@'))) }) {
+            Set<String> shared = new HashSet<>(q);
+            Set<String> either = new HashSet<>(q);
+
+            shared.retainAll(field);
+            either.addAll(field);
+
+            if (!either.isEmpty()) {
+                best = Math.max(best, (double) shared.size() / either.size());
+            }
+        }
+
+        return best;
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> trigrams = new LinkedHashSet<>();
+
+        for (String word : Tokenizer.tokenize(text)) {
+            String padded = "  " + word + " ";
+
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(padded.substring(i, i + 3));
+            }
+        }
+
+        return trigrams;
+    }
+}
@@ -0,0 +1,297 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+/*
+ * Like ProductIndexTest, the index is filled through its listener methods.
+ */
+
+public class InventoryIndexTest {
+
+    private static final InventoryFilter[] FILTERS = {
+        InventoryFilter.NONE,
+        new InventoryFilter(300, 499, InventoryFilter.ANY_YEAR, false),
+        new InventoryFilter(InventoryFilter.ANY_PRICE, 399, 2019, false),
+        new InventoryFilter(500, InventoryFilter.ANY_PRICE, InventoryFilter.ANY_YEAR, true),
+        new InventoryFilter(InventoryFilter.ANY_PRICE, InventoryFilter.ANY_PRICE, 2020, true)
+    };
+
+    private final InventoryIndex index = new InventoryIndex();
+
+    @Test
+    public void listsEveryOrderBothWays() {
+        save(1, "Batman", 2, 399, 20200101, 3);
+        save(2, "Aquaman", 1, 499, 20190101, 0);
+        save(3, "Batman", 1, 299, 20210101, 5);
+
+        assertArrayEquals(new long[] { 2, 3, 1 }, page(InventorySort.TITLE, false, null, 10));
+        assertArrayEquals(new long[] { 1, 3, 2 }, page(InventorySort.TITLE, true, null, 10));
+        assertArrayEquals(new long[] { 3, 1, 2 }, page(InventorySort.PRICE, false, null, 10));
+        assertArrayEquals(new long[] { 2, 1, 3 }, page(InventorySort.RELEASE_DATE, false, null, 10));
+        assertArrayEquals(new long[] { 3, 1, 2 }, page(InventorySort.COPIES, true, null, 10));
+    }
+
+    @Test
+    public void pagesFollowOnFromTheLastProductShown() {
+        Product after = null;
+
+        for (long productId = 1; productId <= 5; productId++) {
+            Product product = save(productId, "Saga", (int) productId, 399, 20200101, 1);
+
+            if (productId == 2) {
+                after = product;
+            }
+        }
+
+        assertArrayEquals(new long[] { 3, 4 }, page(InventorySort.ISSUE, false, after, 2));
+        assertArrayEquals(new long[] { 1 }, page(InventorySort.ISSUE, true, after, 2));
+
+        // the last product shown can be deleted before the next page is read
+
+        index.productDeleted(after);
+
+        assertArrayEquals(new long[] { 3, 4 }, page(InventorySort.ISSUE, false, after, 2));
+    }
+
+    @Test
+    public void filtersAreCombined() {
+        save(1, "Monstress", 1, 399, 20190601, 2);
+        save(2, "Monstress", 2, 399, 20200601, 0);
+        save(3, "Monstress", 3, 599, 20200601, 2);
+        save(4, "Monstress", 4, 399, 20200601, 2);
+
+        InventoryFilter filter = new InventoryFilter(InventoryFilter.ANY_PRICE, 400, 2020, true);
+
+        assertArrayEquals(new long[] { 4 }, index.getPage(filter, InventorySort.ISSUE, false, null, 10));
+        assertEquals(1, index.count(filter));
+        assertEquals(4, index.count(InventoryFilter.NONE));
+    }
+
+    @Test
+    public void soldCopiesMoveAProductInTheOrderByCopies() {
+        Product product = save(1, "Paper Girls", 1, 399, 20200101, 5);
+        save(2, "Paper Girls", 2, 399, 20200101, 3);
+
+        index.copiesRemoved(Arrays.asList(new OrderItem(1, product, 5)));
+
+        InventoryFilter inStock = new InventoryFilter(InventoryFilter.ANY_PRICE, InventoryFilter.ANY_PRICE,
+                InventoryFilter.ANY_YEAR, true);
+
+        assertArrayEquals(new long[] { 1, 2 }, page(InventorySort.COPIES, false, null, 10));
+        assertArrayEquals(new long[] { 2 }, index.getPage(inStock, InventorySort.COPIES, false, null, 10));
+    }
+
+    @Test
+    public void listsTheSameProductsAsASortedScan() {
+        String[] titles = { "Batman", "Saga", "Spawn", "X-Men", "Y: The Last Man", "Watchmen" };
+        Random random = new Random(24);
+        Map<Long, Product> products = new HashMap<>();
+
+        // enough products that numbers are reused and the columns grow
+
+        for (int i = 0; i < 8000; i++) {
+            long productId = 1 + random.nextInt(1500);
+
+            switch (random.nextInt(6)) {
+                case 0:
+                    Product removed = products.remove(productId);
+
+                    if (removed != null) {
+                        index.productDeleted(removed);
+                    }
+
+                    break;
+                case 1:
+                    Product sold = products.get(productId);
+
+                    if (sold != null && sold.getCopies() > 0) {
+                        index.copiesRemoved(Arrays.asList(new OrderItem(1, sold, 1)));
+                        sold.setCopies(sold.getCopies() - 1);
+                    }
+
+                    break;
+                default:
+                    products.put(productId, save(productId, titles[random.nextInt(titles.length)],
+                            1 + random.nextInt(40), 199 + 100 * random.nextInt(6),
+                            (2018 + random.nextInt(4)) * 10000L + 101 + random.nextInt(12) * 100,
+                            random.nextInt(4)));
+                    break;
+            }
+        }
+
+        assertEquals(products.size(), index.size());
+
+        for (InventorySort sort : InventorySort.values()) {
+            for (InventoryFilter filter : FILTERS) {
+                for (boolean descending : new boolean[] { false, true }) {
+                    List<Long> expected = scan(products.values(), filter, sort, descending);
+                    List<Long> listed = new ArrayList<>();
+                    Product after = null;
+
+                    // read it a page at a time, to check where each page
+                    // starts
+
+                    while (true) {
+                        long[] page = index.getPage(filter, sort, descending, after, 37);
+
+                        for (long productId : page) {
+                            listed.add(productId);
+                        }
+
+                        if (page.length < 37) {
+                            break;
+                        }
+
+                        after = products.get(page[page.length - 1]);
+                    }
+
+                    assertEquals(expected, listed, sort + " " + descending);
+                    assertEquals(expected.size(), index.count(filter), sort.name());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void listsTheProductsReleasedBetweenTwoDates() {
+        save(1, "Saga", 1, 399, 20200101, 1);
+        save(2, "Saga", 2, 399, 20200108, 1);
+        save(3, "Saga", 3, 399, 20200108, 1);
+        Product fourth = save(4, "Saga", 4, 399, 20200115, 1);
+        save(5, "Saga", 5, 399, 20200122, 1);
+
+        assertArrayEquals(new long[] { 2, 3, 4 }, index.getReleased(20200102, 20200115, false, null, 10));
+        assertArrayEquals(new long[] { 4, 3 }, index.getReleased(20200102, 20200115, true, null, 2));
+        assertArrayEquals(new long[] { 3, 2 }, index.getReleased(20200102, 20200115, true, fourth, 10));
+        assertArrayEquals(new long[0], index.getReleased(20200102, 20200115, false, fourth, 10));
+        assertEquals(3, index.countReleased(20200102, 20200115));
+        assertEquals(5, index.countReleased(0, Long.MAX_VALUE));
+        assertEquals(0, index.countReleased(20200201, 20200101));
+    }
+
+    @Test
+    public void releasesArePagedLikeTheOrderByReleaseDate() {
+        Random random = new Random(25);
+
+        for (long productId = 1; productId <= 2000; productId++) {
+            save(productId, "Title", 1, 399, 20200101 + random.nextInt(12) * 100 + random.nextInt(28),
+                    random.nextInt(3));
+        }
+
+        InventoryFilter year = new InventoryFilter(InventoryFilter.ANY_PRICE, InventoryFilter.ANY_PRICE, 2020,
+                false);
+
+        for (boolean newestFirst : new boolean[] { false, true }) {
+            assertArrayEquals(index.getPage(year, InventorySort.RELEASE_DATE, newestFirst, null, 5000),
+                    index.getReleased(20200000, 20209999, newestFirst, null, 5000));
+        }
+
+        assertEquals(index.count(year), index.countReleased(20200000, 20209999));
+    }
+
+    @Test
+    public void aLoadedIndexMatchesOneBuiltAChangeAtATime() {
+        Random random = new Random(2024);
+        InventoryIndex.Contents loaded = new InventoryIndex.Contents();
+
+        for (long productId = 1; productId <= 3000; productId++) {
+            Product product = new Product(productId, "Title " + random.nextInt(50), "Someone",
+                    20200101 + random.nextInt(12) * 100, random.nextInt(30), 199 + 100 * random.nextInt(5),
+                    random.nextInt(3));
+
+            loaded.append(product);
+            index.productSaved(product);
+        }
+
+        loaded.sort();
+
+        for (InventorySort sort : InventorySort.values()) {
+            for (InventoryFilter filter : FILTERS) {
+                assertArrayEquals(index.getPage(filter, sort, true, null, 5000),
+                        loaded.getPage(filter, sort, true, null, 5000), sort.name());
+            }
+        }
+    }
+
+    private Product save(long productId, String title, int issue, long unitPrice, long releaseDate, int copies) {
+        Product product = new Product(productId, title, "Someone", releaseDate, issue, unitPrice, copies);
+
+        index.productSaved(product);
+
+        return product;
+    }
+
+    private long[] page(InventorySort sort, boolean descending, Product after, int pageSize) {
+        return index.getPage(InventoryFilter.NONE, sort, descending, after, pageSize);
+    }
+
+    /*
+     * The productIds of the products passing a filter, in an order, the
+     * slow way.
+     */
+
+    private static List<Long> scan(Iterable<Product> products, InventoryFilter filter, InventorySort sort,
+            boolean descending) {
+        List<Product> passed = new ArrayList<>();
+
+        for (Product product : products) {
+            long price = product.getUnitPrice();
+
+            if ((filter.getMinPrice() == InventoryFilter.ANY_PRICE || price >= filter.getMinPrice())
+                    && (filter.getMaxPrice() == InventoryFilter.ANY_PRICE || price <= filter.getMaxPrice())
+                    && (filter.getYear() == InventoryFilter.ANY_YEAR
+                            || product.getReleaseDate() / 10000 == filter.getYear())
+                    && (!filter.isInStock() || product.getCopies() > 0)) {
+                passed.add(product);
+            }
+        }
+
+        Comparator<Product> order;
+
+        switch (sort) {
+            case TITLE:
+                order = Comparator.comparing(Product::getTitle).thenComparingInt(Product::getIssue);
+                break;
+            case PRICE:
+                order = Comparator.comparingLong(Product::getUnitPrice);
+                break;
+            case RELEASE_DATE:
+                order = Comparator.comparingLong(Product::getReleaseDate);
+                break;
+            case ISSUE:
+                order = Comparator.comparingInt(Product::getIssue);
+                break;
+            default:
+                order = Comparator.comparingInt(Product::getCopies);
+                break;
+        }
+
+        passed.sort(order.thenComparingLong(Product::getProductId));
+
+        if (descending) {
+            Collections.reverse(passed);
+        }
+
+        List<Long> productIds = new ArrayList<>();
+
+        for (Product product : passed) {
+            productIds.add(product.getProductId());
+        }
+
+        return productIds;
+    }
+}
@@ -0,0 +1,161 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Customer;
+
+/*
+ * Like ProductIndexTest, the index is filled through its listener methods.
+ */
+
+public class PhoneIndexTest {
+
+    private final PhoneIndex index = new PhoneIndex();
+    private final long[] found = new long[16];
+
+    @Test
+    public void findsCustomersByTheirWholeNumber() {
+        save(1, 9735551234L);
+        save(2, 9735550000L);
+
+        assertArrayEquals(new long[] { 1 }, find(9735551234L));
+        assertArrayEquals(new long[0], find(2015551234L));
+    }
+
+    @Test
+    public void findsEveryCustomerSharingANumber() {
+        save(1, 9735551234L);
+        save(2, 9735551234L);
+        save(3, 9735551234L);
+
+        assertArrayEquals(new long[] { 1, 2, 3 }, sorted(find(9735551234L)));
+        assertEquals(2, index.find(9735551234L, new long[2]));
+    }
+
+    @Test
+    public void findsTheNewestCustomersByTheLastFourDigits() {
+        save(1, 9735551234L);
+        save(2, 2015551234L);
+        save(3, 2015550234L);
+
+        int n = index.findByLastFour(1234, found);
+
+        assertArrayEquals(new long[] { 2, 1 }, Arrays.copyOf(found, n));
+        assertEquals(0, index.findByLastFour(10000, found));
+        assertEquals(0, index.findByLastFour(-1, found));
+    }
+
+    @Test
+    public void changedNumbersAreFoundByTheNewOneOnly() {
+        save(1, 9735551234L);
+        save(2, 9735551234L);
+        save(1, 9735554321L);
+
+        assertArrayEquals(new long[] { 2 }, find(9735551234L));
+        assertArrayEquals(new long[] { 1 }, find(9735554321L));
+        assertEquals(1, index.findByLastFour(1234, found));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void customersWithoutANumberArentIndexed() {
+        save(1, 9735551234L);
+        save(1, 0);
+
+        assertArrayEquals(new long[0], find(9735551234L));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void deletedCustomersAreGone() {
+        Customer customer = save(1, 9735551234L);
+        save(2, 9735551234L);
+
+        index.customerDeleted(customer);
+
+        assertArrayEquals(new long[] { 2 }, find(9735551234L));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void findsTheSameCustomersAsAScan() {
+        Random random = new Random(22);
+        Map<Long, Long> phones = new HashMap<>();
+
+        // few enough numbers that many customers share them, so entries
+        // are unlinked from the middle of the lists as well as the ends
+
+        for (int i = 0; i < 20000; i++) {
+            long customerId = 1 + random.nextInt(3000);
+
+            if (random.nextInt(4) == 0) {
+                if (phones.remove(customerId) != null) {
+                    index.customerDeleted(new Customer(customerId, "", "", 0, "", "", "", "", ""));
+                }
+            } else {
+                long phone = 9735550000L + random.nextInt(400) * 37L;
+
+                phones.put(customerId, phone);
+                save(customerId, phone);
+            }
+        }
+
+        assertEquals(phones.size(), index.size());
+
+        long[] all = new long[phones.size()];
+
+        for (int n = 0; n < 50; n++) {
+            long phone = 9735550000L + random.nextInt(400) * 37L;
+            List<Long> byPhone = new ArrayList<>();
+            List<Long> byLastFour = new ArrayList<>();
+
+            for (Map.Entry<Long, Long> entry : phones.entrySet()) {
+                if (entry.getValue() == phone) {
+                    byPhone.add(entry.getKey());
+                }
+
+                if (entry.getValue() % 10000 == phone % 10000) {
+                    byLastFour.add(entry.getKey());
+                }
+            }
+
+            assertArrayEquals(sorted(byPhone), sorted(Arrays.copyOf(all, index.find(phone, all))));
+            assertArrayEquals(sorted(byLastFour),
+                    sorted(Arrays.copyOf(all, index.findByLastFour((int) (phone % 10000), all))));
+        }
+    }
+
+    private Customer save(long customerId, long phone) {
+        Customer customer = new Customer(customerId, "First", "Last", phone, customerId + "@example.com",
+                "1 Main St", "Town", "NJ", "07000");
+
+        index.customerSaved(customer);
+
+        return customer;
+    }
+
+    private long[] find(long phone) {
+        return Arrays.copyOf(found, index.find(phone, found));
+    }
+
+    private static long[] sorted(long[] ids) {
+        long[] copy = ids.clone();
+
+        Arrays.sort(copy);
+
+        return copy;
+    }
+
+    private static long[] sorted(List<Long> ids) {
+        return sorted(ids.stream().mapToLong(Long::longValue).toArray());
+    }
+}
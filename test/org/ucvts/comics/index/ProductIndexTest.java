@@ -0,0 +1,170 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.Product;
+
+/*
+ * The index is filled through its listener methods, the same way the DAO
+ * keeps it up to date, so none of these tests need a database.
+ */
+
+public class ProductIndexTest {
+
+    private final ProductIndex index = new ProductIndex();
+
+    @Test
+    public void everyWordMatchesAsAPrefix() {
+        save(1, "The Amazing Spider-Man", "Stan Lee", 1);
+        save(2, "Spider-Woman", "Marv Wolfman", 1);
+        save(3, "Amazing Fantasy", "Stan Lee", 15);
+
+        assertArrayEquals(new long[] { 1 }, index.search("spid amaz", 10));
+        assertEquals(2, index.search("spider", 10).length);
+        assertArrayEquals(new long[0], index.search("spider hulk", 10));
+    }
+
+    @Test
+    public void numbersAndSingleLettersOnlyMatchExactly() {
+        save(1, "Batman", "Bob Kane", 1);
+        save(2, "Batman", "Bob Kane", 12);
+        save(3, "X Factor", "Louise Simonson", 1);
+        save(4, "Xenozoic Tales", "Mark Schultz", 1);
+
+        assertArrayEquals(new long[] { 1 }, index.search("batman 1", 10));
+        assertArrayEquals(new long[] { 3 }, index.search("x", 10));
+    }
+
+    @Test
+    public void stopWordsAreIgnored() {
+        save(1, "The Flash", "Gardner Fox", 1);
+
+        assertArrayEquals(new long[] { 1 }, index.search("the flash", 10));
+        assertArrayEquals(new long[0], index.search("the", 10));
+    }
+
+    @Test
+    public void wholeWordsRankFirstThenTitles() {
+        save(1, "Storm Watch", "Thor Writer", 1);
+        save(2, "Thorn", "Some Writer", 1);
+        save(3, "Thor", "Some Writer", 1);
+        save(4, "Storm", "Ann Thorne", 1);
+
+        assertArrayEquals(new long[] { 3, 1, 2, 4 }, index.search("thor", 10));
+        assertArrayEquals(new long[] { 3 }, index.search("thor", 1));
+    }
+
+    @Test
+    public void savingAgainReplacesTheOldWords() {
+        save(1, "Daredevil", "Stan Lee", 1);
+        save(1, "Elektra", "Frank Miller", 1);
+
+        assertArrayEquals(new long[0], index.search("daredevil", 10));
+        assertArrayEquals(new long[] { 1 }, index.search("elektra", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void deletedProductsAreGone() {
+        Product product = save(1, "Hellboy", "Mike Mignola", 1);
+
+        save(2, "Hellblazer", "Jamie Delano", 1);
+        index.productDeleted(product);
+
+        assertArrayEquals(new long[] { 2 }, index.search("hell", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void matchesTheSameProductsAsAScan() {
+        String[] words = {
+            "amazing", "amazon", "batman", "bat", "spider", "spectre", "superman", "supergirl", "super",
+            "wonder", "woman", "man", "green", "lantern", "arrow", "flash", "x", "men", "force", "factor"
+        };
+        Random random = new Random(20);
+        Map<Long, Product> products = new HashMap<>();
+
+        // enough products, saved, replaced and deleted in a random order,
+        // that lists are intersected both ways and numbers get reclaimed
+
+        for (int i = 0; i < 6000; i++) {
+            long productId = 1 + random.nextInt(2500);
+
+            if (random.nextInt(5) == 0) {
+                Product removed = products.remove(productId);
+
+                if (removed != null) {
+                    index.productDeleted(removed);
+                }
+            } else {
+                String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                String author = words[random.nextInt(words.length)];
+
+                products.put(productId, save(productId, title, author, 1 + random.nextInt(30)));
+            }
+        }
+
+        assertEquals(products.size(), index.size());
+
+        String[] queries = { "super", "su man", "x men", "bat 1", "amaz won", "spider 12", "green lantern 3",
+                "s", "man", "fla arr" };
+
+        for (String query : queries) {
+            TreeSet<Long> expected = new TreeSet<>();
+
+            for (Product product : products.values()) {
+                if (matches(product, query)) {
+                    expected.add(product.getProductId());
+                }
+            }
+
+            TreeSet<Long> found = new TreeSet<>();
+
+            for (long productId : index.search(query, Integer.MAX_VALUE)) {
+                found.add(productId);
+            }
+
+            assertEquals(expected, found, query);
+        }
+    }
+
+    private Product save(long productId, String title, String author, int issue) {
+        Product product = new Product(productId, title, author, 20200101, issue, 399, 1);
+
+        index.productSaved(product);
+
+        return product;
+    }
+
+    /*
+     * Whether every word of a query matches a word of the product, the slow
+     * way. Numbers and single letters have to match exactly.
+     */
+
+    private static boolean matches(Product product, String query) {
+        List<String> words = new ArrayList<>(Tokenizer.tokenize(product.getTitle()));
+
+        words.addAll(Tokenizer.tokenize(product.getAuthor()));
+        words.add(Integer.toString(product.getIssue()));
+
+        for (String q : Tokenizer.tokenize(query)) {
+            boolean exact = q.length() == 1 || q.chars().allMatch(Character::isDigit);
+
+            if (words.stream().noneMatch(w -> exact ? w.equals(q) : w.startsWith(q))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
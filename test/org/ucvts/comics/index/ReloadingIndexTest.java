@@ -0,0 +1,143 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ReloadingIndexTest {
+
+    /*
+     * An index of strings whose rebuild can be held up until the test lets
+     * it finish.
+     */
+
+    private static class Words extends ReloadingIndex<List<String>> {
+
+        private final AtomicInteger rebuilds = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch release = new CountDownLatch(0);
+
+        Words() {
+            super(new ArrayList<>(Arrays.asList("old")));
+        }
+
+        @Override
+        List<String> rebuild() {
+            rebuilds.incrementAndGet();
+            started.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return new ArrayList<>(Arrays.asList("new"));
+        }
+
+        List<String> read() {
+            List<String> contents = beginRead();
+
+            try {
+                return new ArrayList<>(contents);
+            } finally {
+                endRead();
+            }
+        }
+    }
+
+    @Test
+    public void loadReplacesTheContents() throws Exception {
+        Words words = new Words();
+
+        words.load();
+
+        assertEquals(Arrays.asList("new"), words.read());
+    }
+
+    @Test
+    public void readsUseTheOldContentsWhileALoadRuns() throws Exception {
+        Words words = new Words();
+        Thread loader = new Thread(() -> {
+            try {
+                words.load();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        words.release = new CountDownLatch(1);
+        loader.start();
+        words.started.await(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("old"), words.read());
+
+        words.release.countDown();
+        loader.join(5000);
+
+        assertEquals(Arrays.asList("new"), words.read());
+    }
+
+    @Test
+    public void updatesWaitForALoadAndApplyToTheNewContents() throws Exception {
+        Words words = new Words();
+        Thread loader = new Thread(() -> {
+            try {
+                words.load();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        words.release = new CountDownLatch(1);
+        loader.start();
+        words.started.await(5, TimeUnit.SECONDS);
+
+        Thread updater = new Thread(() -> words.update(contents -> contents.add("added")));
+
+        updater.start();
+        Thread.sleep(100);
+        words.release.countDown();
+        updater.join(5000);
+        loader.join(5000);
+
+        assertEquals(Arrays.asList("new", "added"), words.read());
+    }
+
+    @Test
+    public void reloadsRequestedWhileOneIsWaitingAreCoalesced() throws Exception {
+        Words words = new Words();
+
+        words.release = new CountDownLatch(1);
+        words.reload();
+        words.started.await(5, TimeUnit.SECONDS);
+
+        // the first rebuild is running, so one more is queued behind it and
+        // the rest are dropped
+
+        for (int i = 0; i < 10; i++) {
+            words.reload();
+        }
+
+        words.release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (words.rebuilds.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Thread.sleep(100);
+
+        assertTrue(words.rebuilds.get() <= 2, words.rebuilds.get() + " rebuilds");
+        assertEquals(Arrays.asList("new"), words.read());
+    }
+}
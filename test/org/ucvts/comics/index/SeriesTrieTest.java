@@ -0,0 +1,195 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+import org.ucvts.comics.model.Series;
+
+/*
+ * Like ProductIndexTest, the trie is filled through its listener methods.
+ */
+
+public class SeriesTrieTest {
+
+    private final SeriesTrie trie = new SeriesTrie();
+
+    @Test
+    public void titlesStartingWithThePrefixComeFirst() {
+        save(1, "The Amazing Spider-Man", 1, 2);
+        save(2, "Spider-Woman", 1, 3);
+        save(3, "Spider-Gwen", 1, 1);
+        save(4, "Batman", 1, 5);
+
+        assertEquals(Arrays.asList("Spider-Gwen", "Spider-Woman", "The Amazing Spider-Man"), titles("spider", 10));
+        assertEquals(Arrays.asList("Spider-Gwen"), titles("spider", 1));
+        assertEquals(Arrays.asList("The Amazing Spider-Man"), titles("amaz", 10));
+    }
+
+    @Test
+    public void issuesOfASeriesAreCountedTogether() {
+        save(1, "Saga", 1, 2);
+        save(2, "Saga", 2, 3);
+        save(3, "SAGA", 3, 4);
+
+        List<Series> suggestions = trie.suggest("sa", 10);
+
+        assertEquals(1, suggestions.size());
+        assertEquals("SAGA", suggestions.get(0).getTitle());
+        assertEquals(3, suggestions.get(0).getIssues());
+        assertEquals(9, suggestions.get(0).getCopies());
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void aFinishedWordOnlyMatchesThatWord() {
+        save(1, "Bat Lash", 1, 1);
+        save(2, "Batman", 1, 1);
+
+        assertEquals(Arrays.asList("Bat Lash", "Batman"), titles("bat", 10));
+        assertEquals(Arrays.asList("Bat Lash"), titles("bat ", 10));
+    }
+
+    @Test
+    public void stopWordsDontStartSuggestions() {
+        save(1, "Tales of the Unexpected", 1, 1);
+
+        assertEquals(Arrays.asList("Tales of the Unexpected"), titles("unex", 10));
+        assertEquals(new ArrayList<String>(), titles("of", 10));
+    }
+
+    @Test
+    public void soldCopiesAreTakenOff() {
+        Product product = save(1, "Hellboy", 1, 5);
+
+        trie.copiesRemoved(Arrays.asList(new OrderItem(1, product, 2)));
+
+        assertEquals(3, trie.suggest("hell", 1).get(0).getCopies());
+
+        // saving the product again replaces its copies, rather than adding
+        // to what's left
+
+        save(1, "Hellboy", 1, 4);
+
+        assertEquals(4, trie.suggest("hell", 1).get(0).getCopies());
+    }
+
+    @Test
+    public void aSeriesIsGoneWithItsLastIssue() {
+        Product first = save(1, "Sandman", 1, 1);
+        Product second = save(2, "Sandman", 2, 1);
+        save(3, "Sandman Mystery Theatre", 1, 1);
+
+        trie.productDeleted(first);
+        assertEquals(Arrays.asList("Sandman", "Sandman Mystery Theatre"), titles("sand", 10));
+
+        trie.productDeleted(second);
+        assertEquals(Arrays.asList("Sandman Mystery Theatre"), titles("sand", 10));
+        assertEquals(Arrays.asList("Sandman Mystery Theatre"), titles("myst", 10));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void suggestsTheSameSeriesAsAScan() {
+        String[] words = { "a", "amazing", "amazon", "bat", "batman", "man", "spider", "spectre", "super",
+                "superman", "wonder", "woman", "x", "men", "force", "the", "of" };
+        Random random = new Random(21);
+        TreeMap<Long, String> titles = new TreeMap<>();
+
+        // random titles made of a few words from a small list share long
+        // prefixes, so nodes are split and merged often
+
+        for (int i = 0; i < 4000; i++) {
+            long productId = 1 + random.nextInt(600);
+
+            if (random.nextInt(4) == 0) {
+                if (titles.containsKey(productId)) {
+                    trie.productDeleted(new Product(productId, titles.remove(productId), "", 20200101, 1, 399, 1));
+                }
+            } else {
+                StringBuilder title = new StringBuilder(words[random.nextInt(words.length)]);
+
+                for (int n = random.nextInt(3); n >= 0; n--) {
+                    title.append(' ').append(words[random.nextInt(words.length)]);
+                }
+
+                titles.put(productId, title.toString());
+                save(productId, title.toString(), 1, 1);
+            }
+        }
+
+        String[] prefixes = { "a", "am", "bat", "bat ", "s", "sup", "super m", "man", "x m", "wonder woman" };
+
+        for (String prefix : prefixes) {
+            assertEquals(scan(titles.values(), prefix), titles(prefix, Integer.MAX_VALUE), prefix);
+        }
+    }
+
+    private Product save(long productId, String title, int issue, int copies) {
+        Product product = new Product(productId, title, "Someone", 20200101, issue, 399, copies);
+
+        trie.productSaved(product);
+
+        return product;
+    }
+
+    private List<String> titles(String prefix, int limit) {
+        List<String> titles = new ArrayList<>();
+
+        for (Series series : trie.suggest(prefix, limit)) {
+            titles.add(series.getTitle());
+        }
+
+        return titles;
+    }
+
+    /*
+     * The keys of the distinct series matching a prefix, the slow way:
+     * whole titles first, then later words, each group in order.
+     */
+
+    private static List<String> scan(Iterable<String> titles, String prefix) {
+        String key = String.join(" ", Tokenizer.tokenize(prefix));
+
+        if (prefix.endsWith(" ")) {
+            key += " ";
+        }
+
+        TreeMap<String, String> starts = new TreeMap<>();
+        TreeMap<String, String> later = new TreeMap<>();
+
+        for (String title : titles) {
+            List<String> tokens = Tokenizer.tokenize(title);
+            String whole = String.join(" ", tokens);
+
+            if (whole.startsWith(key)) {
+                starts.put(whole, whole);
+            }
+
+            for (int i = 1; i < tokens.size(); i++) {
+                String rest = String.join(" ", tokens.subList(i, tokens.size()));
+
+                if (!Tokenizer.STOP_WORDS.contains(tokens.get(i)) && rest.startsWith(key)) {
+                    later.putIfAbsent(rest + "\u0000" + whole, whole);
+                }
+            }
+        }
+
+        List<String> found = new ArrayList<>(starts.values());
+
+        for (String whole : later.values()) {
+            if (!found.contains(whole)) {
+                found.add(whole);
+            }
+        }
+
+        return found;
+    }
+}
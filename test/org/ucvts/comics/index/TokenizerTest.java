@@ -0,0 +1,34 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenizerTest {
+
+    @Test
+    public void splitsOnAnythingButLettersAndDigits() {
+        assertEquals(Arrays.asList("the", "amazing", "spider", "man", "2099"),
+                Tokenizer.tokenize("The Amazing Spider-Man (2099)"));
+    }
+
+    @Test
+    public void dropsApostrophesInsideWords() {
+        assertEquals(Arrays.asList("marvels", "greatest", "comics"),
+                Tokenizer.tokenize("Marvel's Greatest Comics\u2019"));
+    }
+
+    @Test
+    public void foldsCaseAndAccents() {
+        assertEquals(Arrays.asList("pokemon", "senor"), Tokenizer.tokenize("POK\u00c9MON Se\u00f1or"));
+    }
+
+    @Test
+    public void nothingToTokenize() {
+        assertEquals(Collections.emptyList(), Tokenizer.tokenize(null));
+        assertEquals(Collections.emptyList(), Tokenizer.tokenize(" -- "));
+    }
+}
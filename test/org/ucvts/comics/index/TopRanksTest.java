@@ -0,0 +1,43 @@
+package org.ucvts.comics.index;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TopRanksTest {
+
+    @Test
+    public void keepsTheSmallestRanksInOrder() {
+        Random random = new Random(23);
+        long[] ranks = new long[1000];
+        TopRanks top = new TopRanks(10);
+
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = (long) random.nextInt(500) << 32 | i;
+            top.offer(ranks[i]);
+        }
+
+        Arrays.sort(ranks);
+
+        assertArrayEquals(Arrays.copyOf(ranks, 10), top.drain());
+    }
+
+    @Test
+    public void keepsEverythingWhenThereAreFewerThanTheLimit() {
+        TopRanks top = new TopRanks(10);
+
+        top.offer(3L << 32 | 7);
+        top.offer(1L << 32 | 9);
+
+        long[] ranks = top.drain();
+
+        assertEquals(2, ranks.length);
+        assertEquals(9, TopRanks.number(ranks[0]));
+        assertEquals(7, TopRanks.number(ranks[1]));
+        assertEquals(0, top.drain().length);
+    }
+}
@@ -0,0 +1,76 @@
+package org.ucvts.comics.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvReaderTest {
+
+    @Test
+    public void readsPlainAndQuotedFields() throws IOException {
+        try (CsvReader in = new CsvReader(file("a,\"b, c\",\"say \"\"hi\"\"\",\r\nd\n"))) {
+            assertEquals(Arrays.asList("a", "b, c", "say \"hi\"", ""), in.next());
+            assertEquals(Arrays.asList("d"), in.next());
+            assertNull(in.next());
+        }
+    }
+
+    @Test
+    public void quotedLineBreaksStayInTheField() throws IOException {
+        try (CsvReader in = new CsvReader(file("\"one\ntwo\",x\nnext,y\n"))) {
+            assertEquals(Arrays.asList("one\ntwo", "x"), in.next());
+            assertEquals(1, in.getLineNumber());
+            assertEquals(Arrays.asList("next", "y"), in.next());
+            assertEquals(3, in.getLineNumber());
+        }
+    }
+
+    @Test
+    public void lastRecordNeedsNoLineBreak() throws IOException {
+        try (CsvReader in = new CsvReader(file("a,b"))) {
+            assertEquals(Arrays.asList("a", "b"), in.next());
+            assertNull(in.next());
+        }
+    }
+
+    @Test
+    public void recordsLongerThanTheBufferAreReadWhole() throws IOException {
+        StringBuilder longField = new StringBuilder();
+
+        while (longField.length() < 200 * 1024) {
+            longField.append("0123456789");
+        }
+
+        try (CsvReader in = new CsvReader(file("\"" + longField + "\",end\n"))) {
+            assertEquals(Arrays.asList(longField.toString(), "end"), in.next());
+        }
+    }
+
+    @Test
+    public void unterminatedQuoteIsAnError() throws IOException {
+        try (CsvReader in = new CsvReader(file("ok\n\"never closed\n"))) {
+            in.next();
+
+            IOException e = assertThrows(IOException.class, in::next);
+
+            assertEquals("Unterminated quoted field starting at line 2", e.getMessage());
+        }
+    }
+
+    static Path file(String contents) throws IOException {
+        Path path = Files.createTempFile("csvreadertest", ".csv");
+
+        path.toFile().deleteOnExit();
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+
+        return path;
+    }
+}
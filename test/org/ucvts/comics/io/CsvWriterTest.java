@@ -0,0 +1,36 @@
+package org.ucvts.comics.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvWriterTest {
+
+    @Test
+    public void onlyQuotesFieldsThatNeedIt() throws IOException {
+        StringWriter out = new StringWriter();
+
+        try (CsvWriter csv = new CsvWriter(out)) {
+            csv.write(Arrays.asList("plain", "a,b", "say \"hi\"", "two\nlines", null));
+        }
+
+        assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\r\n", out.toString());
+    }
+
+    @Test
+    public void writtenRecordsReadBackTheSame() throws IOException {
+        StringWriter out = new StringWriter();
+
+        try (CsvWriter csv = new CsvWriter(out)) {
+            csv.write(Arrays.asList("x,y", "\"quoted\"", "line\r\nbreak"));
+        }
+
+        try (CsvReader in = new CsvReader(CsvReaderTest.file(out.toString()))) {
+            assertEquals(Arrays.asList("x,y", "\"quoted\"", "line\r\nbreak"), in.next());
+        }
+    }
+}
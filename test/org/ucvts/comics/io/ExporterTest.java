@@ -0,0 +1,130 @@
+package org.ucvts.comics.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.dao.DAO;
+import org.ucvts.comics.dao.OrderDAO;
+import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.model.Order;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+public class ExporterTest {
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void productsExportToCsv() throws IOException, SQLException {
+        Product product = insertProduct("Say \"when\", please " + System.nanoTime());
+        Path target = tempFile(".csv");
+
+        ExportResult result = Exporter.exportProducts(target, ExportFormat.CSV, false);
+
+        List<List<String>> rows = new ArrayList<>();
+
+        try (CsvReader in = new CsvReader(target)) {
+            List<String> row;
+
+            while ((row = in.next()) != null) {
+                rows.add(row);
+            }
+        }
+
+        assertEquals(Arrays.asList("id", "title", "author", "releasedate", "issue", "unitprice", "copies"),
+                rows.get(0));
+        assertEquals(result.getRows(), rows.size() - 1);
+        assertEquals(Files.size(target), result.getBytes());
+        assertTrue(rows.contains(Arrays.asList(String.valueOf(product.getProductId()), product.getTitle(),
+                "Exporter", "20200101", "1", "3.99", "5")));
+    }
+
+    @Test
+    public void gzippedExportCountsCompressedBytes() throws IOException, SQLException {
+        Product product = insertProduct("Zipped " + System.nanoTime());
+        Path target = tempFile(".csv.gz");
+
+        ExportResult result = Exporter.exportProducts(target, ExportFormat.CSV, true);
+
+        assertEquals(Files.size(target), result.getBytes());
+        assertTrue(read(target, true).contains(product.getTitle()));
+    }
+
+    @Test
+    public void ordersExportAsOneRowPerItemOrOneObjectPerOrder() throws IOException, SQLException {
+        Product first = insertProduct("Ordered " + System.nanoTime());
+        Product second = insertProduct("Ordered " + System.nanoTime());
+        Order order = new Order();
+
+        order.addItem(new OrderItem(0, first, 1));
+        order.addItem(new OrderItem(0, second, 2));
+        OrderDAO.insertOrder(order);
+
+        Path csv = tempFile(".csv");
+        Path json = tempFile(".ndjson");
+
+        Exporter.exportOrders(csv, ExportFormat.CSV, false);
+        Exporter.exportOrders(json, ExportFormat.NDJSON, false);
+
+        String id = String.valueOf(order.getOrderId());
+        List<String> csvRows = lines(csv).stream()
+            .filter(line -> line.startsWith(id + ","))
+            .collect(Collectors.toList());
+        List<String> jsonRows = lines(json).stream()
+            .filter(line -> line.startsWith("{\"id\":" + id + ","))
+            .collect(Collectors.toList());
+
+        assertEquals(2, csvRows.size());
+        assertTrue(csvRows.get(1).contains("," + second.getProductId() + ",2,7.98"), csvRows.get(1));
+        assertEquals(1, jsonRows.size());
+        assertTrue(jsonRows.get(0).contains("\"customerid\":null,\"items\":[{"), jsonRows.get(0));
+        assertTrue(jsonRows.get(0).contains("\"productid\":" + second.getProductId() + ",\"quantity\":2,"),
+                jsonRows.get(0));
+    }
+
+    private static Product insertProduct(String title) throws SQLException {
+        Product product = new Product(title, "Exporter", 20200101, 1, 399, 5);
+
+        ProductDAO.insertProducts(Arrays.asList(product));
+
+        return product;
+    }
+
+    private static Path tempFile(String suffix) throws IOException {
+        Path path = Files.createTempFile("exportertest", suffix);
+
+        path.toFile().deleteOnExit();
+
+        return path;
+    }
+
+    private static List<String> lines(Path path) throws IOException {
+        return Arrays.asList(read(path, false).split("\r?\n"));
+    }
+
+    private static String read(Path path, boolean gzip) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(gzip
+                ? new GZIPInputStream(Files.newInputStream(path))
+                : Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            return in.lines().collect(Collectors.joining("\n"));
+        }
+    }
+}
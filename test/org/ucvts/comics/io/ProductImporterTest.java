@@ -0,0 +1,156 @@
+package org.ucvts.comics.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ucvts.comics.dao.DAO;
+import org.ucvts.comics.dao.ProductDAO;
+import org.ucvts.comics.dao.ProductListener;
+import org.ucvts.comics.model.OrderItem;
+import org.ucvts.comics.model.Product;
+
+public class ProductImporterTest {
+
+    @BeforeAll
+    public static void createTables() throws SQLException {
+        DAO.buildDatabase();
+    }
+
+    @Test
+    public void importsValidRowsAndRejectsTheRest() throws IOException, SQLException {
+        String title = "Imported " + System.nanoTime();
+        Path source = CsvReaderTest.file(
+            "Copies,Issue,Title,Author,Release Date,Unit Price,Notes\n" +
+            "3,1," + title + ",Writer,20200101,$3.99,first\n" +
+            "4,2,\"" + title + "\",Writer,20200201,3.99,\n" +
+            "\n" +
+            "5,3," + title + ",Writer,20201301,3.99,bad month\n" +
+            "-1,4," + title + ",Writer,20200401,3.99,negative\n"
+        );
+        Path rejects = Files.createTempFile("importtest", ".rejects.csv");
+
+        rejects.toFile().deleteOnExit();
+
+        ImportResult result = ProductImporter.importProducts(source, rejects, null);
+
+        assertEquals(4, result.getRowsRead());
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getRejected());
+
+        List<Product> series = ProductDAO.getSeries(title);
+
+        assertEquals(2, series.size());
+        assertEquals(3, series.get(0).getCopies());
+        assertEquals(4, series.get(1).getCopies());
+
+        try (CsvReader in = new CsvReader(rejects)) {
+            List<String> header = in.next();
+            List<String> badDate = in.next();
+            List<String> negative = in.next();
+
+            assertEquals(Arrays.asList("line", "error"), header.subList(7, 9));
+            assertEquals(Arrays.asList("5", "releasedate is not a valid date"), badDate.subList(7, 9));
+            assertEquals("6", negative.get(7));
+        }
+    }
+
+    @Test
+    public void importingAnIssueAgainReplacesIt() throws IOException, SQLException {
+        String title = "Reimported " + System.nanoTime();
+        String header = "title,author,releasedate,issue,unitprice,copies\n";
+
+        ProductImporter.importProducts(CsvReaderTest.file(header + title + ",Writer,20200101,1,3.99,3\n"), null, null);
+        ProductImporter.importProducts(CsvReaderTest.file(header + title + ",Writer,20200101,1,4.99,8\n"), null, null);
+
+        List<Product> series = ProductDAO.getSeries(title);
+
+        assertEquals(1, series.size());
+        assertEquals(8, series.get(0).getCopies());
+    }
+
+    @Test
+    public void missingColumnsFailTheWholeFile() throws IOException {
+        Path rejects = Files.createTempFile("importtest", ".rejects.csv");
+
+        Files.delete(rejects);
+
+        IOException e = assertThrows(IOException.class, () -> ProductImporter.importProducts(
+                CsvReaderTest.file("title,author,issue\nX,Y,1\n"), rejects, null));
+
+        assertTrue(e.getMessage().contains("releasedate, unitprice, copies"), e.getMessage());
+        assertFalse(Files.exists(rejects));
+    }
+
+    @Test
+    public void progressIsReportedAsChunksAreRead() throws IOException, SQLException {
+        String title = "Progress " + System.nanoTime();
+        StringBuilder csv = new StringBuilder("title,author,releasedate,issue,unitprice,copies\n");
+        int[] reports = new int[1];
+
+        for (int issue = 1; issue <= 3; issue++) {
+            csv.append(title).append(",Writer,20200101,").append(issue).append(",3.99,1\n");
+        }
+
+        ImportResult result = ProductImporter.importProducts(CsvReaderTest.file(csv.toString()), null,
+                progress -> reports[0]++);
+
+        assertEquals(3, result.getImported());
+        assertTrue(reports[0] >= 2, "reported " + reports[0] + " times");
+    }
+
+    @Test
+    public void listenersAreNotifiedOncePerImport() throws IOException, SQLException {
+        String title = "Notified " + System.nanoTime();
+        StringBuilder csv = new StringBuilder("title,author,releasedate,issue,unitprice,copies\n");
+        AtomicInteger changes = new AtomicInteger();
+        ProductListener listener = new ProductListener() {
+            @Override
+            public void productSaved(Product product) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void productDeleted(Product product) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void copiesRemoved(List<OrderItem> items) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void productsChanged() {
+                changes.incrementAndGet();
+            }
+        };
+
+        // enough rows for three chunks
+
+        for (int issue = 1; issue <= 2 * DAO.DEFAULT_BATCH_SIZE + 1; issue++) {
+            csv.append(title).append(",Writer,20200101,").append(issue).append(",3.99,1\n");
+        }
+
+        ProductDAO.addProductListener(listener);
+
+        try {
+            ProductImporter.importProducts(CsvReaderTest.file(csv.toString()), null, null);
+        } finally {
+            ProductDAO.removeProductListener(listener);
+        }
+
+        assertEquals(1, changes.get());
+    }
+}
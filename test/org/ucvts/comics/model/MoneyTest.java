@@ -0,0 +1,53 @@
+package org.ucvts.comics.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+public class MoneyTest {
+
+    @Test
+    public void parsesEveryWayAnAmountIsWritten() {
+        assertEquals(1999, Money.parse("19.99"));
+        assertEquals(125000, Money.parse(" $1,250 "));
+        assertEquals(-50, Money.parse("-0.5"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(700, Money.parse("7."));
+    }
+
+    @Test
+    public void rejectsWhatIsntAnAmount() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.999"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("$"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("12a"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999999"));
+    }
+
+    @Test
+    public void formatsWithAndWithoutDollars() {
+        assertEquals("0.05", Money.format(5));
+        assertEquals("-12.30", Money.format(-1230));
+        assertEquals("$1,250.00", Money.formatDollars(125000));
+        assertEquals("-$999.99", Money.formatDollars(-99999));
+        assertEquals("$1,000,000.01", Money.formatDollars(100000001));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void multiplicationIsExact() {
+        assertEquals(3 * 1999, Money.times(1999, 3));
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+    }
+
+    @Test
+    public void convertsToAndFromDecimalColumns() {
+        assertEquals(new BigDecimal("19.99"), Money.toBigDecimal(1999));
+        assertEquals(1999, Money.fromBigDecimal(new BigDecimal("19.99")));
+        assertEquals(2000, Money.fromBigDecimal(new BigDecimal("19.995")));
+        assertEquals(0, Money.fromBigDecimal(null));
+    }
+}
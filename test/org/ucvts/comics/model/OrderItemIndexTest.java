@@ -0,0 +1,108 @@
+package org.ucvts.comics.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class OrderItemIndexTest {
+
+    @Test
+    public void findsItemsByProduct() {
+        OrderItemIndex index = new OrderItemIndex();
+        OrderItem first = item(10);
+        OrderItem second = item(20);
+
+        assertTrue(index.add(first));
+        assertTrue(index.add(second));
+
+        assertSame(first, index.get(10));
+        assertSame(second, index.get(20));
+        assertNull(index.get(30));
+    }
+
+    @Test
+    public void keepsTheOrderItemsWereAddedInAcrossRemovals() {
+        OrderItemIndex index = new OrderItemIndex();
+        List<OrderItem> expected = new ArrayList<>();
+
+        for (int i = 1; i <= 40; i++) {
+            OrderItem item = item(i);
+
+            index.add(item);
+            expected.add(item);
+        }
+
+        // removing most of the items leaves enough gaps to be closed up
+
+        for (int i = 1; i <= 40; i++) {
+            if (i % 4 != 0) {
+                assertSame(expected.get(i - 1), index.remove(i));
+            }
+        }
+
+        expected.removeIf(item -> item.getProduct().getProductId() % 4 != 0);
+
+        assertEquals(10, index.size());
+        assertEquals(expected, new ArrayList<>(index.asList()));
+
+        for (OrderItem item : expected) {
+            assertSame(item, index.get(item.getProduct().getProductId()));
+        }
+    }
+
+    @Test
+    public void secondItemForAProductIsListedButNotIndexed() {
+        OrderItemIndex index = new OrderItemIndex();
+        OrderItem first = item(10);
+        OrderItem duplicate = item(10);
+
+        index.add(first);
+
+        assertFalse(index.add(duplicate));
+        assertSame(first, index.get(10));
+        assertEquals(Arrays.asList(first, duplicate), new ArrayList<>(index.asList()));
+
+        assertTrue(index.remove(duplicate));
+        assertEquals(Arrays.asList(first), new ArrayList<>(index.asList()));
+    }
+
+    @Test
+    public void listIsReadOnly() {
+        OrderItemIndex index = new OrderItemIndex();
+
+        index.add(item(10));
+
+        assertThrows(UnsupportedOperationException.class, () -> index.asList().remove(0));
+    }
+
+    @Test
+    public void orderFindsChangesAndRemovesItemsByProduct() {
+        Order order = new Order();
+
+        order.addItem(item(10));
+        order.addItem(item(20));
+        order.setQuantity(20, 3);
+
+        assertEquals(3, order.getItem(20).getQuantity());
+        assertEquals(4 * 100, order.getTotal());
+
+        order.removeItem(10);
+
+        assertNull(order.getItem(10));
+        assertEquals(3 * 100, order.getTotal());
+        assertEquals(1, order.getItems().size());
+    }
+
+    private static OrderItem item(long productId) {
+        return new OrderItem(0, new Product(productId, "Comic " + productId, "Writer", 20200101, 1, 100, 10), 1);
+    }
+}
@@ -0,0 +1,73 @@
+package org.ucvts.comics.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class OrderTest {
+
+    private final Product comic = new Product(1, "Comic", "Writer", 20200101, 1, 399, 10);
+    private final Product annual = new Product(2, "Annual", "Writer", 20200101, 1, 1250, 10);
+
+    @Test
+    public void totalFollowsItemsAsTheyreAddedAndRemoved() {
+        Order order = new Order();
+        OrderItem comics = new OrderItem(0, comic, 2);
+        OrderItem annuals = new OrderItem(0, annual, 1);
+
+        order.addItem(comics);
+        order.addItem(annuals);
+
+        assertEquals(2 * 399 + 1250, order.getTotal());
+        assertEquals(3, order.getItemCount());
+
+        order.removeItem(comics);
+
+        assertEquals(1250, order.getTotal());
+        assertEquals(1, order.getItemCount());
+    }
+
+    @Test
+    public void changingAQuantityUpdatesTheTotal() {
+        Order order = new Order();
+        OrderItem comics = new OrderItem(0, comic, 1);
+
+        order.addItem(comics);
+        comics.setQuantity(4);
+
+        assertEquals(4 * 399, order.getTotal());
+        assertEquals(4, order.getItemCount());
+
+        // once it's removed, the item no longer counts toward the order
+
+        order.removeItem(comics);
+        comics.setQuantity(7);
+
+        assertEquals(0, order.getTotal());
+    }
+
+    @Test
+    public void addingAnItemTwiceCountsItOnce() {
+        Order order = new Order();
+        OrderItem comics = new OrderItem(0, comic, 2);
+
+        order.addItem(comics);
+        order.addItem(comics);
+
+        assertEquals(1, order.getItems().size());
+        assertEquals(2 * 399, order.getTotal());
+    }
+
+    @Test
+    public void itemCantBelongToTwoOrders() {
+        Order first = new Order();
+        Order second = new Order();
+        OrderItem comics = new OrderItem(0, comic, 1);
+
+        first.addItem(comics);
+
+        assertThrows(IllegalArgumentException.class, () -> second.addItem(comics));
+        assertEquals(0, second.getTotal());
+    }
+}
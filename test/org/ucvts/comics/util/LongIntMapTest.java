@@ -0,0 +1,79 @@
+package org.ucvts.comics.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LongIntMapTest {
+
+    @Test
+    public void missingKeysReturnMissing() {
+        LongIntMap map = new LongIntMap(4);
+
+        assertEquals(LongIntMap.MISSING, map.get(7));
+        assertEquals(LongIntMap.MISSING, map.remove(7));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void putReplacesTheValueForAKey() {
+        LongIntMap map = new LongIntMap(4);
+
+        map.put(-3, 1);
+        map.put(-3, 2);
+
+        assertEquals(2, map.get(-3));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        LongIntMap map = new LongIntMap(2);
+
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 1024L, i);
+        }
+
+        assertEquals(1000, map.size());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(i * 1024L));
+        }
+    }
+
+    @Test
+    public void removalsKeepEveryOtherKeyReachable() {
+
+        // keys that are multiples of a large power of two crowd into the
+        // same few slots, so removals have to shift long probe sequences
+
+        LongIntMap map = new LongIntMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(18);
+
+        for (int i = 0; i < 20000; i++) {
+            long key = (random.nextInt(300) - 150) * (1L << 32);
+
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+
+                assertEquals(removed == null ? LongIntMap.MISSING : removed, map.remove(key));
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+
+        for (long key = -150; key < 150; key++) {
+            Integer value = expected.get(key << 32);
+
+            assertEquals(value == null ? LongIntMap.MISSING : value, map.get(key << 32));
+        }
+    }
+}